@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestException;
+
+/**
+ * {@link RequestBuilder} adding the request to a {@link RestBatch} instead of sending it. If the batch has already been sent, the
+ * request is sent on its own.
+ */
+class BatchRequestBuilder extends RequestBuilder {
+
+    private final RestBatch batch;
+
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+    private boolean includeCredentials;
+
+    BatchRequestBuilder( RestBatch batch, String httpMethod, String url ) {
+        super( httpMethod, url );
+        this.batch = batch;
+    }
+
+    @Override
+    public void setHeader( String header, String value ) {
+        super.setHeader( header, value );
+        headers.put( header, value );
+    }
+
+    @Override
+    public void setIncludeCredentials( boolean includeCredentials ) {
+        super.setIncludeCredentials( includeCredentials );
+        this.includeCredentials = includeCredentials;
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    boolean isIncludeCredentials() {
+        return includeCredentials;
+    }
+
+    @Override
+    public Request send() throws RequestException {
+        if ( batch.isSent() ) {
+            return super.send();
+        }
+        return batch.add( this );
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.Map.Entry;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+
+/**
+ * {@link Response} of a request sent inside a {@link RestBatch}, read from a part of the batch response.
+ */
+class BatchResponse extends Response {
+
+    private final MultipartMixed.Part message;
+
+    private final int statusCode;
+
+    private final String statusText;
+
+    /**
+     * @param message the HTTP message embedded in the part
+     */
+    BatchResponse( MultipartMixed.Part message ) {
+        this.message = message;
+
+        // status line : HTTP/1.1 200 OK
+        String statusLine = message.getStartLine();
+        int first = statusLine.indexOf( ' ' );
+        int second = first < 0 ? -1 : statusLine.indexOf( ' ', first + 1 );
+        int code;
+        try {
+            code = Integer.parseInt( second < 0 ? statusLine.substring( first + 1 ) : statusLine.substring( first + 1, second ) );
+        } catch ( NumberFormatException e ) {
+            code = 0;
+        }
+        this.statusCode = code;
+        this.statusText = second < 0 ? "" : statusLine.substring( second + 1 );
+    }
+
+    @Override
+    public String getHeader( String header ) {
+        return message.getHeader( header );
+    }
+
+    @Override
+    public Header[] getHeaders() {
+        Header[] headers = new Header[message.getHeaders().size()];
+        int i = 0;
+        for ( final Entry<String, String> header : message.getHeaders().entrySet() ) {
+            headers[i++] = new Header() {
+                @Override
+                public String getName() {
+                    return header.getKey();
+                }
+
+                @Override
+                public String getValue() {
+                    return header.getValue();
+                }
+            };
+        }
+        return headers;
+    }
+
+    @Override
+    public String getHeadersAsString() {
+        StringBuilder builder = new StringBuilder();
+        for ( Entry<String, String> header : message.getHeaders().entrySet() ) {
+            builder.append( header.getKey() ).append( ": " ).append( header.getValue() ).append( "\r\n" );
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+        return statusText;
+    }
+
+    @Override
+    public String getText() {
+        return message.getBody();
+    }
+}
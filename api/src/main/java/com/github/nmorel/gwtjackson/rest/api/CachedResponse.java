@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+/**
+ * Deserialized response stored in a {@link RestResponseCache} with its validators.
+ */
+public final class CachedResponse {
+
+    private final String template;
+
+    private final Object value;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private final int size;
+
+    /**
+     * @param template the url template, including the application path, of the request
+     * @param value the deserialized result
+     * @param etag the value of the ETag header, can be null
+     * @param lastModified the value of the Last-Modified header, can be null
+     * @param size the estimated size in bytes of the response
+     */
+    public CachedResponse( String template, Object value, String etag, String lastModified, int size ) {
+        this.template = template;
+        this.value = value;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Callback maintaining a {@link RestResponseCache}. A GET response carrying validators is stored and a 304 Not Modified response is
+ * answered with the cached result. A successful mutation invalidates the responses of its url template, in the cache and in the
+ * {@link IndexedDbResponseCache persistent cache}.
+ */
+class CachingRequestCallback<R> extends RestRequestCallback<R> {
+
+    /**
+     * Cache of the responses, can be null for a mutation
+     */
+    private final RestResponseCache cache;
+
+    /**
+     * Persistent cache invalidated by a mutation, can be null
+     */
+    private final IndexedDbResponseCache persistentCache;
+
+    private final String template;
+
+    /**
+     * Final url of a GET request or null if the request is a mutation
+     */
+    private final String url;
+
+    /**
+     * Response used to build the conditional request, can be null
+     */
+    private final CachedResponse cached;
+
+    /**
+     * Creates a callback storing the response of a GET request.
+     */
+    CachingRequestCallback( ObjectReader<R> responseConverter, RestCallback<R> callback, RequestTrace trace, RestResponseCache cache,
+                            String template, String url, CachedResponse cached ) {
+        this( responseConverter, callback, trace, cache, null, template, url, cached );
+    }
+
+    private CachingRequestCallback( ObjectReader<R> responseConverter, RestCallback<R> callback, RequestTrace trace, RestResponseCache
+            cache, IndexedDbResponseCache persistentCache, String template, String url, CachedResponse cached ) {
+        super( responseConverter, callback, trace );
+        this.cache = cache;
+        this.persistentCache = persistentCache;
+        this.template = template;
+        this.url = url;
+        this.cached = cached;
+    }
+
+    /**
+     * Creates a callback invalidating the responses of the template when the mutation succeeds.
+     */
+    CachingRequestCallback( ObjectReader<R> responseConverter, RestCallback<R> callback, RequestTrace trace, RestResponseCache cache,
+                            IndexedDbResponseCache persistentCache, String template ) {
+        this( responseConverter, callback, trace, cache, persistentCache, template, null, null );
+    }
+
+    @Override
+    public void onResponseReceived( Request request, Response response ) {
+        if ( null == url && isSuccessStatusCode( response ) ) {
+            if ( null != cache ) {
+                cache.invalidate( template );
+            }
+            if ( null != persistentCache ) {
+                persistentCache.invalidate( template );
+            }
+        }
+        super.onResponseReceived( request, response );
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    void readResult( final Response response, final Callback<R, Throwable> resultCallback ) {
+        if ( null == url ) {
+            super.readResult( response, resultCallback );
+            return;
+        }
+
+        if ( Response.SC_NOT_MODIFIED == response.getStatusCode() && null != cached ) {
+            resultCallback.onSuccess( (R) cached.getValue() );
+            return;
+        }
+
+        final String etag = response.getHeader( "ETag" );
+        final String lastModified = response.getHeader( "Last-Modified" );
+        if ( null == etag && null == lastModified ) {
+            super.readResult( response, resultCallback );
+            return;
+        }
+
+        super.readResult( response, new Callback<R, Throwable>() {
+            @Override
+            public void onSuccess( R result ) {
+                int size = 2 * ( url.length() + ( null == response.getText() ? 0 : response.getText().length() ) );
+                cache.put( url, new CachedResponse( template, result, etag, lastModified, size ) );
+                resultCallback.onSuccess( result );
+            }
+
+            @Override
+            public void onFailure( Throwable reason ) {
+                resultCallback.onFailure( reason );
+            }
+        } );
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.Response;
+
+/**
+ * In-flight request shared by all the identical requests sent while it is pending. The response is deserialized once and the result
+ * is dispatched to every subscribed callback.
+ */
+class CoalescedRequest<R> extends RestCallback<R> {
+
+    private static final Map<String, CoalescedRequest<?>> inFlight = new HashMap<String, CoalescedRequest<?>>();
+
+    /**
+     * @param key the key identifying the request
+     *
+     * @return the in-flight request for the given key or null if there is none
+     */
+    @SuppressWarnings( "unchecked" )
+    static <R> CoalescedRequest<R> get( String key ) {
+        return (CoalescedRequest<R>) inFlight.get( key );
+    }
+
+    /**
+     * Registers a new in-flight request. {@link #start(Request)} must be called once the underlying request is sent.
+     *
+     * @param key the key identifying the request
+     *
+     * @return the new in-flight request
+     */
+    static <R> CoalescedRequest<R> create( String key ) {
+        CoalescedRequest<R> request = new CoalescedRequest<R>( key );
+        inFlight.put( key, request );
+        return request;
+    }
+
+    /**
+     * Handle returned to each caller. Cancelling it only detaches its callback, the underlying request is cancelled when no caller is
+     * left.
+     */
+    private class Subscription extends Request {
+
+        private final RestCallback<R> callback;
+
+        private boolean cancelled;
+
+        private Subscription( RestCallback<R> callback ) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            if ( !cancelled ) {
+                cancelled = true;
+                unsubscribe( this );
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            return !cancelled && null != request && request.isPending();
+        }
+    }
+
+    private final String key;
+
+    private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+
+    private Request request;
+
+    private CoalescedRequest( String key ) {
+        this.key = key;
+    }
+
+    void start( Request request ) {
+        this.request = request;
+    }
+
+    /**
+     * Removes this request from the in-flight requests. Further identical requests will open a new connection.
+     */
+    void release() {
+        if ( inFlight.get( key ) == this ) {
+            inFlight.remove( key );
+        }
+    }
+
+    Request subscribe( RestCallback<R> callback ) {
+        Subscription subscription = new Subscription( callback );
+        subscriptions.add( subscription );
+        return subscription;
+    }
+
+    private void unsubscribe( Subscription subscription ) {
+        subscriptions.remove( subscription );
+        if ( subscriptions.isEmpty() ) {
+            release();
+            if ( null != request ) {
+                request.cancel();
+            }
+        }
+    }
+
+    private List<RestCallback<R>> complete() {
+        release();
+        List<RestCallback<R>> callbacks = new ArrayList<RestCallback<R>>( subscriptions.size() );
+        for ( Subscription subscription : subscriptions ) {
+            subscription.cancelled = true;
+            if ( null != subscription.callback ) {
+                callbacks.add( subscription.callback );
+            }
+        }
+        subscriptions.clear();
+        return callbacks;
+    }
+
+    @Override
+    public void onSuccess( Response response, R result ) {
+        RuntimeException exception = null;
+        for ( RestCallback<R> callback : complete() ) {
+            try {
+                callback.onSuccess( response, result );
+            } catch ( RuntimeException e ) {
+                exception = null == exception ? e : exception;
+            }
+        }
+        if ( null != exception ) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public void onSuccess( R result ) {
+        onSuccess( null, result );
+    }
+
+    @Override
+    public void onError( Response response ) {
+        List<RestCallback<R>> callbacks = complete();
+        if ( callbacks.isEmpty() ) {
+            throw new RestException( "An error occured. Status : " + response.getStatusCode() );
+        }
+        RuntimeException exception = null;
+        for ( RestCallback<R> callback : callbacks ) {
+            try {
+                callback.onError( response );
+            } catch ( RuntimeException e ) {
+                exception = null == exception ? e : exception;
+            }
+        }
+        if ( null != exception ) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public void onFailure( Throwable throwable ) {
+        List<RestCallback<R>> callbacks = complete();
+        if ( callbacks.isEmpty() ) {
+            throw new RestException( throwable );
+        }
+        RuntimeException exception = null;
+        for ( RestCallback<R> callback : callbacks ) {
+            try {
+                callback.onFailure( throwable );
+            } catch ( RuntimeException e ) {
+                exception = null == exception ? e : exception;
+            }
+        }
+        if ( null != exception ) {
+            throw exception;
+        }
+    }
+}
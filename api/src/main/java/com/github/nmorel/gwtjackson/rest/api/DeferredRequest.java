@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.google.gwt.http.client.Request;
+
+/**
+ * Handle of a request sent later, for example once the code of its split point is loaded. Cancelling it before the request is
+ * sent prevents the request from being sent.
+ */
+public final class DeferredRequest extends Request {
+
+    private Request request;
+
+    private boolean cancelled;
+
+    private boolean failed;
+
+    public DeferredRequest() {
+    }
+
+    /**
+     * @return true if the request has been cancelled and must not be sent
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param request the request that has been sent or null if nothing has been sent
+     */
+    public void start( Request request ) {
+        if ( null == request ) {
+            failed = true;
+            return;
+        }
+        this.request = request;
+        if ( cancelled ) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Marks the request as failed before being sent.
+     *
+     * @return true if the callback has to be notified, false if the request has been cancelled
+     */
+    public boolean fail() {
+        failed = true;
+        return !cancelled;
+    }
+
+    @Override
+    public void cancel() {
+        if ( !cancelled ) {
+            cancelled = true;
+            if ( null != request ) {
+                request.cancel();
+            }
+        }
+    }
+
+    @Override
+    public boolean isPending() {
+        if ( cancelled || failed ) {
+            return false;
+        }
+        return null == request || request.isPending();
+    }
+}
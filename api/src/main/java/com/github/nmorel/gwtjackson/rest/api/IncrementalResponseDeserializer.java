@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.Collection;
+
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+/**
+ * {@link ResponseDeserializer} reading the large JSON arrays in slices scheduled with {@link Scheduler#scheduleIncremental}. The
+ * elements are read by chunks until the time budget of the slice is spent, then the browser can render and handle the user input
+ * before the next slice.
+ * <p>Each chunk is read with the reader of the response, so the response must be a {@link Collection}. The chunks are added to an
+ * empty collection read by the same reader, which is given to the callback once the whole array is read. Only whitespaces can
+ * follow the array. The other responses and the small ones are read synchronously.</p>
+ * <p>The elements of each chunk can be given to a {@link PartialResultCallback} set on the request with
+ * {@link RestRequestBuilder#partialResults(PartialResultCallback)}.</p>
+ */
+public class IncrementalResponseDeserializer implements ResponseDeserializer {
+
+    /**
+     * Receives the elements of each chunk as soon as they are read
+     */
+    public interface PartialResultCallback<T> {
+
+        void onPartialResult( Collection<T> items );
+    }
+
+    public static final int DEFAULT_SLICE_MILLIS = 8;
+
+    /**
+     * Minimum number of characters of a chunk, it ends with the element containing this character
+     */
+    private static final int CHUNK_LENGTH = 8 * 1024;
+
+    private final int sliceMillis;
+
+    private final int minLength;
+
+    private final PartialResultCallback<?> partialResultCallback;
+
+    /**
+     * Creates a deserializer reading the responses of 64k characters or more in slices of {@value #DEFAULT_SLICE_MILLIS} ms.
+     */
+    public IncrementalResponseDeserializer() {
+        this( DEFAULT_SLICE_MILLIS );
+    }
+
+    /**
+     * @param sliceMillis the time budget of a slice in milliseconds
+     */
+    public IncrementalResponseDeserializer( int sliceMillis ) {
+        this( sliceMillis, 64 * 1024 );
+    }
+
+    /**
+     * @param sliceMillis the time budget of a slice in milliseconds
+     * @param minLength the minimum length of a response to read it in slices
+     */
+    public IncrementalResponseDeserializer( int sliceMillis, int minLength ) {
+        this( sliceMillis, minLength, null );
+    }
+
+    private IncrementalResponseDeserializer( int sliceMillis, int minLength, PartialResultCallback<?> partialResultCallback ) {
+        if ( sliceMillis <= 0 ) {
+            throw new IllegalArgumentException( "The time budget of a slice must be positive" );
+        }
+        this.sliceMillis = sliceMillis;
+        this.minLength = minLength;
+        this.partialResultCallback = partialResultCallback;
+    }
+
+    /**
+     * @param partialResultCallback the callback receiving the elements of each chunk. Its type must match the type of the elements of
+     * the response.
+     *
+     * @return a deserializer with the same settings giving the chunks of a single request to the callback
+     */
+    IncrementalResponseDeserializer withPartialResults( PartialResultCallback<?> partialResultCallback ) {
+        return new IncrementalResponseDeserializer( sliceMillis, minLength, partialResultCallback );
+    }
+
+    @Override
+    public <R> void deserialize( String text, ObjectReader<R> reader, Callback<R, Throwable> callback ) {
+        int start = 0;
+        while ( start < text.length() && isWhitespace( text.charAt( start ) ) ) {
+            start++;
+        }
+        if ( text.length() < minLength || start == text.length() || text.charAt( start ) != '[' ) {
+            read( text, reader, callback );
+            return;
+        }
+        Scheduler.get().scheduleIncremental( new Slices<R>( text, start + 1, reader, callback ) );
+    }
+
+    /**
+     * @return true if the character is a JSON whitespace
+     */
+    private static boolean isWhitespace( char c ) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private <R> void read( String text, ObjectReader<R> reader, Callback<R, Throwable> callback ) {
+        R result;
+        try {
+            result = reader.read( text );
+        } catch ( Exception e ) {
+            callback.onFailure( e );
+            return;
+        }
+        callback.onSuccess( result );
+    }
+
+    /**
+     * Reads the chunks of an array until the time budget of the slice is spent. Package-private for the tests.
+     */
+    class Slices<R> implements RepeatingCommand {
+
+        private final String text;
+
+        private final ObjectReader<R> reader;
+
+        private final Callback<R, Throwable> callback;
+
+        private int position;
+
+        private R result;
+
+        Slices( String text, int position, ObjectReader<R> reader, Callback<R, Throwable> callback ) {
+            this.text = text;
+            this.position = position;
+            this.reader = reader;
+            this.callback = callback;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public boolean execute() {
+            long deadline = System.currentTimeMillis() + sliceMillis;
+            boolean last;
+            try {
+                do {
+                    int end = nextChunkEnd();
+                    last = text.charAt( end ) == ']';
+                    R items = reader.read( "[" + text.substring( position, end ) + "]" );
+                    position = end + 1;
+
+                    if ( null == result ) {
+                        if ( !(items instanceof Collection) ) {
+                            // not a collection, the chunks cannot be merged
+                            result = reader.read( text );
+                            break;
+                        }
+                        // the chunks are given to the partial result callback, they cannot be the result
+                        result = reader.read( "[]" );
+                    }
+                    ((Collection<Object>) result).addAll( (Collection<?>) items );
+                    if ( last ) {
+                        checkEnd();
+                    }
+                    if ( null != partialResultCallback ) {
+                        ((PartialResultCallback<Object>) partialResultCallback).onPartialResult( (Collection<Object>) items );
+                    }
+                } while ( !last && System.currentTimeMillis() < deadline );
+            } catch ( Exception e ) {
+                callback.onFailure( e );
+                return false;
+            }
+
+            if ( last || !(result instanceof Collection) ) {
+                callback.onSuccess( result );
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Checks that only whitespaces follow the array
+         */
+        private void checkEnd() {
+            for ( int i = position; i < text.length(); i++ ) {
+                if ( !isWhitespace( text.charAt( i ) ) ) {
+                    throw new RestException( "Unexpected content after the JSON array at position " + i );
+                }
+            }
+        }
+
+        /**
+         * @return the index of the ',' ending the chunk starting at the current position or the index of the ']' ending the array
+         */
+        private int nextChunkEnd() {
+            int limit = position + CHUNK_LENGTH;
+            int depth = 0;
+            boolean inString = false;
+            for ( int i = position; i < text.length(); i++ ) {
+                char c = text.charAt( i );
+                if ( inString ) {
+                    if ( c == '\\' ) {
+                        i++;
+                    } else if ( c == '"' ) {
+                        inString = false;
+                    }
+                } else if ( c == '"' ) {
+                    inString = true;
+                } else if ( c == '[' || c == '{' ) {
+                    depth++;
+                } else if ( c == ']' || c == '}' ) {
+                    if ( depth == 0 ) {
+                        return i;
+                    }
+                    depth--;
+                } else if ( c == ',' && depth == 0 && i >= limit ) {
+                    return i;
+                }
+            }
+            throw new RestException( "The JSON array is not terminated" );
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Persistent cache of the GET responses stored in IndexedDB, so they survive a reload of the page. The text of each response is
+ * stored with its ETag, the time it was received and its url template. A successful mutation on a url template invalidates the
+ * responses stored for it, like in the {@link RestResponseCache}.
+ * <p>It is only used by the requests with a {@link RestRequestBuilder#persistentCachePolicy(int, int) persistent cache policy}.
+ * When IndexedDB is not available or fails, every lookup is a miss. While the database cannot be opened because another tab
+ * uses an older version, and once another tab has upgraded it, the lookups are misses too. A lookup slower than the
+ * {@link #lookupTimeout(int) lookup timeout} is a miss so the request is not delayed any longer.</p>
+ */
+public class IndexedDbResponseCache {
+
+    private static final String STORE = "responses";
+
+    /**
+     * Default time in milliseconds a lookup can take before it is considered a miss
+     */
+    public static final int DEFAULT_LOOKUP_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Response read from the database
+     */
+    static final class Entry {
+
+        private final String text;
+
+        private final String etag;
+
+        private final double storedAt;
+
+        private Entry( String text, String etag, double storedAt ) {
+            this.text = text;
+            this.etag = etag;
+            this.storedAt = storedAt;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the time in milliseconds since the epoch when the response was stored
+         */
+        double getStoredAt() {
+            return storedAt;
+        }
+    }
+
+    /**
+     * @return true if the browser supports IndexedDB
+     */
+    public static native boolean isSupported() /*-{
+        return !!$wnd.indexedDB;
+    }-*/;
+
+    private final String databaseName;
+
+    private final int schemaVersion;
+
+    private JavaScriptObject database;
+
+    private boolean unavailable;
+
+    /**
+     * Whether the opening of the database is blocked by another tab
+     */
+    private boolean blocked;
+
+    /**
+     * Operations waiting for the database to be opened, null if it is not being opened
+     */
+    private List<Runnable> waiting;
+
+    private int lookupTimeoutMillis = DEFAULT_LOOKUP_TIMEOUT_MILLIS;
+
+    /**
+     * @param databaseName name of the IndexedDB database
+     * @param schemaVersion version of the stored responses. Increment it when the format of the responses changes : the responses
+     * stored with another version are dropped.
+     */
+    public IndexedDbResponseCache( String databaseName, int schemaVersion ) {
+        if ( null == databaseName ) {
+            throw new IllegalArgumentException( "The database name is required" );
+        }
+        if ( schemaVersion < 1 ) {
+            throw new IllegalArgumentException( "The schema version must be positive" );
+        }
+        this.databaseName = databaseName;
+        this.schemaVersion = schemaVersion;
+    }
+
+    /**
+     * @param lookupTimeoutMillis time in milliseconds a lookup can take before it is considered a miss
+     *
+     * @return this cache
+     */
+    public IndexedDbResponseCache lookupTimeout( int lookupTimeoutMillis ) {
+        this.lookupTimeoutMillis = lookupTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Reads a response.
+     *
+     * @param key the key of the request
+     * @param callback receives the response or null if there is none
+     */
+    void get( final String key, final Callback<Entry, Void> callback ) {
+        final Lookup lookup = new Lookup( callback );
+        lookup.schedule( lookupTimeoutMillis );
+        whenOpened( new Runnable() {
+            @Override
+            public void run() {
+                if ( null == database ) {
+                    lookup.onSuccess( null );
+                } else {
+                    read( database, key, lookup );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Stores a response.
+     *
+     * @param key the key of the request
+     * @param template the url template, including the application path, of the request
+     * @param text the text of the response
+     * @param etag the ETag of the response, can be null
+     */
+    void put( final String key, final String template, final String text, final String etag ) {
+        final double storedAt = Duration.currentTimeMillis();
+        whenOpened( new Runnable() {
+            @Override
+            public void run() {
+                if ( null != database ) {
+                    write( database, key, template, text, etag, storedAt, schemaVersion );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Removes the responses of a url template.
+     *
+     * @param template the url template, including the application path
+     */
+    void invalidate( final String template ) {
+        whenOpened( new Runnable() {
+            @Override
+            public void run() {
+                if ( null != database ) {
+                    invalidate( database, template );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Removes all the responses.
+     */
+    public void clear() {
+        whenOpened( new Runnable() {
+            @Override
+            public void run() {
+                if ( null != database ) {
+                    clear( database );
+                }
+            }
+        } );
+    }
+
+    private void whenOpened( Runnable operation ) {
+        if ( null != database || unavailable || blocked ) {
+            operation.run();
+        } else if ( null != waiting ) {
+            waiting.add( operation );
+        } else {
+            waiting = new ArrayList<Runnable>();
+            waiting.add( operation );
+            open( databaseName, schemaVersion );
+        }
+    }
+
+    private void onOpened( JavaScriptObject database ) {
+        this.database = database;
+        this.unavailable = null == database;
+        this.blocked = false;
+        flushWaiting();
+    }
+
+    /**
+     * Called when another tab keeps an older version of the database open. The waiting operations are run without database, the
+     * database is used if it is opened later.
+     */
+    private void onBlocked() {
+        blocked = true;
+        flushWaiting();
+    }
+
+    /**
+     * Called when another tab upgrades the database or when the browser closes it. The connection is not reopened.
+     */
+    private void onClosed() {
+        database = null;
+        unavailable = true;
+    }
+
+    private void flushWaiting() {
+        List<Runnable> operations = waiting;
+        waiting = null;
+        if ( null != operations ) {
+            for ( Runnable operation : operations ) {
+                operation.run();
+            }
+        }
+    }
+
+    private void onRead( JavaScriptObject value, Callback<Entry, Void> callback ) {
+        if ( null == value || getVersion( value ) != schemaVersion ) {
+            callback.onSuccess( null );
+        } else {
+            callback.onSuccess( new Entry( getString( value, "text" ), getString( value, "etag" ), getStoredAt( value ) ) );
+        }
+    }
+
+    /**
+     * Lookup answered at most once, with a miss if the database does not answer in time
+     */
+    private static class Lookup extends Timer implements Callback<Entry, Void> {
+
+        private Callback<Entry, Void> callback;
+
+        private Lookup( Callback<Entry, Void> callback ) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            onSuccess( null );
+        }
+
+        @Override
+        public void onSuccess( Entry entry ) {
+            Callback<Entry, Void> answer = callback;
+            if ( null != answer ) {
+                callback = null;
+                cancel();
+                answer.onSuccess( entry );
+            }
+        }
+
+        @Override
+        public void onFailure( Void reason ) {
+            onSuccess( null );
+        }
+    }
+
+    /**
+     * Opens the database. Upgrading the version drops the stored responses.
+     */
+    private native void open( String name, int version ) /*-{
+        var self = this;
+        var done = $entry(function (database) {
+            self.@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::onOpened(Lcom/google/gwt/core/client/JavaScriptObject;)(database);
+        });
+        var closed = $entry(function () {
+            self.@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::onClosed()();
+        });
+        if (!$wnd.indexedDB) {
+            done(null);
+            return;
+        }
+        try {
+            var request = $wnd.indexedDB.open(name, version);
+            request.onupgradeneeded = function () {
+                var database = request.result;
+                if (database.objectStoreNames.contains(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE)) {
+                    database.deleteObjectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE);
+                }
+                database.createObjectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE, {keyPath: 'key'});
+            };
+            request.onblocked = $entry(function () {
+                self.@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::onBlocked()();
+            });
+            request.onsuccess = function () {
+                var database = request.result;
+                // let another tab upgrade the database instead of blocking it
+                database.onversionchange = function () {
+                    database.close();
+                    closed();
+                };
+                database.onclose = closed;
+                done(database);
+            };
+            request.onerror = function () {
+                done(null);
+            };
+        } catch (e) {
+            done(null);
+        }
+    }-*/;
+
+    private native void read( JavaScriptObject database, String key, Callback<Entry, Void> callback ) /*-{
+        var self = this;
+        var done = $entry(function (value) {
+            self.@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::onRead(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/Callback;)(value, callback);
+        });
+        try {
+            var request = database.transaction(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE, 'readonly')
+                .objectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE).get(key);
+            request.onsuccess = function () {
+                done(request.result || null);
+            };
+            request.onerror = function () {
+                done(null);
+            };
+        } catch (e) {
+            done(null);
+        }
+    }-*/;
+
+    private static native void write( JavaScriptObject database, String key, String template, String text, String etag, double storedAt,
+                                      int version ) /*-{
+        try {
+            database.transaction(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE, 'readwrite')
+                .objectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE)
+                .put({key: key, template: template, text: text, etag: etag, storedAt: storedAt, version: version});
+        } catch (e) {
+            // the cache is best effort, the quota may be exceeded
+        }
+    }-*/;
+
+    private static native void invalidate( JavaScriptObject database, String template ) /*-{
+        try {
+            var request = database.transaction(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE, 'readwrite')
+                .objectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE).openCursor();
+            request.onsuccess = function () {
+                var cursor = request.result;
+                if (cursor) {
+                    if (cursor.value.template === template) {
+                        cursor['delete']();
+                    }
+                    cursor['continue']();
+                }
+            };
+        } catch (e) {
+        }
+    }-*/;
+
+    private static native void clear( JavaScriptObject database ) /*-{
+        try {
+            database.transaction(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE, 'readwrite')
+                .objectStore(@com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache::STORE).clear();
+        } catch (e) {
+        }
+    }-*/;
+
+    private static native String getString( JavaScriptObject value, String name ) /*-{
+        return value[name] == null ? null : String(value[name]);
+    }-*/;
+
+    private static native double getStoredAt( JavaScriptObject value ) /*-{
+        return value.storedAt || 0;
+    }-*/;
+
+    private static native int getVersion( JavaScriptObject value ) /*-{
+        return value.version || 0;
+    }-*/;
+}
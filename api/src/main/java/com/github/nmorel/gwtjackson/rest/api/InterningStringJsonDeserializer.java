@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.github.nmorel.gwtjackson.client.JsonDeserializationContext;
+import com.github.nmorel.gwtjackson.client.JsonDeserializer;
+import com.github.nmorel.gwtjackson.client.JsonDeserializerParameters;
+import com.github.nmorel.gwtjackson.client.stream.JsonReader;
+
+/**
+ * {@link JsonDeserializer} for {@link String} interning the strings in the {@link ResponseInterner} of the response being read. The
+ * strings are returned as is when the request does not intern its values.
+ */
+public class InterningStringJsonDeserializer extends JsonDeserializer<String> {
+
+    private static final InterningStringJsonDeserializer INSTANCE = new InterningStringJsonDeserializer();
+
+    /**
+     * @return an instance of {@link InterningStringJsonDeserializer}
+     */
+    public static InterningStringJsonDeserializer getInstance() {
+        return INSTANCE;
+    }
+
+    private InterningStringJsonDeserializer() {
+    }
+
+    @Override
+    protected String doDeserialize( JsonReader reader, JsonDeserializationContext ctx, JsonDeserializerParameters params ) {
+        return ResponseInterner.intern( reader.nextString() );
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Computes the RFC 6902 JSON Patch sent by the requests in {@link RestRequestBuilder#patch() patch mode} and keeps the snapshots they
+ * are computed against.
+ * <p>A snapshot is the JSON of a resource as the client knows it, written with the writer of its type. It is taken when the resource
+ * is fetched by a request with a {@link RestRequestBuilder#snapshot(com.github.nmorel.gwtjackson.client.ObjectWriter) snapshot
+ * writer} and replaced after each successful update, with the ETag of the response. The snapshots are identified by the url of the
+ * resource without its query and only the most recent ones are kept.</p>
+ * <p>The documents are compared as written, without being converted to JavaScript values, so the numbers keep their precision.</p>
+ */
+public final class JsonPatch {
+
+    public static final String CONTENT_TYPE = "application/json-patch+json";
+
+    /**
+     * The PATCH method, not defined by {@link com.google.gwt.http.client.RequestBuilder}
+     */
+    public static final String METHOD = "PATCH";
+
+    private static final int DEFAULT_MAX_SNAPSHOTS = 64;
+
+    /**
+     * JSON of a resource as the client knows it
+     */
+    static final class Snapshot {
+
+        private final String json;
+
+        private final String etag;
+
+        private Snapshot( String json, String etag ) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        String getJson() {
+            return json;
+        }
+
+        /**
+         * @return the strong ETag of the resource or null if it is unknown
+         */
+        String getEtag() {
+            return etag;
+        }
+    }
+
+    private static final Map<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>();
+
+    private static int maxSnapshots = DEFAULT_MAX_SNAPSHOTS;
+
+    /**
+     * @param maxSnapshots the maximum number of snapshots kept, the least recently taken are dropped first
+     */
+    public static void setMaxSnapshots( int maxSnapshots ) {
+        JsonPatch.maxSnapshots = maxSnapshots;
+        evict();
+    }
+
+    /**
+     * Drops all the snapshots, the next updates will send the whole resources
+     */
+    public static void clearSnapshots() {
+        snapshots.clear();
+    }
+
+    /**
+     * @param requestUrl the url of the request
+     *
+     * @return the key of the snapshot of the resource
+     */
+    static String snapshotKey( String requestUrl ) {
+        int query = requestUrl.indexOf( '?' );
+        return query < 0 ? requestUrl : requestUrl.substring( 0, query );
+    }
+
+    static Snapshot getSnapshot( String key ) {
+        return snapshots.get( key );
+    }
+
+    /**
+     * @param etag the ETag of the resource, can be null. A weak ETag is ignored, it cannot be sent in an If-Match header.
+     */
+    static void putSnapshot( String key, String json, String etag ) {
+        snapshots.remove( key );
+        snapshots.put( key, new Snapshot( json, null == etag || etag.startsWith( "W/" ) ? null : etag ) );
+        evict();
+    }
+
+    static void removeSnapshot( String key ) {
+        snapshots.remove( key );
+    }
+
+    private static void evict() {
+        Iterator<String> keys = snapshots.keySet().iterator();
+        while ( snapshots.size() > maxSnapshots && keys.hasNext() ) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * Computes the operations transforming the source document into the target document, see {@link #diff(String, String,
+     * boolean)}.
+     *
+     * @param source the JSON of the source document
+     * @param target the JSON of the target document
+     *
+     * @return the JSON Patch document, an empty array if the documents are equal
+     */
+    public static String diff( String source, String target ) {
+        return diff( source, target, false );
+    }
+
+    /**
+     * Computes the operations transforming the source document into the target document. The objects are compared by property and
+     * the arrays by index, so an element inserted in the middle of an array replaces the following ones. The values are written in
+     * the patch as they are written in the documents.
+     *
+     * @param source the JSON of the source document
+     * @param target the JSON of the target document
+     * @param tests true to precede each <code>replace</code> and <code>remove</code> operation with a <code>test</code> of the value
+     * it changes, so the patch is rejected if the document has changed since the source was read
+     *
+     * @return the JSON Patch document, an empty array if the documents are equal
+     */
+    public static String diff( String source, String target, boolean tests ) {
+        Diff diff = new Diff( tests );
+        diff.compare( "", new Parser( source ).parseDocument(), new Parser( target ).parseDocument() );
+        return diff.ops.append( ']' ).toString();
+    }
+
+    /**
+     * Value of a JSON document, holding the position of its text in the document
+     */
+    private static final class Node {
+
+        private final String document;
+
+        private final int start;
+
+        private int end;
+
+        /**
+         * Properties of an object, null if the value is not an object
+         */
+        private Map<String, Node> properties;
+
+        /**
+         * Elements of an array, null if the value is not an array
+         */
+        private List<Node> elements;
+
+        private Node( String document, int start ) {
+            this.document = document;
+            this.start = start;
+        }
+
+        private String json() {
+            return document.substring( start, end );
+        }
+
+        /**
+         * @return true if the two values are written the same way
+         */
+        private boolean sameJson( Node other ) {
+            int length = end - start;
+            return length == other.end - other.start && document.regionMatches( start, other.document, other.start, length );
+        }
+    }
+
+    /**
+     * Reads the structure of a JSON document. The strings and the literals are only delimited, not converted.
+     */
+    private static final class Parser {
+
+        private final String text;
+
+        private int position;
+
+        private Parser( String text ) {
+            this.text = text;
+        }
+
+        private Node parseDocument() {
+            Node node = parseValue();
+            skipWhitespace();
+            if ( position != text.length() ) {
+                throw error();
+            }
+            return node;
+        }
+
+        private Node parseValue() {
+            skipWhitespace();
+            Node node = new Node( text, position );
+            char c = peek();
+            if ( c == '{' ) {
+                position++;
+                node.properties = new LinkedHashMap<String, Node>();
+                skipWhitespace();
+                if ( peek() == '}' ) {
+                    position++;
+                } else {
+                    do {
+                        skipWhitespace();
+                        String name = parseString( true );
+                        skipWhitespace();
+                        expect( ':' );
+                        node.properties.put( name, parseValue() );
+                        skipWhitespace();
+                    } while ( next( ',' ) );
+                    expect( '}' );
+                }
+            } else if ( c == '[' ) {
+                position++;
+                node.elements = new ArrayList<Node>();
+                skipWhitespace();
+                if ( peek() == ']' ) {
+                    position++;
+                } else {
+                    do {
+                        node.elements.add( parseValue() );
+                        skipWhitespace();
+                    } while ( next( ',' ) );
+                    expect( ']' );
+                }
+            } else if ( c == '"' ) {
+                parseString( false );
+            } else {
+                // number, true, false or null
+                while ( position < text.length() && isLiteral( text.charAt( position ) ) ) {
+                    position++;
+                }
+                if ( position == node.start ) {
+                    throw error();
+                }
+            }
+            node.end = position;
+            return node;
+        }
+
+        /**
+         * @param decode true to return the decoded string, false to only skip it
+         */
+        private String parseString( boolean decode ) {
+            expect( '"' );
+            StringBuilder builder = decode ? new StringBuilder() : null;
+            while ( position < text.length() ) {
+                char c = text.charAt( position++ );
+                if ( c == '"' ) {
+                    return decode ? builder.toString() : null;
+                }
+                if ( c == '\\' ) {
+                    if ( position >= text.length() ) {
+                        break;
+                    }
+                    c = text.charAt( position++ );
+                    if ( c == 'u' ) {
+                        if ( position + 4 > text.length() ) {
+                            break;
+                        }
+                        if ( decode ) {
+                            try {
+                                c = (char) Integer.parseInt( text.substring( position, position + 4 ), 16 );
+                            } catch ( NumberFormatException e ) {
+                                throw error();
+                            }
+                        }
+                        position += 4;
+                    } else if ( c == 'b' ) {
+                        c = '\b';
+                    } else if ( c == 'f' ) {
+                        c = '\f';
+                    } else if ( c == 'n' ) {
+                        c = '\n';
+                    } else if ( c == 'r' ) {
+                        c = '\r';
+                    } else if ( c == 't' ) {
+                        c = '\t';
+                    }
+                }
+                if ( decode ) {
+                    builder.append( c );
+                }
+            }
+            throw error();
+        }
+
+        private boolean isLiteral( char c ) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '+' || c == '.';
+        }
+
+        private void skipWhitespace() {
+            while ( position < text.length() && isWhitespace( text.charAt( position ) ) ) {
+                position++;
+            }
+        }
+
+        private boolean isWhitespace( char c ) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
+
+        private char peek() {
+            return position < text.length() ? text.charAt( position ) : 0;
+        }
+
+        private boolean next( char c ) {
+            if ( peek() == c ) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect( char c ) {
+            if ( !next( c ) ) {
+                throw error();
+            }
+        }
+
+        private RestException error() {
+            return new RestException( "Malformed JSON at position " + position );
+        }
+    }
+
+    /**
+     * Writes the operations transforming a document into another
+     */
+    private static final class Diff {
+
+        private final StringBuilder ops = new StringBuilder( "[" );
+
+        private final boolean tests;
+
+        private Diff( boolean tests ) {
+            this.tests = tests;
+        }
+
+        private void compare( String path, Node source, Node target ) {
+            if ( source.sameJson( target ) ) {
+                return;
+            }
+            if ( null != source.properties && null != target.properties ) {
+                for ( Entry<String, Node> property : source.properties.entrySet() ) {
+                    String propertyPath = path + '/' + escape( property.getKey() );
+                    Node targetValue = target.properties.get( property.getKey() );
+                    if ( null == targetValue ) {
+                        remove( propertyPath, property.getValue() );
+                    } else {
+                        compare( propertyPath, property.getValue(), targetValue );
+                    }
+                }
+                for ( Entry<String, Node> property : target.properties.entrySet() ) {
+                    if ( !source.properties.containsKey( property.getKey() ) ) {
+                        operation( "add", path + '/' + escape( property.getKey() ), property.getValue() );
+                    }
+                }
+            } else if ( null != source.elements && null != target.elements ) {
+                int common = Math.min( source.elements.size(), target.elements.size() );
+                for ( int i = 0; i < common; i++ ) {
+                    compare( path + '/' + i, source.elements.get( i ), target.elements.get( i ) );
+                }
+                for ( int i = common; i < target.elements.size(); i++ ) {
+                    operation( "add", path + "/-", target.elements.get( i ) );
+                }
+                // removed from the end so the indexes stay valid
+                for ( int i = source.elements.size() - 1; i >= common; i-- ) {
+                    remove( path + '/' + i, source.elements.get( i ) );
+                }
+            } else {
+                if ( tests ) {
+                    operation( "test", path, source );
+                }
+                operation( "replace", path, target );
+            }
+        }
+
+        private void remove( String path, Node value ) {
+            if ( tests ) {
+                operation( "test", path, value );
+            }
+            operation( "remove", path, null );
+        }
+
+        private void operation( String op, String path, Node value ) {
+            if ( ops.length() > 1 ) {
+                ops.append( ',' );
+            }
+            ops.append( "{\"op\":\"" ).append( op ).append( "\",\"path\":" );
+            quote( path );
+            if ( null != value ) {
+                ops.append( ",\"value\":" ).append( value.json() );
+            }
+            ops.append( '}' );
+        }
+
+        private void quote( String value ) {
+            ops.append( '"' );
+            for ( int i = 0; i < value.length(); i++ ) {
+                char c = value.charAt( i );
+                if ( c == '"' || c == '\\' ) {
+                    ops.append( '\\' ).append( c );
+                } else if ( c < 0x20 ) {
+                    String hex = Integer.toHexString( c );
+                    ops.append( "\\u00" ).append( hex.length() == 1 ? "0" : "" ).append( hex );
+                } else {
+                    ops.append( c );
+                }
+            }
+            ops.append( '"' );
+        }
+
+        /**
+         * @return the reference token of the property in a JSON Pointer (RFC 6901)
+         */
+        private String escape( String name ) {
+            return name.replace( "~", "~0" ).replace( "/", "~1" );
+        }
+    }
+
+    private JsonPatch() {
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link RestResponseCache} evicting the least recently used responses when the total size of the stored responses exceeds a budget.
+ */
+public class LruResponseCache implements RestResponseCache {
+
+    private final int maxSize;
+
+    private final Map<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>( 16, 0.75f, true );
+
+    private int size;
+
+    /**
+     * @param maxSize maximum size in bytes of the stored responses
+     */
+    public LruResponseCache( int maxSize ) {
+        if ( maxSize <= 0 ) {
+            throw new IllegalArgumentException( "The maximum size must be positive" );
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public CachedResponse get( String url ) {
+        return responses.get( url );
+    }
+
+    @Override
+    public void put( String url, CachedResponse response ) {
+        CachedResponse previous = responses.remove( url );
+        if ( null != previous ) {
+            size -= previous.getSize();
+        }
+
+        if ( response.getSize() > maxSize ) {
+            // it would evict everything else and then itself
+            return;
+        }
+
+        responses.put( url, response );
+        size += response.getSize();
+
+        Iterator<CachedResponse> iterator = responses.values().iterator();
+        while ( size > maxSize && iterator.hasNext() ) {
+            size -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public void invalidate( String template ) {
+        Iterator<CachedResponse> iterator = responses.values().iterator();
+        while ( iterator.hasNext() ) {
+            CachedResponse response = iterator.next();
+            if ( template.equals( response.getTemplate() ) ) {
+                size -= response.getSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        responses.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the estimated size in bytes of the stored responses
+     */
+    public int getSize() {
+        return size;
+    }
+}
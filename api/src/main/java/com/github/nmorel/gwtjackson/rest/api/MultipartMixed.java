@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Reads and writes the <code>multipart/mixed</code> content of a batch request. Each part embeds an HTTP message with the
+ * <code>application/http</code> content type. Shared by the client and the server side.
+ */
+public final class MultipartMixed {
+
+    public static final String CONTENT_TYPE = "multipart/mixed";
+
+    public static final String PART_CONTENT_TYPE = "application/http";
+
+    private static final String CRLF = "\r\n";
+
+    /**
+     * A part of a multipart content or an HTTP message. The start line is null for a multipart part.
+     */
+    public static final class Part {
+
+        private final String startLine;
+
+        private final Map<String, String> headers;
+
+        private final String body;
+
+        public Part( String startLine, Map<String, String> headers, String body ) {
+            this.startLine = startLine;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getStartLine() {
+            return startLine;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        /**
+         * @param name name of the header, case insensitive
+         *
+         * @return the value of the header or null if not found
+         */
+        public String getHeader( String name ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                if ( header.getKey().equalsIgnoreCase( name ) ) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * @param contentType value of the Content-Type header
+     *
+     * @return the boundary declared in the content type or null if there is none
+     */
+    public static String getBoundary( String contentType ) {
+        if ( null == contentType ) {
+            return null;
+        }
+        int index = contentType.toLowerCase().indexOf( "boundary=" );
+        if ( index < 0 ) {
+            return null;
+        }
+        String boundary = contentType.substring( index + "boundary=".length() );
+        int end = boundary.indexOf( ';' );
+        if ( end >= 0 ) {
+            boundary = boundary.substring( 0, end );
+        }
+        boundary = boundary.trim();
+        if ( boundary.length() > 1 && boundary.startsWith( "\"" ) && boundary.endsWith( "\"" ) ) {
+            boundary = boundary.substring( 1, boundary.length() - 1 );
+        }
+        return boundary;
+    }
+
+    /**
+     * Splits a multipart content into its parts.
+     *
+     * @param content the multipart content
+     * @param boundary the boundary separating the parts
+     *
+     * @return the parts
+     */
+    public static List<Part> parse( String content, String boundary ) {
+        List<Part> parts = new ArrayList<Part>();
+        String delimiter = "--" + boundary;
+
+        int index = content.indexOf( delimiter );
+        while ( index >= 0 ) {
+            int start = index + delimiter.length();
+            if ( content.startsWith( "--", start ) ) {
+                // closing delimiter
+                break;
+            }
+            start = skipLineBreak( content, start );
+
+            int next = content.indexOf( delimiter, start );
+            if ( next < 0 ) {
+                break;
+            }
+            // the line break preceding the delimiter belongs to the delimiter
+            int end = next;
+            if ( end > start && content.charAt( end - 1 ) == '\n' ) {
+                end--;
+                if ( end > start && content.charAt( end - 1 ) == '\r' ) {
+                    end--;
+                }
+            }
+
+            parts.add( parseMessage( content.substring( start, end ), false ) );
+            index = next;
+        }
+        return parts;
+    }
+
+    /**
+     * Parses an HTTP message made of a start line, the headers and the body.
+     *
+     * @param message the message
+     *
+     * @return the parsed message
+     */
+    public static Part parseHttpMessage( String message ) {
+        return parseMessage( message, true );
+    }
+
+    private static Part parseMessage( String message, boolean withStartLine ) {
+        String startLine = null;
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+
+        int index = 0;
+        if ( withStartLine ) {
+            int end = lineEnd( message, index );
+            startLine = message.substring( index, end );
+            index = skipLineBreak( message, end );
+        }
+
+        while ( index < message.length() ) {
+            int end = lineEnd( message, index );
+            if ( end == index ) {
+                // empty line, the body starts after it
+                index = skipLineBreak( message, end );
+                break;
+            }
+            String line = message.substring( index, end );
+            int colon = line.indexOf( ':' );
+            if ( colon > 0 ) {
+                headers.put( line.substring( 0, colon ).trim(), line.substring( colon + 1 ).trim() );
+            }
+            index = skipLineBreak( message, end );
+        }
+
+        return new Part( startLine, headers, index < message.length() ? message.substring( index ) : "" );
+    }
+
+    private static int lineEnd( String content, int start ) {
+        int end = content.indexOf( '\n', start );
+        if ( end < 0 ) {
+            return content.length();
+        }
+        if ( end > start && content.charAt( end - 1 ) == '\r' ) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int skipLineBreak( String content, int index ) {
+        if ( index < content.length() && content.charAt( index ) == '\r' ) {
+            index++;
+        }
+        if ( index < content.length() && content.charAt( index ) == '\n' ) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Appends a part embedding an HTTP message.
+     *
+     * @param builder the builder containing the multipart content
+     * @param boundary the boundary separating the parts
+     * @param contentId identifier of the part
+     * @param startLine the start line of the HTTP message
+     * @param headers the headers of the HTTP message
+     * @param body the body of the HTTP message, can be null
+     */
+    public static void appendHttpPart( StringBuilder builder, String boundary, String contentId, String startLine,
+                                       Map<String, String> headers, String body ) {
+        builder.append( "--" ).append( boundary ).append( CRLF );
+        builder.append( "Content-Type: " ).append( PART_CONTENT_TYPE ).append( CRLF );
+        builder.append( "Content-ID: " ).append( contentId ).append( CRLF );
+        builder.append( CRLF );
+
+        builder.append( startLine ).append( CRLF );
+        if ( null != headers ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                builder.append( header.getKey() ).append( ": " ).append( header.getValue() ).append( CRLF );
+            }
+        }
+        builder.append( CRLF );
+        if ( null != body ) {
+            builder.append( body );
+        }
+        builder.append( CRLF );
+    }
+
+    /**
+     * Appends the closing delimiter.
+     *
+     * @param builder the builder containing the multipart content
+     * @param boundary the boundary separating the parts
+     */
+    public static void appendEnd( StringBuilder builder, String boundary ) {
+        builder.append( "--" ).append( boundary ).append( "--" ).append( CRLF );
+    }
+
+    private MultipartMixed() {
+    }
+}
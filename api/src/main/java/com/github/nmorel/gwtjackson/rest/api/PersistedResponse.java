@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+
+/**
+ * {@link Response} read from an {@link IndexedDbResponseCache}. Only the body and the ETag of the response are stored, so it has
+ * no other header.
+ */
+class PersistedResponse extends Response {
+
+    private final String text;
+
+    private final String etag;
+
+    /**
+     * @param text the stored body
+     * @param etag the stored ETag, can be null
+     */
+    PersistedResponse( String text, String etag ) {
+        this.text = text;
+        this.etag = etag;
+    }
+
+    @Override
+    public String getHeader( String header ) {
+        return null != etag && "ETag".equalsIgnoreCase( header ) ? etag : null;
+    }
+
+    @Override
+    public Header[] getHeaders() {
+        if ( null == etag ) {
+            return new Header[0];
+        }
+        return new Header[]{new Header() {
+            @Override
+            public String getName() {
+                return "ETag";
+            }
+
+            @Override
+            public String getValue() {
+                return etag;
+            }
+        }};
+    }
+
+    @Override
+    public String getHeadersAsString() {
+        return null == etag ? "" : "ETag: " + etag + "\r\n";
+    }
+
+    @Override
+    public int getStatusCode() {
+        return SC_OK;
+    }
+
+    @Override
+    public String getStatusText() {
+        return "OK";
+    }
+
+    @Override
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Request sent during idle time whose result is kept in a short-lived slot until a matching request consumes it.
+ * <p>Prefetches are cancelled and their slots dropped when the JavaScript heap is almost full or when real requests are queued by
+ * the {@link RestRequestScheduler}.</p>
+ */
+class PrefetchedRequest<R> extends RestCallback<R> {
+
+    static final int DEFAULT_TTL_MILLIS = 30000;
+
+    private static final int MAX_SLOTS = 32;
+
+    private static final Map<String, PrefetchedRequest<?>> slots = new LinkedHashMap<String, PrefetchedRequest<?>>();
+
+    /**
+     * @return true if there is no prefetch
+     */
+    static boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /**
+     * @param key the key identifying the request
+     *
+     * @return true if there is already a prefetch for the given key
+     */
+    static boolean contains( String key ) {
+        PrefetchedRequest<?> prefetch = slots.get( key );
+        if ( null != prefetch && prefetch.isExpired() ) {
+            prefetch.cancel();
+            return false;
+        }
+        return null != prefetch;
+    }
+
+    /**
+     * Registers a new prefetch. {@link #startWhenIdle(Runnable)} must then be called.
+     *
+     * @param key the key identifying the request
+     * @param ttlMillis time in milliseconds the result is kept once received
+     *
+     * @return the new prefetch or null if the memory is low
+     */
+    static <R> PrefetchedRequest<R> create( String key, int ttlMillis ) {
+        if ( isMemoryLow() ) {
+            cancelAll();
+            return null;
+        }
+        PrefetchedRequest<R> prefetch = new PrefetchedRequest<R>( key, ttlMillis );
+        slots.put( key, prefetch );
+        if ( slots.size() > MAX_SLOTS ) {
+            slots.values().iterator().next().cancel();
+        }
+        return prefetch;
+    }
+
+    /**
+     * Hands the prefetch matching the given key to a real request.
+     *
+     * @param key the key identifying the request
+     * @param callback the callback of the real request
+     *
+     * @return the handle of the real request or null if there is no usable prefetch and the request must be sent
+     */
+    @SuppressWarnings( "unchecked" )
+    static <R> Request take( String key, RestCallback<R> callback ) {
+        PrefetchedRequest<R> prefetch = (PrefetchedRequest<R>) slots.remove( key );
+        if ( null == prefetch ) {
+            return null;
+        }
+        if ( null == prefetch.request || prefetch.isExpired() || prefetch.isQueued() ) {
+            // not on the network yet, the real request is sent instead with its own priority
+            prefetch.cancel();
+            return null;
+        }
+        return prefetch.handTo( callback );
+    }
+
+    /**
+     * Cancels the prefetches and drops their results.
+     */
+    static void cancelAll() {
+        if ( slots.isEmpty() ) {
+            return;
+        }
+        List<PrefetchedRequest<?>> prefetches = new ArrayList<PrefetchedRequest<?>>( slots.values() );
+        for ( PrefetchedRequest<?> prefetch : prefetches ) {
+            prefetch.cancel();
+        }
+    }
+
+    /**
+     * Cancels the prefetches still waiting for their response so they do not compete with real requests. The received results are
+     * kept.
+     */
+    static void cancelInFlight() {
+        Iterator<PrefetchedRequest<?>> iterator = slots.values().iterator();
+        while ( iterator.hasNext() ) {
+            PrefetchedRequest<?> prefetch = iterator.next();
+            if ( !prefetch.done ) {
+                iterator.remove();
+                prefetch.abort();
+            }
+        }
+    }
+
+    /**
+     * Only Chrome exposes the size of the heap, the memory is never considered low in the other browsers.
+     */
+    static native boolean isMemoryLow() /*-{
+        var memory = $wnd.performance && $wnd.performance.memory;
+        return !!memory && memory.jsHeapSizeLimit > 0 && memory.usedJSHeapSize / memory.jsHeapSizeLimit > 0.9;
+    }-*/;
+
+    private static native void requestIdleCallback( Runnable command ) /*-{
+        var run = $entry(function () {
+            command.@java.lang.Runnable::run()();
+        });
+        if ($wnd.requestIdleCallback) {
+            $wnd.requestIdleCallback(run);
+        } else {
+            $wnd.setTimeout(run, 1);
+        }
+    }-*/;
+
+    /**
+     * Handle of the prefetch or of the real request consuming it
+     */
+    private class Handle extends Request {
+
+        @Override
+        public void cancel() {
+            PrefetchedRequest.this.cancel();
+        }
+
+        @Override
+        public boolean isPending() {
+            return !cancelled && ( !done || delivering );
+        }
+    }
+
+    private final String key;
+
+    private final int ttlMillis;
+
+    private Request request;
+
+    /**
+     * Scheduler queuing the prefetch and builder of the prefetch, null if the prefetch is not scheduled
+     */
+    private RestRequestScheduler scheduler;
+
+    private RequestBuilder builder;
+
+    private boolean cancelled;
+
+    private boolean done;
+
+    /**
+     * True while the received result is waiting to be delivered to the real request
+     */
+    private boolean delivering;
+
+    private double expiresAt;
+
+    private RestCallback<R> consumer;
+
+    private Response response;
+
+    private R result;
+
+    private PrefetchedRequest( String key, int ttlMillis ) {
+        this.key = key;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @param send sends the request and calls {@link #start(Request)}, it is run during idle time unless the prefetch is cancelled
+     * in the meantime
+     *
+     * @return the handle of the prefetch
+     */
+    Request startWhenIdle( final Runnable send ) {
+        requestIdleCallback( new Runnable() {
+            @Override
+            public void run() {
+                if ( cancelled ) {
+                    return;
+                }
+                if ( isMemoryLow() ) {
+                    cancelAll();
+                    return;
+                }
+                send.run();
+            }
+        } );
+        return new Handle();
+    }
+
+    void start( Request request ) {
+        this.request = request;
+        if ( cancelled ) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * @param scheduler the scheduler sending the prefetch
+     * @param builder the builder of the prefetch
+     */
+    void scheduled( RestRequestScheduler scheduler, RequestBuilder builder ) {
+        this.scheduler = scheduler;
+        this.builder = builder;
+    }
+
+    /**
+     * @return true if the prefetch is still waiting in the queue of the scheduler, behind the other requests
+     */
+    private boolean isQueued() {
+        return !done && null != scheduler && scheduler.isQueued( builder );
+    }
+
+    private boolean isExpired() {
+        return done && Duration.currentTimeMillis() > expiresAt;
+    }
+
+    private Request handTo( final RestCallback<R> callback ) {
+        if ( !done ) {
+            consumer = callback;
+            return new Handle();
+        }
+        release();
+        // the callback of a request is never called before send() returns, like for a request sent on the network
+        delivering = true;
+        Scheduler.get().scheduleDeferred( new ScheduledCommand() {
+            @Override
+            public void execute() {
+                delivering = false;
+                if ( !cancelled && null != callback ) {
+                    callback.onSuccess( response, result );
+                }
+            }
+        } );
+        return new Handle();
+    }
+
+    private void cancel() {
+        if ( cancelled ) {
+            return;
+        }
+        release();
+        abort();
+    }
+
+    private void abort() {
+        cancelled = true;
+        response = null;
+        result = null;
+        if ( !done && null != request ) {
+            request.cancel();
+        }
+    }
+
+    private void release() {
+        if ( slots.get( key ) == this ) {
+            slots.remove( key );
+        }
+    }
+
+    @Override
+    public void onSuccess( Response response, R result ) {
+        done = true;
+        if ( null != consumer ) {
+            consumer.onSuccess( response, result );
+        } else if ( slots.get( key ) == this ) {
+            if ( isMemoryLow() ) {
+                cancelAll();
+                return;
+            }
+            this.response = response;
+            this.result = result;
+            this.expiresAt = Duration.currentTimeMillis() + ttlMillis;
+        }
+    }
+
+    @Override
+    public void onSuccess( R result ) {
+        onSuccess( null, result );
+    }
+
+    @Override
+    public void onError( Response response ) {
+        done = true;
+        release();
+        if ( null != consumer ) {
+            consumer.onError( response );
+        }
+    }
+
+    @Override
+    public void onFailure( Throwable throwable ) {
+        done = true;
+        release();
+        if ( null != consumer ) {
+            consumer.onFailure( throwable );
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.google.gwt.http.client.URL;
+
+/**
+ * Encodes the names and values of the query parameters with {@link URL#encodeQueryString(String)}.
+ * <p>Package-private for the benchmarks : the methods of {@link URL} are native JavaScript, so the benchmarks running on the JVM
+ * replace the {@link #instance} with a JVM encoder.</p>
+ */
+class QueryStringEncoder {
+
+    static QueryStringEncoder instance = new QueryStringEncoder();
+
+    String encode( String value ) {
+        return URL.encodeQueryString( value );
+    }
+}
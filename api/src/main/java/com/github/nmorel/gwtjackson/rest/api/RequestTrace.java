@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.List;
+
+/**
+ * Notifies the listeners of a request at the end of each phase.
+ */
+class RequestTrace {
+
+    private final List<RestRequestListener> listeners;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final String httpMethod;
+
+    private String url;
+
+    private double networkStart;
+
+    private boolean networkEnded;
+
+    RequestTrace( List<RestRequestListener> listeners, String serviceName, String methodName, String httpMethod ) {
+        this.listeners = listeners;
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.httpMethod = httpMethod;
+    }
+
+    void setUrl( String url ) {
+        this.url = url;
+    }
+
+    void startNetwork() {
+        networkStart = RestRequestEvent.now();
+    }
+
+    /**
+     * Fires the {@link RestRequestPhase#NETWORK} event if it has not been fired yet.
+     */
+    void endNetwork() {
+        if ( networkEnded ) {
+            return;
+        }
+        networkEnded = true;
+        fire( RestRequestPhase.NETWORK, networkStart, RestRequestEvent.now() );
+    }
+
+    void fire( RestRequestPhase phase, double start, double end ) {
+        RestRequestEvent event = new RestRequestEvent( serviceName, methodName, httpMethod, url, phase, start, end );
+        for ( RestRequestListener listener : listeners ) {
+            listener.onPhase( event );
+        }
+    }
+}
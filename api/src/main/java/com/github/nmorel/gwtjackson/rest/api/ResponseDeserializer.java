@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.Callback;
+
+/**
+ * Strategy reading the body of a successful response. It lets an application move the deserialization of large responses out of the
+ * XMLHttpRequest event handler, for example to yield to the browser first or to delegate the parsing to a worker compiled with the
+ * same readers.
+ */
+public interface ResponseDeserializer {
+
+    /**
+     * Deserializes the text with the reader and gives the result to the callback. The callback can be called synchronously or later.
+     *
+     * @param text the body of the response, never empty
+     * @param reader the reader of the expected type
+     * @param callback the callback receiving the result or the error
+     */
+    <R> void deserialize( String text, ObjectReader<R> reader, Callback<R, Throwable> callback );
+}
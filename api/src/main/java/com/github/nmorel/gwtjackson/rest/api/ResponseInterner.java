@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.nmorel.gwtjackson.client.JsonDeserializationContext;
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.github.nmorel.gwtjackson.client.exception.JsonDeserializationException;
+
+/**
+ * Bounded table deduplicating the values read in the responses, so a value repeated many times is only kept once on the heap.
+ * <p>The strings are interned by {@link InterningStringJsonDeserializer}, registered by the module
+ * <code>com.github.nmorel.gwtjackson.rest.GwtJacksonRestInterning</code>. The value types, immutable objects implementing {@link
+ * Object#equals(Object)} and {@link Object#hashCode()}, are interned by calling {@link #intern(Object)} in their creator.</p>
+ * <p>A table is either scoped to a response, see {@link RestRequestBuilder#intern()}, or shared by the requests, see {@link
+ * RestRequestBuilder#interner(ResponseInterner)} and {@link #session()}. Once it is full, the new values are not interned anymore.</p>
+ */
+public class ResponseInterner {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * The longer strings are rarely repeated and are not interned
+     */
+    static final int MAX_STRING_LENGTH = 256;
+
+    /**
+     * Table of the response being read, reads are synchronous so there is at most one
+     */
+    private static ResponseInterner current;
+
+    private static ResponseInterner session;
+
+    /**
+     * @return the table shared by the requests using the session scope
+     */
+    public static ResponseInterner session() {
+        if ( null == session ) {
+            session = new ResponseInterner();
+        }
+        return session;
+    }
+
+    /**
+     * Interns the value in the table of the response being read. Outside of a read or if the request does not intern its values, the
+     * value is returned as is.
+     *
+     * @param value the value
+     *
+     * @return the value equal to the given one already in the table or the given value
+     */
+    public static <T> T intern( T value ) {
+        if ( null == current || null == value ) {
+            return value;
+        }
+        return current.internValue( value );
+    }
+
+    private final int maxSize;
+
+    private final Map<Object, Object> values = new HashMap<Object, Object>();
+
+    /**
+     * Creates a table of at most {@value #DEFAULT_MAX_SIZE} values
+     */
+    public ResponseInterner() {
+        this( DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @param maxSize maximum number of values in the table
+     */
+    public ResponseInterner( int maxSize ) {
+        this.maxSize = maxSize;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T> T internValue( T value ) {
+        if ( value instanceof String && ((String) value).length() > MAX_STRING_LENGTH ) {
+            return value;
+        }
+        Object interned = values.get( value );
+        if ( null != interned && interned.getClass() == value.getClass() ) {
+            return (T) interned;
+        }
+        if ( null == interned && values.size() < maxSize ) {
+            values.put( value, value );
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of values in the table
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Removes all the values from the table
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * @param reader the reader
+     *
+     * @return a reader interning the values in this table while it reads
+     */
+    <R> ObjectReader<R> wrap( final ObjectReader<R> reader ) {
+        if ( null == reader ) {
+            return null;
+        }
+        return new ObjectReader<R>() {
+            @Override
+            public R read( String input ) throws JsonDeserializationException {
+                ResponseInterner previous = current;
+                current = ResponseInterner.this;
+                try {
+                    return reader.read( input );
+                } finally {
+                    current = previous;
+                }
+            }
+
+            @Override
+            public R read( String input, JsonDeserializationContext ctx ) throws JsonDeserializationException {
+                ResponseInterner previous = current;
+                current = ResponseInterner.this;
+                try {
+                    return reader.read( input, ctx );
+                } finally {
+                    current = previous;
+                }
+            }
+        };
+    }
+}
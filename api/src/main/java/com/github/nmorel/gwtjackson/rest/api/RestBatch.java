@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.RequestTimeoutException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Groups the requests sent by the callback given to {@link #send(Runnable)} into a single <code>multipart/mixed</code> request.
+ * Each request keeps its own {@link com.github.nmorel.gwtjackson.client.ObjectReader}, {@link RestCallback} and timeout.
+ * <pre>
+ * RestBatch.create( "rest/batch" ).send( new Runnable() {
+ *     public void run() {
+ *         MyResourceBuilder.getUser( id, userCallback );
+ *         MyResourceBuilder.getRights( id, rightsCallback );
+ *     }
+ * } );
+ * </pre>
+ * A request with a user or a password cannot be batched.
+ * The server side is handled by {@link com.github.nmorel.gwtjackson.rest.server.BatchResource}.
+ */
+public class RestBatch {
+
+    private static final Random random = new Random();
+
+    private static RestBatch current;
+
+    /**
+     * @param url url of the batch resource
+     *
+     * @return a new batch
+     */
+    public static RestBatch create( String url ) {
+        return new RestBatch( url );
+    }
+
+    /**
+     * @return the batch capturing the requests or null if there is none
+     */
+    static RestBatch current() {
+        return current;
+    }
+
+    /**
+     * Handle of a request sent inside the batch.
+     */
+    private class Part extends Request {
+
+        private final String id;
+
+        private final BatchRequestBuilder builder;
+
+        private boolean cancelled;
+
+        private boolean completed;
+
+        /**
+         * Request used when the part is sent on its own
+         */
+        private Request request;
+
+        /**
+         * Timer failing the part if it has its own timeout
+         */
+        private Timer timer;
+
+        private Part( String id, BatchRequestBuilder builder ) {
+            this.id = id;
+            this.builder = builder;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelTimer();
+            if ( null != request ) {
+                request.cancel();
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            if ( cancelled || completed ) {
+                return false;
+            }
+            return null == request || request.isPending();
+        }
+
+        private void startTimer() {
+            final int timeoutMillis = builder.getTimeoutMillis();
+            if ( timeoutMillis > 0 ) {
+                timer = new Timer() {
+                    @Override
+                    public void run() {
+                        timer = null;
+                        onError( new RequestTimeoutException( Part.this, timeoutMillis ) );
+                    }
+                };
+                timer.schedule( timeoutMillis );
+            }
+        }
+
+        private void cancelTimer() {
+            if ( null != timer ) {
+                timer.cancel();
+                timer = null;
+            }
+        }
+
+        private void onResponseReceived( Response response ) {
+            if ( !cancelled && !completed ) {
+                completed = true;
+                cancelTimer();
+                builder.getCallback().onResponseReceived( this, response );
+            }
+        }
+
+        private void onError( Throwable exception ) {
+            if ( !cancelled && !completed ) {
+                completed = true;
+                cancelTimer();
+                builder.getCallback().onError( this, exception );
+            }
+        }
+    }
+
+    private final String url;
+
+    private final List<Part> parts = new ArrayList<Part>();
+
+    private Integer timeoutMillis;
+
+    private boolean sent;
+
+    private RestBatch( String url ) {
+        this.url = url;
+    }
+
+    /**
+     * @param timeoutMillis timeout in milliseconds of the batch request
+     *
+     * @return this batch
+     */
+    public RestBatch timeout( int timeoutMillis ) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    boolean isSent() {
+        return sent;
+    }
+
+    Request add( BatchRequestBuilder builder ) {
+        Part part = new Part( Integer.toString( parts.size() + 1 ), builder );
+        parts.add( part );
+        return part;
+    }
+
+    /**
+     * Runs the given callback and sends all the requests it sent in this batch. The requests sent outside of the callback, even
+     * asynchronously from it, are not batched. If the callback throws an exception, none of the captured requests is sent.
+     *
+     * @param requests callback sending the requests
+     *
+     * @return the batch request or null if no request has been added
+     */
+    public Request send( Runnable requests ) {
+        if ( sent ) {
+            throw new IllegalStateException( "The batch has already been sent" );
+        }
+        if ( null != current ) {
+            throw new IllegalStateException( "Another batch is already capturing the requests" );
+        }
+        current = this;
+        try {
+            requests.run();
+        } finally {
+            current = null;
+            sent = true;
+        }
+        return send();
+    }
+
+    private Request send() {
+        final List<Part> liveParts = new ArrayList<Part>( parts.size() );
+        for ( Part part : parts ) {
+            if ( !part.cancelled ) {
+                liveParts.add( part );
+            }
+        }
+        if ( liveParts.isEmpty() ) {
+            return null;
+        }
+        if ( liveParts.size() == 1 ) {
+            // no need to wrap a single request
+            Part part = liveParts.get( 0 );
+            part.request = send( part.builder );
+            return part;
+        }
+
+        String boundary = "batch_" + Integer.toHexString( random.nextInt() ) + Integer.toHexString( random.nextInt() );
+        StringBuilder content = new StringBuilder();
+        for ( Part part : liveParts ) {
+            String startLine = part.builder.getHTTPMethod() + " " + toAbsolutePath( part.builder.getUrl() ) + " HTTP/1.1";
+            MultipartMixed.appendHttpPart( content, boundary, part.id, startLine, part.builder.getHeaders(), part.builder
+                    .getRequestData() );
+        }
+        MultipartMixed.appendEnd( content, boundary );
+
+        boolean includeCredentials = false;
+        for ( Part part : liveParts ) {
+            includeCredentials |= part.builder.isIncludeCredentials();
+        }
+
+        RequestBuilder builder = new RequestBuilder( RequestBuilder.POST, url );
+        builder.setHeader( "Content-Type", MultipartMixed.CONTENT_TYPE + "; boundary=" + boundary );
+        builder.setHeader( "Accept", MultipartMixed.CONTENT_TYPE );
+        if ( null != timeoutMillis ) {
+            builder.setTimeoutMillis( timeoutMillis );
+        }
+        if ( includeCredentials ) {
+            builder.setIncludeCredentials( true );
+        }
+        builder.setRequestData( content.toString() );
+        builder.setCallback( new RequestCallback() {
+            @Override
+            public void onResponseReceived( Request request, Response response ) {
+                dispatch( liveParts, response );
+            }
+
+            @Override
+            public void onError( Request request, Throwable exception ) {
+                for ( Part part : liveParts ) {
+                    part.onError( exception );
+                }
+            }
+        } );
+        Request request = send( builder );
+        for ( Part part : liveParts ) {
+            part.startTimer();
+        }
+        return request;
+    }
+
+    private void dispatch( List<Part> liveParts, Response response ) {
+        String boundary = MultipartMixed.getBoundary( response.getHeader( "Content-Type" ) );
+        int statusCode = response.getStatusCode();
+        if ( statusCode < 200 || statusCode >= 300 || null == boundary || null == response.getText() ) {
+            RestException exception = new RestException( "The batch request failed. Status : " + statusCode );
+            for ( Part part : liveParts ) {
+                part.onError( exception );
+            }
+            return;
+        }
+
+        Map<String, MultipartMixed.Part> responses = new HashMap<String, MultipartMixed.Part>();
+        for ( MultipartMixed.Part part : MultipartMixed.parse( response.getText(), boundary ) ) {
+            responses.put( part.getHeader( "Content-ID" ), part );
+        }
+
+        for ( Part part : liveParts ) {
+            MultipartMixed.Part partResponse = responses.get( "response-" + part.id );
+            if ( null == partResponse ) {
+                part.onError( new RestException( "No response found in the batch for the request " + part.builder.getUrl() ) );
+            } else {
+                part.onResponseReceived( new BatchResponse( MultipartMixed.parseHttpMessage( partResponse.getBody() ) ) );
+            }
+        }
+    }
+
+    /**
+     * The server resolves the url of each part against its own origin so we only send the absolute path.
+     */
+    private static String toAbsolutePath( String url ) {
+        if ( url.startsWith( "/" ) ) {
+            return url;
+        }
+        String absoluteUrl = url.indexOf( "://" ) > 0 ? url : GWT.getHostPageBaseURL() + url;
+        int scheme = absoluteUrl.indexOf( "://" );
+        int path = absoluteUrl.indexOf( '/', scheme + 3 );
+        return path < 0 ? "/" : absoluteUrl.substring( path );
+    }
+
+    private static Request send( RequestBuilder builder ) {
+        try {
+            return builder.send();
+        } catch ( RequestException e ) {
+            throw new RestException( e );
+        }
+    }
+}
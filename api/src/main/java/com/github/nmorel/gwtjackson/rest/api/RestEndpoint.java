@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.github.nmorel.gwtjackson.client.ObjectWriter;
+import com.google.gwt.http.client.RequestBuilder.Method;
+
+/**
+ * Immutable prototype of the requests to an endpoint. It holds the parts that are identical for every call so a
+ * {@link RestRequestBuilder} created from it only has to receive the path and query parameters, stored by index in fixed-size arrays.
+ * <p>The generated builders create one lazily per REST method. The arrays given to the constructor are copied.</p>
+ */
+public final class RestEndpoint<B, R> {
+
+    private final Method method;
+
+    private final UrlTemplate urlTemplate;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    /**
+     * Header names and values : <code>{name0, value0, name1, value1, ...}</code>
+     */
+    private final String[] headers;
+
+    private final String[] queryParams;
+
+    /**
+     * Encoded names of the query parameters
+     */
+    private final String[] encodedQueryParams;
+
+    private final RequestPriority priority;
+
+    private final ObjectWriter<B> bodyConverter;
+
+    private final ObjectReader<R> responseConverter;
+
+    /**
+     * @param method the HTTP method
+     * @param urlTemplate the template of the url
+     * @param serviceName qualified name of the REST service
+     * @param methodName name of the REST method followed by the types of its parameters, like <code>greet(java.lang.String)</code>
+     * @param headers the constant headers as name/value pairs
+     * @param queryParams the names of the query parameters, in the order of their index
+     * @param priority the priority or null to keep the default one
+     * @param bodyConverter the converter of the body, can be null
+     * @param responseConverter the converter of the response, can be null
+     */
+    public RestEndpoint( Method method, UrlTemplate urlTemplate, String serviceName, String methodName, String[] headers, String[]
+            queryParams, RequestPriority priority, ObjectWriter<B> bodyConverter, ObjectReader<R> responseConverter ) {
+        if ( null == method ) {
+            throw new IllegalArgumentException( "The method is required" );
+        }
+        if ( null == urlTemplate ) {
+            throw new IllegalArgumentException( "The url is required" );
+        }
+        if ( headers.length % 2 != 0 ) {
+            throw new IllegalArgumentException( "The headers must be name/value pairs" );
+        }
+        this.method = method;
+        this.urlTemplate = urlTemplate;
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.headers = copy( headers );
+        this.queryParams = copy( queryParams );
+        this.encodedQueryParams = new String[queryParams.length];
+        for ( int i = 0; i < queryParams.length; i++ ) {
+            this.encodedQueryParams[i] = QueryStringEncoder.instance.encode( queryParams[i] );
+        }
+        this.priority = priority;
+        this.bodyConverter = bodyConverter;
+        this.responseConverter = responseConverter;
+    }
+
+    private static String[] copy( String[] array ) {
+        String[] copy = new String[array.length];
+        System.arraycopy( array, 0, copy, 0, array.length );
+        return copy;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    UrlTemplate getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    String getServiceName() {
+        return serviceName;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    int getHeaderCount() {
+        return headers.length / 2;
+    }
+
+    String getHeaderName( int index ) {
+        return headers[index * 2];
+    }
+
+    String getHeaderValue( int index ) {
+        return headers[index * 2 + 1];
+    }
+
+    String getHeader( String name ) {
+        for ( int i = 0; i < headers.length; i += 2 ) {
+            if ( headers[i].equals( name ) ) {
+                return headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+    int getQueryParamCount() {
+        return queryParams.length;
+    }
+
+    String getQueryParamName( int index ) {
+        return queryParams[index];
+    }
+
+    String getEncodedQueryParamName( int index ) {
+        return encodedQueryParams[index];
+    }
+
+    RequestPriority getPriority() {
+        return priority;
+    }
+
+    ObjectWriter<B> getBodyConverter() {
+        return bodyConverter;
+    }
+
+    ObjectReader<R> getResponseConverter() {
+        return responseConverter;
+    }
+}
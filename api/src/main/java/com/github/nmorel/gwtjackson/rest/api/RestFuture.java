@@ -0,0 +1,491 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Result of a request that can be composed with other results.
+ * <p>A future is completed once : it succeeds with a result, fails with an error or is cancelled. The functions and callbacks are
+ * called as soon as the future completes, or directly if it is already completed.</p>
+ * <p>Cancelling a future cancels its underlying {@link Request} and the futures it depends on : the source of {@link #then(Function)},
+ * the inputs of {@link #all(List)}, etc. The functions and callbacks of a cancelled future are never called.</p>
+ */
+public class RestFuture<T> {
+
+    /**
+     * Transforms the result of a future
+     */
+    public interface Function<T, R> {
+
+        R apply( T value );
+    }
+
+    /**
+     * Transforms the result of a future into another future, typically another request
+     */
+    public interface AsyncFunction<T, R> {
+
+        RestFuture<R> apply( T value );
+    }
+
+    private interface Listener {
+
+        void onComplete();
+    }
+
+    private enum State {
+        PENDING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * @param result the result
+     *
+     * @return a future already succeeded with the given result
+     */
+    public static <T> RestFuture<T> succeeded( T result ) {
+        RestFuture<T> future = new RestFuture<T>();
+        future.complete( result );
+        return future;
+    }
+
+    /**
+     * @param error the error
+     *
+     * @return a future already failed with the given error
+     */
+    public static <T> RestFuture<T> failed( Throwable error ) {
+        RestFuture<T> future = new RestFuture<T>();
+        future.fail( error );
+        return future;
+    }
+
+    /**
+     * Joins futures of the same type. The returned future fails as soon as one of the futures fails and the other futures are then
+     * cancelled.
+     *
+     * @param futures the futures to join
+     *
+     * @return a future succeeding with the results in the same order as the futures
+     */
+    public static <T> RestFuture<List<T>> all( final List<RestFuture<T>> futures ) {
+        return join( futures ).then( new Function<Void, List<T>>() {
+            @Override
+            public List<T> apply( Void value ) {
+                List<T> results = new ArrayList<T>( futures.size() );
+                for ( RestFuture<T> future : futures ) {
+                    results.add( future.result );
+                }
+                return results;
+            }
+        } );
+    }
+
+    /**
+     * Joins futures of different types. The returned future fails as soon as one of the futures fails and the other futures are then
+     * cancelled. Once it succeeds, the result of each future is available with {@link #getResult()}.
+     *
+     * @param futures the futures to join
+     *
+     * @return a future succeeding when all the futures succeeded
+     */
+    public static RestFuture<Void> all( RestFuture<?>... futures ) {
+        return join( Arrays.asList( futures ) );
+    }
+
+    private static RestFuture<Void> join( final List<? extends RestFuture<?>> futures ) {
+        final RestFuture<Void> all = new RestFuture<Void>();
+        all.dependencies.addAll( futures );
+        if ( futures.isEmpty() ) {
+            all.complete( null );
+            return all;
+        }
+
+        final int[] remaining = {futures.size()};
+        for ( final RestFuture<?> future : futures ) {
+            future.addListener( new Listener() {
+                @Override
+                public void onComplete() {
+                    if ( State.SUCCEEDED == future.state ) {
+                        if ( --remaining[0] == 0 ) {
+                            all.complete( null );
+                        }
+                    } else if ( State.FAILED == future.state ) {
+                        // the other results are useless now
+                        if ( all.fail( future.error ) ) {
+                            cancelAll( futures );
+                        }
+                    } else {
+                        all.cancel();
+                    }
+                }
+            } );
+        }
+        return all;
+    }
+
+    /**
+     * Returns the result of the first future to succeed, the other futures are then cancelled. The returned future fails with the
+     * last error if none of the futures succeeds.
+     *
+     * @param futures the futures
+     *
+     * @return a future succeeding with the first result
+     */
+    public static <T> RestFuture<T> any( final List<RestFuture<T>> futures ) {
+        final RestFuture<T> any = new RestFuture<T>();
+        any.dependencies.addAll( futures );
+        if ( futures.isEmpty() ) {
+            any.fail( new RestException( "No future to wait for" ) );
+            return any;
+        }
+
+        final int[] remaining = {futures.size()};
+        for ( final RestFuture<T> future : futures ) {
+            future.addListener( new Listener() {
+                @Override
+                public void onComplete() {
+                    if ( State.SUCCEEDED == future.state ) {
+                        if ( any.complete( future.result ) ) {
+                            cancelAll( futures );
+                        }
+                    } else if ( --remaining[0] == 0 ) {
+                        if ( State.FAILED == future.state ) {
+                            any.fail( future.error );
+                        } else {
+                            any.cancel();
+                        }
+                    }
+                }
+            } );
+        }
+        return any;
+    }
+
+    private static void cancelAll( List<? extends RestFuture<?>> futures ) {
+        for ( RestFuture<?> future : futures ) {
+            future.cancel();
+        }
+    }
+
+    private State state = State.PENDING;
+
+    private T result;
+
+    private Throwable error;
+
+    private Request request;
+
+    /**
+     * Futures cancelled with this one
+     */
+    private final List<RestFuture<?>> dependencies = new ArrayList<RestFuture<?>>();
+
+    private List<Listener> listeners;
+
+    /**
+     * Creates a pending future. Complete it with {@link #complete(Object)} or {@link #fail(Throwable)}, or give it as callback to a
+     * request with {@link #asCallback()} and {@link #setRequest(Request)}.
+     */
+    public RestFuture() {
+    }
+
+    /**
+     * @param request the request completing this future, cancelled with this future. It is cancelled immediately if this future has
+     * already been cancelled.
+     */
+    public void setRequest( Request request ) {
+        if ( State.CANCELLED == state ) {
+            if ( null != request ) {
+                request.cancel();
+            }
+        } else if ( State.PENDING == state ) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * @return a callback completing this future. An error response fails it with a {@link RestStatusException}.
+     */
+    public RestCallback<T> asCallback() {
+        return new RestCallback<T>() {
+            @Override
+            public void onSuccess( T result ) {
+                complete( result );
+            }
+
+            @Override
+            public void onError( Response response ) {
+                fail( new RestStatusException( response.getStatusCode(), response.getText() ) );
+            }
+
+            @Override
+            public void onFailure( Throwable throwable ) {
+                fail( throwable );
+            }
+        };
+    }
+
+    /**
+     * @param result the result
+     *
+     * @return false if this future was already completed
+     */
+    public boolean complete( T result ) {
+        if ( State.PENDING != state ) {
+            return false;
+        }
+        this.state = State.SUCCEEDED;
+        this.result = result;
+        onCompleted();
+        return true;
+    }
+
+    /**
+     * @param error the error
+     *
+     * @return false if this future was already completed
+     */
+    public boolean fail( Throwable error ) {
+        if ( State.PENDING != state ) {
+            return false;
+        }
+        this.state = State.FAILED;
+        this.error = error;
+        onCompleted();
+        return true;
+    }
+
+    /**
+     * Cancels this future, its request and the futures it depends on.
+     *
+     * @return false if this future was already completed
+     */
+    public boolean cancel() {
+        if ( State.PENDING != state ) {
+            return false;
+        }
+        this.state = State.CANCELLED;
+        if ( null != request ) {
+            request.cancel();
+        }
+        for ( RestFuture<?> dependency : dependencies ) {
+            dependency.cancel();
+        }
+        onCompleted();
+        return true;
+    }
+
+    public boolean isDone() {
+        return State.PENDING != state;
+    }
+
+    public boolean isSucceeded() {
+        return State.SUCCEEDED == state;
+    }
+
+    public boolean isFailed() {
+        return State.FAILED == state;
+    }
+
+    public boolean isCancelled() {
+        return State.CANCELLED == state;
+    }
+
+    /**
+     * @return the result
+     *
+     * @throws IllegalStateException if this future has not succeeded
+     */
+    public T getResult() {
+        if ( State.SUCCEEDED != state ) {
+            throw new IllegalStateException( "The future has not succeeded" );
+        }
+        return result;
+    }
+
+    /**
+     * @return the error if this future failed, null otherwise
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @param function the function transforming the result
+     *
+     * @return a future succeeding with the transformed result. It fails if this future fails or if the function throws an exception.
+     */
+    public <R> RestFuture<R> then( final Function<? super T, ? extends R> function ) {
+        final RestFuture<R> next = new RestFuture<R>();
+        next.dependencies.add( this );
+        addListener( new Listener() {
+            @Override
+            public void onComplete() {
+                if ( State.SUCCEEDED == state ) {
+                    R value;
+                    try {
+                        value = function.apply( result );
+                    } catch ( RuntimeException e ) {
+                        next.fail( e );
+                        return;
+                    }
+                    next.complete( value );
+                } else if ( State.FAILED == state ) {
+                    next.fail( error );
+                } else {
+                    next.cancel();
+                }
+            }
+        } );
+        return next;
+    }
+
+    /**
+     * @param function the function starting the next request with the result
+     *
+     * @return a future completed like the future returned by the function
+     */
+    public <R> RestFuture<R> then( final AsyncFunction<? super T, R> function ) {
+        final RestFuture<R> next = new RestFuture<R>();
+        next.dependencies.add( this );
+        addListener( new Listener() {
+            @Override
+            public void onComplete() {
+                if ( State.SUCCEEDED == state ) {
+                    RestFuture<R> inner;
+                    try {
+                        inner = function.apply( result );
+                    } catch ( RuntimeException e ) {
+                        next.fail( e );
+                        return;
+                    }
+                    if ( next.isCancelled() ) {
+                        inner.cancel();
+                    } else {
+                        next.dependencies.add( inner );
+                        inner.forwardTo( next );
+                    }
+                } else if ( State.FAILED == state ) {
+                    next.fail( error );
+                } else {
+                    next.cancel();
+                }
+            }
+        } );
+        return next;
+    }
+
+    /**
+     * @param millis the delay in milliseconds
+     *
+     * @return a future completed like this one or failing with a {@link RestException} if this one is not completed after the delay.
+     * This future is then cancelled.
+     */
+    public RestFuture<T> timeout( final int millis ) {
+        final RestFuture<T> next = new RestFuture<T>();
+        next.dependencies.add( this );
+        final Timer timer = new Timer() {
+            @Override
+            public void run() {
+                if ( next.fail( new RestException( "No response after " + millis + " ms" ) ) ) {
+                    RestFuture.this.cancel();
+                }
+            }
+        };
+        next.addListener( new Listener() {
+            @Override
+            public void onComplete() {
+                timer.cancel();
+            }
+        } );
+        forwardTo( next );
+        if ( !next.isDone() ) {
+            timer.schedule( millis );
+        }
+        return next;
+    }
+
+    /**
+     * @param callback the callback receiving the result or the error. It is not called if this future is cancelled.
+     *
+     * @return this future
+     */
+    public RestFuture<T> callback( final RestCallback<T> callback ) {
+        addListener( new Listener() {
+            @Override
+            public void onComplete() {
+                if ( State.SUCCEEDED == state ) {
+                    callback.onSuccess( result );
+                } else if ( State.FAILED == state ) {
+                    callback.onFailure( error );
+                }
+            }
+        } );
+        return this;
+    }
+
+    private void forwardTo( final RestFuture<T> next ) {
+        addListener( new Listener() {
+            @Override
+            public void onComplete() {
+                if ( State.SUCCEEDED == state ) {
+                    next.complete( result );
+                } else if ( State.FAILED == state ) {
+                    next.fail( error );
+                } else {
+                    next.cancel();
+                }
+            }
+        } );
+    }
+
+    private void addListener( Listener listener ) {
+        if ( State.PENDING != state ) {
+            listener.onComplete();
+            return;
+        }
+        if ( null == listeners ) {
+            listeners = new ArrayList<Listener>();
+        }
+        listeners.add( listener );
+    }
+
+    private void onCompleted() {
+        request = null;
+        dependencies.clear();
+        List<Listener> toNotify = listeners;
+        listeners = null;
+        if ( null == toNotify ) {
+            return;
+        }
+        for ( Listener listener : toNotify ) {
+            try {
+                listener.onComplete();
+            } catch ( RuntimeException e ) {
+                // an exception thrown by a callback must not prevent the other listeners from being notified
+                GWT.reportUncaughtException( e );
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Asynchronous iterator over the pages of a paginated GET method.
+ * <p>While a page is consumed, the following pages are already requested : up to {@link #lookAhead(int)} pages are requested or kept
+ * in memory ahead of the consumer. The look-ahead is suspended while the JavaScript heap is almost full, the pages are then only
+ * requested when {@link #next(RestCallback)} is called.</p>
+ * <p>Only one page can be awaited at a time : call {@link #next(RestCallback)} again once the previous page has been delivered.</p>
+ */
+public abstract class RestPager<R> {
+
+    /**
+     * Sends the request of a page addressed by its offset
+     */
+    public interface OffsetPages<R> {
+
+        Request page( int offset, int limit, RestCallback<R> callback );
+    }
+
+    /**
+     * Sends the request of a page addressed by a cursor
+     */
+    public interface CursorPages<R> {
+
+        /**
+         * @param cursor the cursor returned with the previous page or null for the first page
+         */
+        Request page( String cursor, RestCallback<R> callback );
+    }
+
+    public static final int DEFAULT_LOOK_AHEAD = 1;
+
+    /**
+     * Iterates over pages addressed by an offset and a limit. The last page is the first one containing less than <code>limit</code>
+     * items, so it may be empty.
+     *
+     * @param limit the number of items per page
+     * @param pages sends the request of a page. Its result must be a {@link Collection} or an array of objects.
+     */
+    public static <R> RestPager<R> offset( int limit, OffsetPages<R> pages ) {
+        if ( limit <= 0 ) {
+            throw new IllegalArgumentException( "The limit must be positive" );
+        }
+        return new OffsetPager<R>( limit, pages );
+    }
+
+    /**
+     * Iterates over pages addressed by a cursor. The cursor of the next page is read in a header of the response, the last page is
+     * the first one without this header.
+     *
+     * @param nextCursorHeader the header containing the cursor of the next page
+     * @param pages sends the request of a page
+     */
+    public static <R> RestPager<R> cursor( String nextCursorHeader, CursorPages<R> pages ) {
+        return new CursorPager<R>( nextCursorHeader, pages );
+    }
+
+    private static class OffsetPager<R> extends RestPager<R> {
+
+        private final int limit;
+
+        private final OffsetPages<R> pages;
+
+        private int offset;
+
+        private OffsetPager( int limit, OffsetPages<R> pages ) {
+            this.limit = limit;
+            this.pages = pages;
+        }
+
+        @Override
+        Request request( RestCallback<R> callback ) {
+            Request request = pages.page( offset, limit, callback );
+            offset += limit;
+            return request;
+        }
+
+        @Override
+        boolean onLoaded( Response response, R result ) {
+            return size( result ) >= limit;
+        }
+
+        private int size( R result ) {
+            if ( result instanceof Collection ) {
+                return ((Collection<?>) result).size();
+            } else if ( result instanceof Object[] ) {
+                return ((Object[]) result).length;
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    private static class CursorPager<R> extends RestPager<R> {
+
+        private final String nextCursorHeader;
+
+        private final CursorPages<R> pages;
+
+        private String cursor;
+
+        private boolean cursorKnown = true;
+
+        private CursorPager( String nextCursorHeader, CursorPages<R> pages ) {
+            this.nextCursorHeader = nextCursorHeader;
+            this.pages = pages;
+        }
+
+        @Override
+        boolean canRequest() {
+            return cursorKnown;
+        }
+
+        @Override
+        Request request( RestCallback<R> callback ) {
+            cursorKnown = false;
+            return pages.page( cursor, callback );
+        }
+
+        @Override
+        boolean onLoaded( Response response, R result ) {
+            if ( response instanceof PersistedResponse ) {
+                throw new RestException( "The page has been read from the persistent cache, the cursor of the next page is unknown" );
+            }
+            cursor = response.getHeader( nextCursorHeader );
+            cursorKnown = null != cursor && !cursor.isEmpty();
+            return cursorKnown;
+        }
+    }
+
+    private class Page extends RestCallback<R> {
+
+        private Request request;
+
+        private boolean done;
+
+        private Response response;
+
+        private R result;
+
+        private Response errorResponse;
+
+        private Throwable error;
+
+        private RestCallback<R> consumer;
+
+        private void consume( RestCallback<R> consumer ) {
+            this.consumer = consumer;
+            if ( done ) {
+                deliver();
+            }
+        }
+
+        @Override
+        public void onSuccess( Response response, R result ) {
+            if ( cancelled ) {
+                return;
+            }
+            try {
+                if ( !onLoaded( response, result ) ) {
+                    last( this );
+                }
+            } catch ( RuntimeException e ) {
+                onFailure( e );
+                return;
+            }
+            this.done = true;
+            this.response = response;
+            this.result = result;
+            loaded();
+        }
+
+        @Override
+        public void onSuccess( R result ) {
+            onSuccess( null, result );
+        }
+
+        @Override
+        public void onError( Response response ) {
+            if ( cancelled ) {
+                return;
+            }
+            last( this );
+            this.done = true;
+            this.errorResponse = response;
+            loaded();
+        }
+
+        @Override
+        public void onFailure( Throwable throwable ) {
+            if ( cancelled ) {
+                return;
+            }
+            last( this );
+            this.done = true;
+            this.error = throwable;
+            loaded();
+        }
+
+        private void loaded() {
+            if ( null != consumer ) {
+                deliver();
+            }
+            fill();
+        }
+
+        private void deliver() {
+            RestCallback<R> callback = consumer;
+            consumer = null;
+            waiting = null;
+            if ( null != errorResponse ) {
+                callback.onError( errorResponse );
+            } else if ( null != error ) {
+                callback.onFailure( error );
+            } else {
+                callback.onSuccess( response, result );
+            }
+        }
+    }
+
+    private final LinkedList<Page> pages = new LinkedList<Page>();
+
+    private int lookAhead = DEFAULT_LOOK_AHEAD;
+
+    private Page waiting;
+
+    private boolean exhausted;
+
+    private boolean cancelled;
+
+    RestPager() {
+    }
+
+    /**
+     * @param lookAhead the maximum number of pages requested or kept in memory ahead of the consumer, 0 to request each page only when
+     * it is consumed
+     *
+     * @return this pager
+     */
+    public RestPager<R> lookAhead( int lookAhead ) {
+        if ( lookAhead < 0 ) {
+            throw new IllegalArgumentException( "The look-ahead cannot be negative" );
+        }
+        this.lookAhead = lookAhead;
+        return this;
+    }
+
+    /**
+     * @return true if there is at least one more page
+     */
+    public boolean hasNext() {
+        return !cancelled && (!pages.isEmpty() || !exhausted);
+    }
+
+    /**
+     * Delivers the next page to the callback, directly if it has already been received. The following pages are requested in the
+     * meantime. An error ends the iteration.
+     *
+     * @param callback the callback receiving the page
+     */
+    public void next( RestCallback<R> callback ) {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        if ( null != waiting ) {
+            throw new IllegalStateException( "The previous page has not been delivered yet" );
+        }
+        Page page = pages.isEmpty() ? start( false ) : pages.removeFirst();
+        waiting = page;
+        page.consume( callback );
+        fill();
+    }
+
+    /**
+     * Cancels the requests in flight and ends the iteration. The callback waiting for a page is never called.
+     */
+    public void cancel() {
+        cancelled = true;
+        exhausted = true;
+        if ( null != waiting ) {
+            cancel( waiting );
+            waiting = null;
+        }
+        while ( !pages.isEmpty() ) {
+            cancel( pages.removeFirst() );
+        }
+    }
+
+    /**
+     * @return true if the request of the next page can be sent
+     */
+    boolean canRequest() {
+        return true;
+    }
+
+    /**
+     * Sends the request of the next page
+     */
+    abstract Request request( RestCallback<R> callback );
+
+    /**
+     * @return true if there is a page after this one
+     */
+    abstract boolean onLoaded( Response response, R result );
+
+    /**
+     * @param queued true to queue the page before sending its request, a page received synchronously has to know its position
+     */
+    private Page start( boolean queued ) {
+        Page page = new Page();
+        if ( queued ) {
+            pages.addLast( page );
+        }
+        page.request = request( page );
+        return page;
+    }
+
+    private void fill() {
+        if ( PrefetchedRequest.isMemoryLow() ) {
+            return;
+        }
+        while ( !exhausted && canRequest() && pages.size() < lookAhead ) {
+            start( true );
+        }
+    }
+
+    /**
+     * Ends the iteration after the given page and cancels the requests of the pages following it.
+     */
+    private void last( Page page ) {
+        exhausted = true;
+        int index = pages.indexOf( page );
+        while ( pages.size() > index + 1 ) {
+            cancel( pages.removeLast() );
+        }
+    }
+
+    private void cancel( Page page ) {
+        if ( null != page.request && !page.done ) {
+            page.request.cancel();
+        }
+    }
+}
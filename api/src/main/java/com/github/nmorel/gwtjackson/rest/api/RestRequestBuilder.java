@@ -25,17 +25,24 @@ import java.util.Map.Entry;
 
 import com.github.nmorel.gwtjackson.client.ObjectReader;
 import com.github.nmorel.gwtjackson.client.ObjectWriter;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestBuilder.Method;
 import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.URL;
+import com.google.gwt.http.client.Response;
 
 /**
  * @author Nicolas Morel
  */
 public class RestRequestBuilder<B, R> {
 
+    /**
+     * Query parameter listing the properties needed in the response, see {@link #fields(String...)}
+     */
+    public static final String FIELDS_PARAM = "fields";
+
     private static String defaultApplicationPath = "";
 
     public static void setDefaultApplicationPath( String defaultApplicationPath ) {
@@ -45,6 +52,120 @@ public class RestRequestBuilder<B, R> {
         RestRequestBuilder.defaultApplicationPath = defaultApplicationPath;
     }
 
+    private static boolean defaultCoalesce = false;
+
+    /**
+     * Sets whether the identical GET and HEAD requests should share the same in-flight request by default.
+     *
+     * @param defaultCoalesce true to coalesce the requests by default
+     */
+    public static void setDefaultCoalesce( boolean defaultCoalesce ) {
+        RestRequestBuilder.defaultCoalesce = defaultCoalesce;
+    }
+
+    private static RestResponseCache defaultCache;
+
+    /**
+     * Sets the cache used by default to store the GET responses and send conditional requests.
+     *
+     * @param defaultCache the cache or null to disable the caching by default
+     */
+    public static void setDefaultCache( RestResponseCache defaultCache ) {
+        RestRequestBuilder.defaultCache = defaultCache;
+    }
+
+    private static RestRequestScheduler defaultScheduler;
+
+    /**
+     * Sets the scheduler used by default to limit the number of in-flight requests.
+     *
+     * @param defaultScheduler the scheduler or null to send the requests immediately by default
+     */
+    public static void setDefaultScheduler( RestRequestScheduler defaultScheduler ) {
+        RestRequestBuilder.defaultScheduler = defaultScheduler;
+    }
+
+    private static RetryPolicy defaultRetryPolicy;
+
+    /**
+     * Sets the retry policy used by default.
+     *
+     * @param defaultRetryPolicy the policy or null to disable the retries by default
+     */
+    public static void setDefaultRetryPolicy( RetryPolicy defaultRetryPolicy ) {
+        RestRequestBuilder.defaultRetryPolicy = defaultRetryPolicy;
+    }
+
+    private static ResponseDeserializer defaultDeserializer;
+
+    /**
+     * Sets the deserializer used by default to read the successful responses.
+     *
+     * @param defaultDeserializer the deserializer or null to read the responses synchronously by default
+     */
+    public static void setDefaultDeserializer( ResponseDeserializer defaultDeserializer ) {
+        RestRequestBuilder.defaultDeserializer = defaultDeserializer;
+    }
+
+    /**
+     * Cancels the prefetches and drops their results, for example when the application is running low on memory.
+     */
+    public static void cancelPrefetches() {
+        PrefetchedRequest.cancelAll();
+    }
+
+    private static IndexedDbResponseCache defaultPersistentCache;
+
+    /**
+     * Sets the persistent cache used by default by the requests with a {@link #persistentCachePolicy(int, int) persistent cache
+     * policy}.
+     *
+     * @param defaultPersistentCache the cache or null to disable the persistent caching by default
+     */
+    public static void setDefaultPersistentCache( IndexedDbResponseCache defaultPersistentCache ) {
+        RestRequestBuilder.defaultPersistentCache = defaultPersistentCache;
+    }
+
+    private static final List<RestRequestListener> defaultListeners = new ArrayList<RestRequestListener>();
+
+    /**
+     * Adds a listener notified of the phases of all the requests.
+     *
+     * @param listener the listener
+     */
+    public static void addDefaultListener( RestRequestListener listener ) {
+        defaultListeners.add( listener );
+    }
+
+    /**
+     * Removes a listener added with {@link #addDefaultListener(RestRequestListener)}.
+     *
+     * @param listener the listener
+     */
+    public static void removeDefaultListener( RestRequestListener listener ) {
+        defaultListeners.remove( listener );
+    }
+
+    /**
+     * Prototype holding the constant parts of the request, can be null
+     */
+    private final RestEndpoint<B, R> endpoint;
+
+    /**
+     * Values of the path parameters of the {@link #endpoint}, indexed like the parameters of its url template
+     */
+    private Object[] pathParamValues;
+
+    /**
+     * Values of the query parameters of the {@link #endpoint}, indexed like its query parameters
+     */
+    private Object[] queryParamValues;
+
+    /**
+     * URL relative to the {@link #applicationPath}, already expanded with the parameters of the {@link #endpoint}
+     */
+    private String expandedUrl;
+
     /**
      * HTTP method to use when opening a JavaScript XmlHttpRequest object.
      */
@@ -60,6 +181,11 @@ public class RestRequestBuilder<B, R> {
      */
     private String url;
 
+    /**
+     * Precompiled template of the URL. If not set, it is parsed from {@link #url} when sending the request.
+     */
+    private UrlTemplate urlTemplate;
+
     /**
      * User to use when opening a JavaScript XmlHttpRequest object.
      */
@@ -98,7 +224,158 @@ public class RestRequestBuilder<B, R> {
 
     private RestCallback<R> callback;
 
+    private RestStreamCallback<R> streamCallback;
+
+    /**
+     * Whether an identical in-flight GET or HEAD request can be reused instead of sending a new one.
+     */
+    private boolean coalesce = defaultCoalesce;
+
+    /**
+     * Key shared by the requests superseding each other, null if the request cannot be superseded
+     */
+    private String supersedeKey;
+
+    /**
+     * Whether this request is a prefetch, it must then not consume a prefetched result
+     */
+    private boolean prefetching;
+
+    /**
+     * The prefetch sent by this builder, null if it is not a prefetch
+     */
+    private PrefetchedRequest<R> prefetchRequest;
+
+    /**
+     * Cache storing the GET responses and invalidated by the mutations
+     */
+    private RestResponseCache cache = defaultCache;
+
+    /**
+     * Scheduler queuing the request when too many requests are in flight
+     */
+    private RestRequestScheduler scheduler = defaultScheduler;
+
+    private RequestPriority priority = RequestPriority.NORMAL;
+
+    private RetryPolicy retryPolicy = defaultRetryPolicy;
+
+    private ResponseDeserializer deserializer = defaultDeserializer;
+
+    /**
+     * Callback receiving the chunks read by an {@link IncrementalResponseDeserializer}, can be null
+     */
+    private IncrementalResponseDeserializer.PartialResultCallback<?> partialResultCallback;
+
+    /**
+     * Table interning the values read in the responses, null if the values are not interned or if each response has its own table
+     */
+    private ResponseInterner interner;
+
+    private boolean internPerResponse;
+
+    /**
+     * Whether the body is sent as a JSON Patch against the snapshot of the resource
+     */
+    private boolean patch;
+
+    /**
+     * Writer taking the snapshot of the fetched resource, null if no snapshot is taken
+     */
+    private ObjectWriter<R> snapshotWriter;
+
+    private IndexedDbResponseCache persistentCache = defaultPersistentCache;
+
+    /**
+     * Time in seconds a persisted response is fresh, negative if the responses of this request are not persisted
+     */
+    private int persistentTtlSeconds = -1;
+
+    /**
+     * Time in seconds a stale persisted response can still be used while it is revalidated
+     */
+    private int persistentStaleSeconds;
+
+    /**
+     * Whether the persistent cache has already been looked up for this request
+     */
+    private boolean persistentLookupDone;
+
+    /**
+     * Qualified name of the REST service, set by the generated builders
+     */
+    private String serviceName;
+
+    /**
+     * Name of the REST method, set by the generated builders
+     */
+    private String methodName;
+
+    private List<RestRequestListener> listeners;
+
     public RestRequestBuilder() {
+        this.endpoint = null;
+    }
+
+    /**
+     * Creates a builder initialized with the constant parts of the endpoint. The parameters of the endpoint are set with {@link
+     * #pathParam(int, Object)} and {@link #queryParam(int, Object)}.
+     *
+     * @param endpoint the endpoint
+     */
+    public RestRequestBuilder( RestEndpoint<B, R> endpoint ) {
+        this.endpoint = endpoint;
+        this.method = endpoint.getMethod();
+        this.urlTemplate = endpoint.getUrlTemplate();
+        this.serviceName = endpoint.getServiceName();
+        this.methodName = endpoint.getMethodName();
+        if ( null != endpoint.getPriority() ) {
+            this.priority = endpoint.getPriority();
+        }
+        this.bodyConverter = endpoint.getBodyConverter();
+        this.responseConverter = endpoint.getResponseConverter();
+    }
+
+    /**
+     * Creates a builder of the same request as the source. The parameters are shared, the headers are copied.
+     *
+     * @param source the builder to copy
+     */
+    private RestRequestBuilder( RestRequestBuilder<B, R> source ) {
+        this.endpoint = source.endpoint;
+        this.pathParamValues = source.pathParamValues;
+        this.queryParamValues = source.queryParamValues;
+        this.expandedUrl = source.expandedUrl;
+        this.method = source.method;
+        this.applicationPath = source.applicationPath;
+        this.url = source.url;
+        this.urlTemplate = source.urlTemplate;
+        this.user = source.user;
+        this.password = source.password;
+        this.includeCredentials = source.includeCredentials;
+        this.timeoutMillis = source.timeoutMillis;
+        this.headers = null == source.headers ? null : new LinkedHashMap<String, String>( source.headers );
+        this.queryParams = source.queryParams;
+        this.pathParams = source.pathParams;
+        this.body = source.body;
+        this.bodyConverter = source.bodyConverter;
+        this.responseConverter = source.responseConverter;
+        this.coalesce = source.coalesce;
+        this.cache = source.cache;
+        this.scheduler = source.scheduler;
+        this.priority = source.priority;
+        this.retryPolicy = source.retryPolicy;
+        this.deserializer = source.deserializer;
+        this.partialResultCallback = source.partialResultCallback;
+        this.interner = source.interner;
+        this.internPerResponse = source.internPerResponse;
+        this.persistentCache = source.persistentCache;
+        this.persistentTtlSeconds = source.persistentTtlSeconds;
+        this.persistentStaleSeconds = source.persistentStaleSeconds;
+        this.persistentLookupDone = source.persistentLookupDone;
+        this.serviceName = source.serviceName;
+        this.methodName = source.methodName;
+        this.listeners = null == source.listeners ? null : new ArrayList<RestRequestListener>( source.listeners );
     }
 
     public RestRequestBuilder<B, R> method( Method method ) {
@@ -113,6 +390,13 @@ public class RestRequestBuilder<B, R> {
 
     public RestRequestBuilder<B, R> url( String url ) {
         this.url = url;
+        this.urlTemplate = null;
+        return this;
+    }
+
+    public RestRequestBuilder<B, R> url( UrlTemplate urlTemplate ) {
+        this.urlTemplate = urlTemplate;
+        this.url = null;
         return this;
     }
 
@@ -145,7 +429,21 @@ public class RestRequestBuilder<B, R> {
     }
 
     public Map<String, String> getHeaders() {
-        return headers;
+        if ( null == endpoint || endpoint.getHeaderCount() == 0 ) {
+            return headers;
+        }
+        Map<String, String> allHeaders = new LinkedHashMap<String, String>();
+        for ( int i = 0; i < endpoint.getHeaderCount(); i++ ) {
+            allHeaders.put( endpoint.getHeaderName( i ), endpoint.getHeaderValue( i ) );
+        }
+        if ( null != headers ) {
+            allHeaders.putAll( headers );
+        }
+        return allHeaders;
+    }
+
+    private boolean hasHeader( String name ) {
+        return ( null != headers && headers.containsKey( name ) ) || ( null != endpoint && null != endpoint.getHeader( name ) );
     }
 
     /**
@@ -229,6 +527,29 @@ public class RestRequestBuilder<B, R> {
         return this;
     }
 
+    /**
+     * Asks the server to write only the given properties of the response with the query parameter {@value #FIELDS_PARAM}. A nested
+     * property is given by its path, like <code>address.city</code>. On the server side, register
+     * <code>com.github.nmorel.gwtjackson.rest.server.SparseFieldsetInterceptor</code> to trim the responses.
+     *
+     * @param names the names of the properties
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> fields( String... names ) {
+        StringBuilder value = new StringBuilder();
+        for ( String name : names ) {
+            if ( value.length() > 0 ) {
+                value.append( ',' );
+            }
+            value.append( name );
+        }
+        List<Object> allValues = getQueryParams( FIELDS_PARAM );
+        allValues.clear();
+        allValues.add( value.toString() );
+        return this;
+    }
+
     private List<Object> getQueryParams( String name ) {
         if ( null == queryParams ) {
             queryParams = new LinkedHashMap<String, List<Object>>();
@@ -241,8 +562,56 @@ public class RestRequestBuilder<B, R> {
         return allValues;
     }
 
+    /**
+     * Sets the value of a query parameter of the {@link RestEndpoint endpoint}. If the value is an {@link Iterable} or an array, the
+     * parameter is repeated for each element. If a null value is passed, the param is ignored.
+     *
+     * @param index index of the query parameter in the endpoint
+     * @param value value of the parameter
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> queryParam( int index, Object value ) {
+        if ( null == queryParamValues ) {
+            if ( null == endpoint || endpoint.getQueryParamCount() == 0 ) {
+                throw new IllegalArgumentException( "The endpoint has no query parameter" );
+            }
+            queryParamValues = new Object[endpoint.getQueryParamCount()];
+        }
+        queryParamValues[index] = value;
+        return this;
+    }
+
     public Map<String, List<Object>> getQueryParams() {
-        return queryParams;
+        if ( null == queryParamValues ) {
+            return queryParams;
+        }
+        Map<String, List<Object>> allParams = new LinkedHashMap<String, List<Object>>();
+        for ( int i = 0; i < queryParamValues.length; i++ ) {
+            List<Object> values = new ArrayList<Object>();
+            addQueryValues( values, queryParamValues[i] );
+            if ( !values.isEmpty() ) {
+                allParams.put( endpoint.getQueryParamName( i ), values );
+            }
+        }
+        if ( null != queryParams ) {
+            allParams.putAll( queryParams );
+        }
+        return allParams;
+    }
+
+    private void addQueryValues( List<Object> values, Object value ) {
+        if ( value instanceof Iterable ) {
+            for ( Object element : (Iterable<?>) value ) {
+                values.add( element );
+            }
+        } else if ( value instanceof Object[] ) {
+            for ( Object element : (Object[]) value ) {
+                values.add( element );
+            }
+        } else if ( null != value ) {
+            values.add( value );
+        }
     }
 
     public RestRequestBuilder<B, R> addPathParam( String name, Object value ) {
@@ -253,8 +622,58 @@ public class RestRequestBuilder<B, R> {
         return this;
     }
 
+    /**
+     * Sets the value of a path parameter of the {@link RestEndpoint endpoint}.
+     *
+     * @param index index of the parameter in the url template of the endpoint
+     * @param value value of the parameter
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> pathParam( int index, Object value ) {
+        if ( null == pathParamValues ) {
+            int pathParamCount = null == endpoint ? 0 : endpoint.getUrlTemplate().getParamCount();
+            if ( pathParamCount == 0 ) {
+                throw new IllegalArgumentException( "The endpoint has no path parameter" );
+            }
+            pathParamValues = new Object[pathParamCount];
+            for ( int i = 0; i < pathParamCount; i++ ) {
+                pathParamValues[i] = UrlTemplate.MISSING;
+            }
+        }
+        pathParamValues[index] = value;
+        return this;
+    }
+
+    /**
+     * Sets the url of the request, relative to the application path and already expanded with the path and query parameters of the
+     * {@link RestEndpoint endpoint}. It is used by the specialized generated builders, the template of the endpoint only identifies
+     * the request. The query parameters added with {@link #addQueryParam(String, Object)} are still appended.
+     *
+     * @param expandedUrl the expanded url
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> expandedUrl( String expandedUrl ) {
+        this.expandedUrl = expandedUrl;
+        return this;
+    }
+
     public Map<String, Object> getPathParams() {
-        return pathParams;
+        if ( null == pathParamValues ) {
+            return pathParams;
+        }
+        Map<String, Object> allParams = new LinkedHashMap<String, Object>();
+        UrlTemplate endpointTemplate = endpoint.getUrlTemplate();
+        for ( int i = 0; i < pathParamValues.length; i++ ) {
+            if ( UrlTemplate.MISSING != pathParamValues[i] ) {
+                allParams.put( endpointTemplate.getParamName( i ), pathParamValues[i] );
+            }
+        }
+        if ( null != pathParams ) {
+            allParams.putAll( pathParams );
+        }
+        return allParams;
     }
 
     public RestRequestBuilder<B, R> body( B body ) {
@@ -277,62 +696,448 @@ public class RestRequestBuilder<B, R> {
         return this;
     }
 
-    public Request send() {
-        if ( null == method ) {
-            throw new IllegalArgumentException( "The method is required" );
-        }
-        if ( null == url ) {
-            throw new IllegalArgumentException( "The url is required" );
-        }
-
-        String urlWithParams = url;
-        if ( null != pathParams && !pathParams.isEmpty() ) {
-            for ( Entry<String, Object> pathParam : pathParams.entrySet() ) {
-                urlWithParams = urlWithParams.replace( "{" + pathParam.getKey() + "}", pathParam.getValue() == null ? "" : pathParam
-                        .getValue().toString() );
-            }
-        }
+    /**
+     * Streaming mode. The response is read as newline-delimited JSON while it is received and each line is deserialized with the
+     * {@link #responseConverter(ObjectReader) response converter} then delivered to the callback.
+     * <p>A streaming request is sent directly : it is not coalesced, cached, scheduled, retried or added to a batch.</p>
+     *
+     * @param streamCallback the callback receiving the items
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> streamCallback( RestStreamCallback<R> streamCallback ) {
+        this.streamCallback = streamCallback;
+        return this;
+    }
 
-        StringBuilder urlBuilder = new StringBuilder( applicationPath );
-        if ( !applicationPath.endsWith( "/" ) && !urlWithParams.startsWith( "/" ) ) {
-            urlBuilder.append( '/' );
-        }
-        urlBuilder.append( urlWithParams );
+    /**
+     * Coalescing mode. When enabled, a GET or HEAD request with the same method, final url and headers as an in-flight request does
+     * not open a new connection. The callback is attached to the in-flight request and the response is deserialized only once.
+     *
+     * @param coalesce true to enable the coalescing
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> coalesce( boolean coalesce ) {
+        this.coalesce = coalesce;
+        return this;
+    }
 
-        if ( null != queryParams && !queryParams.isEmpty() ) {
-            boolean first = true;
-            for ( Entry<String, List<Object>> params : queryParams.entrySet() ) {
-                String name = URL.encodeQueryString( params.getKey() );
-                if ( null != params.getValue() && !params.getValue().isEmpty() ) {
-                    for ( Object param : params.getValue() ) {
-                        if ( first ) {
-                            urlBuilder.append( '?' );
-                            first = false;
-                        } else {
-                            urlBuilder.append( '&' );
-                        }
-                        urlBuilder.append( name );
-                        if ( null != param ) {
-                            urlBuilder.append( '=' );
-                            urlBuilder.append( URL.encodeQueryString( param.toString() ) );
-                        }
-                    }
-                }
-            }
-        }
+    /**
+     * Superseding mode. Sending a request cancels the in-flight request sent with the same key : the response of the previous request
+     * is not read and its callback is never called. Useful for a search box firing a request on each keystroke.
+     *
+     * @param key the key shared by the requests superseding each other or null to disable the superseding
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> supersede( String key ) {
+        this.supersedeKey = key;
+        return this;
+    }
 
-        RequestBuilder builder = new RequestBuilder( method, urlBuilder.toString() );
-        builder.setHeader( "Accept", "application/json" );
+    /**
+     * Sets the cache used by this request. A GET response with an ETag or Last-Modified header is stored and the next GET request
+     * to the same url is sent with the If-None-Match or If-Modified-Since header. If the server answers 304 Not Modified, the
+     * callback receives the cached result. A successful POST, PUT or DELETE request evicts the GET responses of the same url template.
+     *
+     * @param cache the cache or null to disable the caching
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> cache( RestResponseCache cache ) {
+        this.cache = cache;
+        return this;
+    }
 
-        if ( null != headers && !headers.isEmpty() ) {
-            for ( Entry<String, String> header : headers.entrySet() ) {
-                builder.setHeader( header.getKey(), header.getValue() );
-            }
-        }
+    /**
+     * Sets the scheduler used by this request. The request is queued if the scheduler has too many in-flight requests to the same
+     * host.
+     *
+     * @param scheduler the scheduler or null to send the request immediately
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> scheduler( RestRequestScheduler scheduler ) {
+        this.scheduler = scheduler;
+        return this;
+    }
 
-        if ( null != user ) {
-            builder.setUser( user );
-        }
+    /**
+     * @param priority priority of the request when queued by the {@link #scheduler(RestRequestScheduler) scheduler}
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> priority( RequestPriority priority ) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @param retryPolicy the policy defining when the request is retried or null to disable the retries
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> retry( RetryPolicy retryPolicy ) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Sets the deserializer reading the successful response. The callback is called once the deserializer gives the result, it can be
+     * after the XMLHttpRequest event handler returns.
+     *
+     * @param deserializer the deserializer or null to read the response synchronously
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> deserializer( ResponseDeserializer deserializer ) {
+        this.deserializer = deserializer;
+        return this;
+    }
+
+    /**
+     * Gives the elements of each chunk of the response to the callback, when the response is read in slices by an
+     * {@link IncrementalResponseDeserializer}. The callback of the request still receives the whole collection.
+     *
+     * @param partialResultCallback the callback, its type must match the type of the elements of the response
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> partialResults( IncrementalResponseDeserializer.PartialResultCallback<?> partialResultCallback ) {
+        this.partialResultCallback = partialResultCallback;
+        return this;
+    }
+
+    /**
+     * Interns the values read in each response in a table scoped to the response. The strings are interned only if the module
+     * <code>com.github.nmorel.gwtjackson.rest.GwtJacksonRestInterning</code> is inherited.
+     *
+     * @return this builder
+     *
+     * @see ResponseInterner
+     */
+    public RestRequestBuilder<B, R> intern() {
+        this.interner = null;
+        this.internPerResponse = true;
+        return this;
+    }
+
+    /**
+     * Interns the values read in the responses in a table shared with other requests, like {@link ResponseInterner#session()}.
+     *
+     * @param interner the table or null to not intern the values
+     *
+     * @return this builder
+     *
+     * @see #intern()
+     */
+    public RestRequestBuilder<B, R> interner( ResponseInterner interner ) {
+        this.interner = interner;
+        this.internPerResponse = false;
+        return this;
+    }
+
+    /**
+     * Sends the body as a RFC 6902 JSON Patch computed against the snapshot of the resource, with the method PATCH. Without snapshot,
+     * the whole body is sent with the method of the request. After a successful response, the body becomes the new snapshot.
+     * <p>The patch is only applied if the resource has not changed since the snapshot : it is sent with an If-Match header when the
+     * snapshot has a strong ETag, otherwise each changed value is tested first. A conflict drops the snapshot and the callback
+     * receives the error. If the server does not accept the method PATCH (405), the whole body is sent again with the method of the
+     * request.</p>
+     *
+     * @return this builder
+     *
+     * @see JsonPatch
+     */
+    public RestRequestBuilder<B, R> patch() {
+        this.patch = true;
+        return this;
+    }
+
+    /**
+     * Takes the snapshot of the resource fetched by this GET request, so the next update of the resource in {@link #patch() patch
+     * mode} only sends the changes.
+     *
+     * @param snapshotWriter the writer of the resource, the same as the body writer of the update
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> snapshot( ObjectWriter<R> snapshotWriter ) {
+        this.snapshotWriter = snapshotWriter;
+        return this;
+    }
+
+    /**
+     * Sets the persistent cache used by this request if it has a {@link #persistentCachePolicy(int, int) persistent cache policy}.
+     *
+     * @param persistentCache the cache or null to disable the persistent caching
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> persistentCache( IndexedDbResponseCache persistentCache ) {
+        this.persistentCache = persistentCache;
+        return this;
+    }
+
+    /**
+     * Persists the successful responses of this GET request in the {@link #persistentCache(IndexedDbResponseCache) persistent
+     * cache}. While a persisted response is fresh, the callback receives it without any request. Once it is stale but still in the
+     * stale-while-revalidate window, the callback receives it immediately and a conditional request refreshes it in the background.
+     * Otherwise, the request is sent normally. The response given to the callback for a persisted hit only has the stored body
+     * and ETag.
+     *
+     * @param ttlSeconds time in seconds a persisted response is fresh
+     * @param staleWhileRevalidateSeconds time in seconds a stale response can still be used while it is revalidated
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> persistentCachePolicy( int ttlSeconds, int staleWhileRevalidateSeconds ) {
+        this.persistentTtlSeconds = ttlSeconds;
+        this.persistentStaleSeconds = Math.max( 0, staleWhileRevalidateSeconds );
+        return this;
+    }
+
+    /**
+     * Identifies the endpoint called by this request in the {@link RestRequestEvent}s.
+     *
+     * @param serviceName qualified name of the REST service
+     * @param methodName name of the REST method, followed by the types of its parameters to tell the overloads apart
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> endpoint( String serviceName, String methodName ) {
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        return this;
+    }
+
+    /**
+     * Adds a listener notified of the phases of this request, in addition to the {@link #addDefaultListener(RestRequestListener)
+     * default ones}.
+     *
+     * @param listener the listener
+     *
+     * @return this builder
+     */
+    public RestRequestBuilder<B, R> addListener( RestRequestListener listener ) {
+        if ( null == listeners ) {
+            listeners = new ArrayList<RestRequestListener>();
+        }
+        listeners.add( listener );
+        return this;
+    }
+
+    /**
+     * Sends the request with a {@link RestFuture} as callback. Cancelling the future cancels the request. The streaming mode is not
+     * supported.
+     *
+     * @return the future completed with the response
+     */
+    public RestFuture<R> future() {
+        if ( null != streamCallback ) {
+            throw new IllegalStateException( "A streaming request cannot be sent as a future" );
+        }
+        RestFuture<R> future = new RestFuture<R>();
+        this.callback = future.asCallback();
+        future.setRequest( send() );
+        return future;
+    }
+
+    /**
+     * Prefetches this GET request with the default time to live of the result.
+     *
+     * @return the handle of the prefetch or null if the request is already prefetched or the memory is low
+     *
+     * @see #prefetch(int)
+     */
+    public Request prefetch() {
+        return prefetch( PrefetchedRequest.DEFAULT_TTL_MILLIS );
+    }
+
+    /**
+     * Prefetch mode. The request is sent during idle time with the lowest priority and its result is kept in memory. The next
+     * identical request consumes it instead of opening a new connection, or waits for it if it is still in flight. If the prefetch is
+     * still waiting in the queue of the {@link RestRequestScheduler}, it is cancelled and the identical request is sent with its own
+     * priority.
+     * <p>The prefetches are cancelled when the JavaScript heap is almost full and the in-flight prefetches are cancelled when a real
+     * request is queued by the {@link RestRequestScheduler}. The callback of this builder is ignored.</p>
+     *
+     * @param ttlMillis time in milliseconds the result is kept once received
+     *
+     * @return the handle of the prefetch or null if the request is already prefetched or the memory is low
+     */
+    public Request prefetch( int ttlMillis ) {
+        if ( !RequestBuilder.GET.equals( method ) ) {
+            throw new IllegalArgumentException( "Only GET requests can be prefetched" );
+        }
+        if ( null == url && null == urlTemplate ) {
+            throw new IllegalArgumentException( "The url is required" );
+        }
+        if ( null != streamCallback ) {
+            throw new IllegalStateException( "A streaming request cannot be prefetched" );
+        }
+
+        UrlTemplate template = null == urlTemplate ? UrlTemplate.parse( url ) : urlTemplate;
+        String key = buildCoalescingKey( buildUrl( template ) );
+        if ( PrefetchedRequest.contains( key ) ) {
+            return null;
+        }
+        final PrefetchedRequest<R> prefetch = PrefetchedRequest.create( key, ttlMillis );
+        if ( null == prefetch ) {
+            return null;
+        }
+
+        // the prefetch is sent by a copy so this builder can still be used and sent
+        final RestRequestBuilder<B, R> prefetchBuilder = new RestRequestBuilder<B, R>( this );
+        prefetchBuilder.prefetching = true;
+        prefetchBuilder.prefetchRequest = prefetch;
+        prefetchBuilder.priority = RequestPriority.LOW;
+        prefetchBuilder.coalesce = false;
+        prefetchBuilder.supersedeKey = null;
+        return prefetch.startWhenIdle( new Runnable() {
+            @Override
+            public void run() {
+                if ( null != scheduler && scheduler.getQueueDepth() > 0 ) {
+                    // real requests are waiting
+                    PrefetchedRequest.cancelInFlight();
+                    return;
+                }
+                try {
+                    prefetch.start( prefetchBuilder.send( prefetch, null ) );
+                } catch ( RestException e ) {
+                    prefetch.onFailure( e );
+                }
+            }
+        } );
+    }
+
+    public Request send() {
+        if ( null == supersedeKey ) {
+            return send( callback, null );
+        }
+
+        SupersedingRequest superseding = SupersedingRequest.supersede( supersedeKey );
+        try {
+            superseding.start( send( superseding.wrap( callback ), superseding ) );
+        } catch ( RuntimeException e ) {
+            superseding.cancel();
+            throw e;
+        }
+        return superseding;
+    }
+
+    /**
+     * @param callback the callback of the request
+     * @param superseding the handle of the request if it can be superseded, null otherwise
+     */
+    private Request send( RestCallback<R> callback, SupersedingRequest superseding ) {
+        if ( null == method ) {
+            throw new IllegalArgumentException( "The method is required" );
+        }
+        if ( null == url && null == urlTemplate ) {
+            throw new IllegalArgumentException( "The url is required" );
+        }
+        if ( (null != user || null != password) && null != RestBatch.current() ) {
+            throw new IllegalStateException( "A request with a user or a password cannot be batched" );
+        }
+
+        // the lookup is asynchronous so a request sent inside a batch is sent without it
+        if ( null != persistentCache && persistentTtlSeconds >= 0 && !persistentLookupDone && !prefetching && null == streamCallback
+                && RequestBuilder.GET.equals( method ) && null == RestBatch.current() ) {
+            UrlTemplate template = null == urlTemplate ? UrlTemplate.parse( url ) : urlTemplate;
+            RestRequestBuilder<B, R> lookup = new RestRequestBuilder<B, R>( this );
+            lookup.persistentLookupDone = true;
+            return lookup.sendPersistent( buildCoalescingKey( buildUrl( template ) ), callback, superseding );
+        }
+
+        RequestTrace trace = newTrace();
+        double start = null == trace ? 0 : RestRequestEvent.now();
+
+        UrlTemplate template = null == urlTemplate ? UrlTemplate.parse( url ) : urlTemplate;
+        String requestUrl = buildUrl( template );
+
+        if ( null != trace ) {
+            trace.fire( RestRequestPhase.URL, start, RestRequestEvent.now() );
+            trace.setUrl( requestUrl );
+        }
+
+        if ( null != streamCallback ) {
+            return sendStreaming( requestUrl );
+        }
+
+        if ( !prefetching && !PrefetchedRequest.isEmpty() && isSafeMethod() ) {
+            Request prefetched = PrefetchedRequest.take( buildCoalescingKey( requestUrl ), callback );
+            if ( null != prefetched ) {
+                return prefetched;
+            }
+        }
+
+        CoalescedRequest<R> coalescedRequest = null;
+        if ( coalesce && isSafeMethod() ) {
+            String key = buildCoalescingKey( requestUrl );
+            coalescedRequest = CoalescedRequest.get( key );
+            if ( null != coalescedRequest ) {
+                return coalescedRequest.subscribe( callback );
+            }
+            coalescedRequest = CoalescedRequest.create( key );
+        }
+
+        String requestData = null;
+        String patchData = null;
+        String patchEtag = null;
+        if ( null != body ) {
+            start = null == trace ? 0 : RestRequestEvent.now();
+            requestData = null != bodyConverter ? bodyConverter.write( body ) : body.toString();
+            if ( patch && null != bodyConverter ) {
+                String snapshotKey = JsonPatch.snapshotKey( requestUrl );
+                JsonPatch.Snapshot snapshot = JsonPatch.getSnapshot( snapshotKey );
+                if ( null != snapshot ) {
+                    // without ETag, the patch tests the values it changes
+                    patchEtag = snapshot.getEtag();
+                    patchData = JsonPatch.diff( snapshot.getJson(), requestData, null == patchEtag );
+                }
+                callback = new SnapshotCallback( snapshotKey, requestData, null != patchData, callback );
+            }
+            if ( null != trace ) {
+                trace.fire( RestRequestPhase.SERIALIZATION, start, RestRequestEvent.now() );
+            }
+        }
+        if ( null != snapshotWriter && RequestBuilder.GET.equals( method ) ) {
+            callback = new SnapshotCallback( JsonPatch.snapshotKey( requestUrl ), null, false, callback );
+        }
+
+        RestBatch batch = RestBatch.current();
+        RequestBuilder builder;
+        if ( null != batch ) {
+            builder = new BatchRequestBuilder( batch, null == patchData ? method.toString() : JsonPatch.METHOD, requestUrl );
+        } else if ( null != patchData ) {
+            builder = new RequestBuilder( JsonPatch.METHOD, requestUrl ) {
+            };
+        } else {
+            builder = new RequestBuilder( method, requestUrl );
+        }
+        builder.setHeader( "Accept", "application/json" );
+
+        if ( null != endpoint ) {
+            for ( int i = 0; i < endpoint.getHeaderCount(); i++ ) {
+                builder.setHeader( endpoint.getHeaderName( i ), endpoint.getHeaderValue( i ) );
+            }
+        }
+        if ( null != headers && !headers.isEmpty() ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                builder.setHeader( header.getKey(), header.getValue() );
+            }
+        }
+
+        if ( null != retryPolicy && retryPolicy.isRetryPost() && RequestBuilder.POST.equals( method ) && null == builder
+                .getHeader( "Idempotency-Key" ) ) {
+            builder.setHeader( "Idempotency-Key", RetryPolicy.newIdempotencyKey() );
+        }
+
+        if ( null != user ) {
+            builder.setUser( user );
+        }
 
         if ( null != password ) {
             builder.setPassword( password );
@@ -346,20 +1151,522 @@ public class RestRequestBuilder<B, R> {
             builder.setTimeoutMillis( timeoutMillis );
         }
 
-        if ( null != body ) {
+        if ( null != patchData ) {
+            builder.setHeader( "Content-Type", JsonPatch.CONTENT_TYPE );
+            if ( null != patchEtag && null == builder.getHeader( "If-Match" ) ) {
+                builder.setHeader( "If-Match", patchEtag );
+            }
+            builder.setRequestData( patchData );
+        } else if ( null != body ) {
             if( null == builder.getHeader( "Content-Type" ) ) {
                 builder.setHeader( "Content-Type", "application/json; charset=utf-8" );
             }
-            if ( null != bodyConverter ) {
-                builder.setRequestData( bodyConverter.write( body ) );
+            builder.setRequestData( requestData );
+        }
+
+        if ( null != trace ) {
+            trace.startNetwork();
+        }
+
+        if ( null == coalescedRequest ) {
+            builder.setCallback( newRequestCallback( builder, trace, template, requestUrl, callback ).superseding( superseding ) );
+            return send( builder );
+        }
+
+        Request subscription = coalescedRequest.subscribe( callback );
+        builder.setCallback( newRequestCallback( builder, trace, template, requestUrl, coalescedRequest ) );
+        try {
+            coalescedRequest.start( send( builder ) );
+        } catch ( RestException e ) {
+            coalescedRequest.release();
+            throw e;
+        }
+        return subscription;
+    }
+
+    /**
+     * Looks up the persistent cache before sending the request. Called on a copy of the builder so the builder of the caller can be
+     * sent again.
+     *
+     * @param key the key of the request in the persistent cache
+     */
+    private Request sendPersistent( final String key, final RestCallback<R> callback, final SupersedingRequest superseding ) {
+        final DeferredRequest request = new DeferredRequest();
+        persistentCache.get( key, new Callback<IndexedDbResponseCache.Entry, Void>() {
+            @Override
+            public void onSuccess( IndexedDbResponseCache.Entry entry ) {
+                if ( request.isCancelled() ) {
+                    return;
+                }
+                if ( null != entry ) {
+                    double age = Duration.currentTimeMillis() - entry.getStoredAt();
+                    if ( age <= 1000.0 * ( persistentTtlSeconds + persistentStaleSeconds ) && deliverPersisted( entry, callback ) ) {
+                        request.start( null );
+                        if ( age > 1000.0 * persistentTtlSeconds ) {
+                            revalidatePersisted( key, entry );
+                        }
+                        return;
+                    }
+                }
+                try {
+                    request.start( send( new PersistingCallback( key, callback ), superseding ) );
+                } catch ( RestException e ) {
+                    if ( request.fail() ) {
+                        if ( null == callback ) {
+                            throw e;
+                        }
+                        callback.onFailure( e );
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure( Void reason ) {
+                onSuccess( null );
+            }
+        } );
+        return request;
+    }
+
+    /**
+     * @return false if the persisted response cannot be read
+     */
+    private boolean deliverPersisted( IndexedDbResponseCache.Entry entry, RestCallback<R> callback ) {
+        R result = null;
+        if ( null != responseConverter && null != entry.getText() && !entry.getText().isEmpty() ) {
+            try {
+                result = responseReader().read( entry.getText() );
+            } catch ( Exception e ) {
+                return false;
+            }
+        }
+        if ( null != callback ) {
+            callback.onSuccess( new PersistedResponse( entry.getText(), entry.getEtag() ), result );
+        }
+        return true;
+    }
+
+    /**
+     * Sends a conditional request in the background to refresh a stale persisted response. Its result is not deserialized. The
+     * request is sent by a copy of this builder so this one is left untouched.
+     */
+    private void revalidatePersisted( final String key, final IndexedDbResponseCache.Entry entry ) {
+        RestRequestBuilder<B, R> revalidation = new RestRequestBuilder<B, R>( this );
+        if ( null != entry.getEtag() && !revalidation.hasHeader( "If-None-Match" ) ) {
+            revalidation.addHeader( "If-None-Match", entry.getEtag() );
+        }
+        revalidation.responseConverter = null;
+        revalidation.cache = null;
+        revalidation.coalesce = false;
+        revalidation.priority = RequestPriority.LOW;
+        revalidation.persistentLookupDone = true;
+        try {
+            revalidation.send( new RestCallback<R>() {
+                @Override
+                public void onSuccess( Response response, R result ) {
+                    if ( null != response && Response.SC_NOT_MODIFIED == response.getStatusCode() ) {
+                        persistentCache.put( key, templateKey(), entry.getText(), entry.getEtag() );
+                    } else {
+                        persist( key, response );
+                    }
+                }
+
+                @Override
+                public void onSuccess( R result ) {
+                }
+
+                @Override
+                public void onError( Response response ) {
+                    // the stale response has already been delivered
+                }
+
+                @Override
+                public void onFailure( Throwable throwable ) {
+                }
+            }, null );
+        } catch ( RestException e ) {
+            // the stale response has already been delivered
+        }
+    }
+
+    /**
+     * @return the url template including the application path, identifying the responses invalidated by a mutation
+     */
+    private String templateKey() {
+        return applicationPath + ( null == urlTemplate ? UrlTemplate.parse( url ) : urlTemplate );
+    }
+
+    private void persist( String key, Response response ) {
+        if ( null != response && Response.SC_OK == response.getStatusCode() ) {
+            persistentCache.put( key, templateKey(), response.getText(), response.getHeader( "ETag" ) );
+        }
+    }
+
+    /**
+     * Persists the successful responses before calling the callback of the request
+     */
+    private class PersistingCallback extends RestCallback<R> {
+
+        private final String key;
+
+        private final RestCallback<R> callback;
+
+        private PersistingCallback( String key, RestCallback<R> callback ) {
+            this.key = key;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess( Response response, R result ) {
+            persist( key, response );
+            if ( null != callback ) {
+                callback.onSuccess( response, result );
+            }
+        }
+
+        @Override
+        public void onSuccess( R result ) {
+            onSuccess( null, result );
+        }
+
+        @Override
+        public void onError( Response response ) {
+            if ( null == callback ) {
+                super.onError( response );
+            } else {
+                callback.onError( response );
+            }
+        }
+
+        @Override
+        public void onFailure( Throwable throwable ) {
+            if ( null == callback ) {
+                super.onFailure( throwable );
             } else {
-                builder.setRequestData( body.toString() );
+                callback.onFailure( throwable );
             }
         }
+    }
+
+    /**
+     * Updates the snapshot of the resource before calling the callback of the request. An error drops the snapshot, the resource may
+     * have been changed by someone else.
+     */
+    private class SnapshotCallback extends RestCallback<R> {
+
+        private final String key;
+
+        /**
+         * JSON of the resource sent by the update or null to write the result of the request
+         */
+        private final String json;
 
-        builder.setCallback( new RestRequestCallback<R>( responseConverter, callback ) );
+        /**
+         * Whether the update is sent as a JSON Patch
+         */
+        private final boolean patched;
+
+        private final RestCallback<R> callback;
+
+        private SnapshotCallback( String key, String json, boolean patched, RestCallback<R> callback ) {
+            this.key = key;
+            this.json = json;
+            this.patched = patched;
+            this.callback = callback;
+        }
 
+        @Override
+        public void onSuccess( Response response, R result ) {
+            String etag = null == response ? null : response.getHeader( "ETag" );
+            if ( null != json ) {
+                JsonPatch.putSnapshot( key, json, etag );
+            } else if ( null != result ) {
+                JsonPatch.putSnapshot( key, snapshotWriter.write( result ), etag );
+            }
+            if ( null != callback ) {
+                callback.onSuccess( response, result );
+            }
+        }
+
+        @Override
+        public void onSuccess( R result ) {
+            onSuccess( null, result );
+        }
+
+        @Override
+        public void onError( Response response ) {
+            JsonPatch.removeSnapshot( key );
+            if ( patched && Response.SC_METHOD_NOT_ALLOWED == response.getStatusCode() ) {
+                // without snapshot, the whole body is sent with the method of the request
+                try {
+                    send( callback, null );
+                } catch ( RestException e ) {
+                    onFailure( e );
+                }
+                return;
+            }
+            if ( null == callback ) {
+                super.onError( response );
+            } else {
+                callback.onError( response );
+            }
+        }
+
+        @Override
+        public void onFailure( Throwable throwable ) {
+            JsonPatch.removeSnapshot( key );
+            if ( null == callback ) {
+                super.onFailure( throwable );
+            } else {
+                callback.onFailure( throwable );
+            }
+        }
+    }
+
+    private Request sendStreaming( String requestUrl ) {
+        if ( null == responseConverter ) {
+            throw new IllegalArgumentException( "The response converter is required to read the items" );
+        }
+
+        StreamingRequest<R> request = new StreamingRequest<R>( method.toString(), requestUrl, user, password, responseReader(),
+                streamCallback );
+        if ( !hasHeader( "Accept" ) ) {
+            request.setHeader( "Accept", RestStreamCallback.CONTENT_TYPE );
+        }
+        if ( null != endpoint ) {
+            for ( int i = 0; i < endpoint.getHeaderCount(); i++ ) {
+                // the XMLHttpRequest appends the values of a header set twice
+                if ( null == headers || !headers.containsKey( endpoint.getHeaderName( i ) ) ) {
+                    request.setHeader( endpoint.getHeaderName( i ), endpoint.getHeaderValue( i ) );
+                }
+            }
+        }
+        if ( null != headers ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                request.setHeader( header.getKey(), header.getValue() );
+            }
+        }
+        if ( null != includeCredentials ) {
+            request.setIncludeCredentials( includeCredentials );
+        }
+
+        String requestData = null;
+        if ( null != body ) {
+            if ( !hasHeader( "Content-Type" ) ) {
+                request.setHeader( "Content-Type", "application/json; charset=utf-8" );
+            }
+            requestData = null != bodyConverter ? bodyConverter.write( body ) : body.toString();
+        }
+
+        request.send( requestData, timeoutMillis );
+        return request;
+    }
+
+    /**
+     * Package-private for the benchmarks.
+     *
+     * @param template the template of the url
+     *
+     * @return the url of the request
+     */
+    String buildUrl( UrlTemplate template ) {
+        StringBuilder urlBuilder;
+        boolean first = true;
+        if ( null != expandedUrl && null != endpoint && template == endpoint.getUrlTemplate() ) {
+            urlBuilder = new StringBuilder( applicationPath.length() + expandedUrl.length() + 1 );
+            urlBuilder.append( applicationPath );
+            if ( !applicationPath.endsWith( "/" ) && !expandedUrl.startsWith( "/" ) ) {
+                urlBuilder.append( '/' );
+            }
+            urlBuilder.append( expandedUrl );
+            if ( null == queryParams || queryParams.isEmpty() ) {
+                return urlBuilder.toString();
+            }
+            first = expandedUrl.indexOf( '?' ) < 0;
+        } else {
+            urlBuilder = expandUrl( template );
+        }
+
+        if ( null != queryParamValues ) {
+            for ( int i = 0; i < queryParamValues.length; i++ ) {
+                Object value = queryParamValues[i];
+                String name = endpoint.getEncodedQueryParamName( i );
+                if ( value instanceof Iterable ) {
+                    for ( Object element : (Iterable<?>) value ) {
+                        first = appendQueryParam( urlBuilder, first, name, element );
+                    }
+                } else if ( value instanceof Object[] ) {
+                    for ( Object element : (Object[]) value ) {
+                        first = appendQueryParam( urlBuilder, first, name, element );
+                    }
+                } else if ( null != value ) {
+                    first = appendQueryParam( urlBuilder, first, name, value );
+                }
+            }
+        }
+
+        if ( null != queryParams && !queryParams.isEmpty() ) {
+            for ( Entry<String, List<Object>> params : queryParams.entrySet() ) {
+                String name = QueryStringEncoder.instance.encode( params.getKey() );
+                if ( null != params.getValue() && !params.getValue().isEmpty() ) {
+                    for ( Object param : params.getValue() ) {
+                        first = appendQueryParam( urlBuilder, first, name, param );
+                    }
+                }
+            }
+        }
+
+        return urlBuilder.toString();
+    }
+
+    private boolean appendQueryParam( StringBuilder urlBuilder, boolean first, String encodedName, Object param ) {
+        urlBuilder.append( first ? '?' : '&' );
+        urlBuilder.append( encodedName );
+        if ( null != param ) {
+            urlBuilder.append( '=' );
+            urlBuilder.append( QueryStringEncoder.instance.encode( param.toString() ) );
+        }
+        return false;
+    }
+
+    private StringBuilder expandUrl( UrlTemplate template ) {
+        if ( null == pathParamValues ) {
+            return template.expand( applicationPath, pathParams );
+        }
+
+        UrlTemplate endpointTemplate = endpoint.getUrlTemplate();
+        if ( template == endpointTemplate && null == pathParams ) {
+            return template.expand( applicationPath, pathParamValues );
+        }
+
+        // the url or some path parameters have been changed, the values are matched by name
+        Object[] values = new Object[template.getParamCount()];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = UrlTemplate.MISSING;
+        }
+        for ( int i = 0; i < pathParamValues.length; i++ ) {
+            int index = template.indexOfParam( endpointTemplate.getParamName( i ) );
+            if ( index >= 0 && UrlTemplate.MISSING != pathParamValues[i] ) {
+                values[index] = pathParamValues[i];
+            }
+        }
+        if ( null != pathParams ) {
+            for ( Entry<String, Object> param : pathParams.entrySet() ) {
+                int index = template.indexOfParam( param.getKey() );
+                if ( index >= 0 ) {
+                    values[index] = param.getValue();
+                }
+            }
+        }
+        return template.expand( applicationPath, values );
+    }
+
+    /**
+     * @return the trace notifying the listeners or null if there is no listener
+     */
+    private RequestTrace newTrace() {
+        if ( defaultListeners.isEmpty() && ( null == listeners || listeners.isEmpty() ) ) {
+            return null;
+        }
+        // copied so a listener can unregister itself
+        List<RestRequestListener> allListeners = new ArrayList<RestRequestListener>( defaultListeners );
+        if ( null != listeners ) {
+            allListeners.addAll( listeners );
+        }
+        return new RequestTrace( allListeners, serviceName, methodName, method.toString() );
+    }
+
+    private RestRequestCallback<R> newRequestCallback( RequestBuilder builder, RequestTrace trace, UrlTemplate template, String
+            requestUrl, RestCallback<R> callback ) {
+        ResponseDeserializer requestDeserializer = deserializer;
+        if ( null != partialResultCallback && deserializer instanceof IncrementalResponseDeserializer ) {
+            requestDeserializer = ((IncrementalResponseDeserializer) deserializer).withPartialResults( partialResultCallback );
+        }
+        return newCacheAwareCallback( builder, trace, template, requestUrl, callback ).deserializer( requestDeserializer );
+    }
+
+    /**
+     * @return the reader of the responses, interning the values if asked
+     */
+    private ObjectReader<R> responseReader() {
+        if ( internPerResponse ) {
+            return new ResponseInterner().wrap( responseConverter );
+        } else if ( null != interner ) {
+            return interner.wrap( responseConverter );
+        } else {
+            return responseConverter;
+        }
+    }
+
+    private RestRequestCallback<R> newCacheAwareCallback( RequestBuilder builder, RequestTrace trace, UrlTemplate template, String
+            requestUrl, RestCallback<R> callback ) {
+        ObjectReader<R> responseReader = responseReader();
+        String templateKey = applicationPath + template;
+        if ( !isSafeMethod() && ( null != cache || null != persistentCache ) ) {
+            return new CachingRequestCallback<R>( responseReader, callback, trace, cache, persistentCache, templateKey );
+        }
+        if ( null == cache || !RequestBuilder.GET.equals( method ) ) {
+            return new RestRequestCallback<R>( responseReader, callback, trace );
+        }
+
+        CachedResponse cached = cache.get( requestUrl );
+        if ( null != cached ) {
+            if ( null != cached.getEtag() && null == builder.getHeader( "If-None-Match" ) ) {
+                builder.setHeader( "If-None-Match", cached.getEtag() );
+            }
+            if ( null != cached.getLastModified() && null == builder.getHeader( "If-Modified-Since" ) ) {
+                builder.setHeader( "If-Modified-Since", cached.getLastModified() );
+            }
+        }
+        return new CachingRequestCallback<R>( responseReader, callback, trace, cache, templateKey, requestUrl, cached );
+    }
+
+    private boolean isSafeMethod() {
+        return RequestBuilder.GET.equals( method ) || RequestBuilder.HEAD.equals( method );
+    }
+
+    /**
+     * The key identifying a request is made of its method, final url, user and headers.
+     */
+    private String buildCoalescingKey( String requestUrl ) {
+        StringBuilder key = new StringBuilder( requestUrl.length() + 64 );
+        key.append( method ).append( ' ' ).append( requestUrl );
+        if ( null != user ) {
+            key.append( "\nuser:" ).append( user );
+        }
+        if ( !hasHeader( "Accept" ) ) {
+            key.append( "\nAccept:application/json" );
+        }
+        if ( null != endpoint ) {
+            for ( int i = 0; i < endpoint.getHeaderCount(); i++ ) {
+                if ( null == headers || !headers.containsKey( endpoint.getHeaderName( i ) ) ) {
+                    key.append( '\n' ).append( endpoint.getHeaderName( i ) ).append( ':' ).append( endpoint.getHeaderValue( i ) );
+                }
+            }
+        }
+        if ( null != headers ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                key.append( '\n' ).append( header.getKey() ).append( ':' ).append( header.getValue() );
+            }
+        }
+        return key.toString();
+    }
+
+    private Request send( RequestBuilder builder ) {
+        if ( null != prefetchRequest && null != scheduler ) {
+            prefetchRequest.scheduled( scheduler, builder );
+        }
         try {
+            if ( null != retryPolicy && retryPolicy.isRetryable( builder.getHTTPMethod() ) ) {
+                return new RetryingRequest( builder, retryPolicy, scheduler, priority ).start();
+            }
+            if ( null != scheduler ) {
+                Request request = scheduler.schedule( builder, priority );
+                if ( !prefetching && scheduler.getQueueDepth() > 0 ) {
+                    PrefetchedRequest.cancelInFlight();
+                }
+                return request;
+            }
             return builder.send();
         } catch ( RequestException e ) {
             throw new RestException( e );
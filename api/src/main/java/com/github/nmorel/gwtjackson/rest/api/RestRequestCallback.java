@@ -17,6 +17,7 @@
 package com.github.nmorel.gwtjackson.rest.api;
 
 import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.Callback;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.Response;
@@ -30,27 +31,74 @@ class RestRequestCallback<R> implements RequestCallback {
 
     private final RestCallback<R> callback;
 
+    private final RequestTrace trace;
+
+    private ResponseDeserializer deserializer;
+
+    private SupersedingRequest superseding;
+
     RestRequestCallback(ObjectReader<R> responseConverter, RestCallback<R> callback) {
+        this(responseConverter, callback, null);
+    }
+
+    RestRequestCallback(ObjectReader<R> responseConverter, RestCallback<R> callback, RequestTrace trace) {
         this.responseConverter = responseConverter;
         this.callback = callback;
+        this.trace = trace;
+    }
+
+    /**
+     * @param deserializer the deserializer reading the successful responses or null to read them synchronously
+     *
+     * @return this callback
+     */
+    RestRequestCallback<R> deserializer(ResponseDeserializer deserializer) {
+        this.deserializer = deserializer;
+        return this;
+    }
+
+    /**
+     * @param superseding the handle of the request if it can be superseded. Once it is cancelled, the response is ignored.
+     *
+     * @return this callback
+     */
+    RestRequestCallback<R> superseding(SupersedingRequest superseding) {
+        this.superseding = superseding;
+        return this;
     }
 
     @Override
-    public void onResponseReceived(Request request, Response response) {
+    public void onResponseReceived(final Request request, final Response response) {
+        if (null != trace) {
+            trace.endNetwork();
+        }
+        if (null != superseding && superseding.isCancelled()) {
+            return;
+        }
         if (isSuccessStatusCode(response)) {
             if (null != callback) {
-                R result;
-                if (null != responseConverter && null != response.getText() && !response.getText().isEmpty()) {
-                    try {
-                        result = responseConverter.read(response.getText());
-                    } catch (Exception e) {
-                        onError(request, e);
-                        return;
+                final double start = null == trace ? 0 : RestRequestEvent.now();
+                readResult(response, new Callback<R, Throwable>() {
+                    @Override
+                    public void onSuccess(R result) {
+                        if (null == trace) {
+                            callback.onSuccess(response, result);
+                        } else {
+                            double end = RestRequestEvent.now();
+                            trace.fire(RestRequestPhase.DESERIALIZATION, start, end);
+                            try {
+                                callback.onSuccess(response, result);
+                            } finally {
+                                trace.fire(RestRequestPhase.CALLBACK, end, RestRequestEvent.now());
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable reason) {
+                        onError(request, reason);
                     }
-                } else {
-                    result = null;
-                }
-                callback.onSuccess(response, result);
+                });
             }
         } else {
             if (null != callback) {
@@ -61,13 +109,40 @@ class RestRequestCallback<R> implements RequestCallback {
         }
     }
 
-    private boolean isSuccessStatusCode(Response response) {
+    /**
+     * Deserializes the result of a successful response with the {@link ResponseDeserializer} if there is one or synchronously
+     * otherwise.
+     *
+     * @param response the response
+     * @param resultCallback receives the result or null if there is no content
+     */
+    void readResult(Response response, Callback<R, Throwable> resultCallback) {
+        if (null == responseConverter || null == response.getText() || response.getText().isEmpty()) {
+            resultCallback.onSuccess(null);
+        } else if (null != deserializer) {
+            deserializer.deserialize(response.getText(), responseConverter, resultCallback);
+        } else {
+            R result;
+            try {
+                result = responseConverter.read(response.getText());
+            } catch (Exception e) {
+                resultCallback.onFailure(e);
+                return;
+            }
+            resultCallback.onSuccess(result);
+        }
+    }
+
+    boolean isSuccessStatusCode(Response response) {
         int statusCode = response.getStatusCode();
         return (statusCode >= 200 && statusCode < 300) || statusCode == 304;
     }
 
     @Override
     public void onError(Request request, Throwable exception) {
+        if (null != trace) {
+            trace.endNetwork();
+        }
         if (null == callback) {
             throw new RestException(exception);
         } else {
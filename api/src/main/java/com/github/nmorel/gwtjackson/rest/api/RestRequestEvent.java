@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+/**
+ * Timing of a {@link RestRequestPhase}. The timestamps are in milliseconds with a sub-millisecond resolution when the browser
+ * supports <code>performance.now()</code>. They can only be compared to each other.
+ */
+public final class RestRequestEvent {
+
+    /**
+     * @return the current high resolution timestamp in milliseconds
+     */
+    static native double now() /*-{
+        var performance = $wnd.performance;
+        return performance && performance.now ? performance.now() : new Date().getTime();
+    }-*/;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final String httpMethod;
+
+    private final String url;
+
+    private final RestRequestPhase phase;
+
+    private final double start;
+
+    private final double end;
+
+    RestRequestEvent( String serviceName, String methodName, String httpMethod, String url, RestRequestPhase phase, double start,
+                      double end ) {
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.httpMethod = httpMethod;
+        this.url = url;
+        this.phase = phase;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the qualified name of the REST service or null if the request does not come from a generated builder
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the name of the REST method followed by the types of its parameters, like <code>greet(java.lang.String)</code>, or null
+     * if the request does not come from a generated builder
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * @return the final url or null if the phase is {@link RestRequestPhase#URL}
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public RestRequestPhase getPhase() {
+        return phase;
+    }
+
+    public double getStart() {
+        return start;
+    }
+
+    public double getEnd() {
+        return end;
+    }
+
+    public double getDuration() {
+        return end - start;
+    }
+}
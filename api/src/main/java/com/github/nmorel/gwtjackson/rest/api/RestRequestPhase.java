@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+/**
+ * Phases of a request reported to the {@link RestRequestListener}s.
+ */
+public enum RestRequestPhase {
+    /**
+     * Building the url with the path and query parameters
+     */
+    URL,
+    /**
+     * Serializing the body with the {@link com.github.nmorel.gwtjackson.client.ObjectWriter}
+     */
+    SERIALIZATION,
+    /**
+     * From the moment the request is sent until the response is received, including the time spent in the scheduler queue and the
+     * retries
+     */
+    NETWORK,
+    /**
+     * Deserializing the response with the {@link com.github.nmorel.gwtjackson.client.ObjectReader}
+     */
+    DESERIALIZATION,
+    /**
+     * Executing the {@link RestCallback}
+     */
+    CALLBACK
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Limits the number of in-flight requests per host. The requests exceeding the limit are queued by {@link RequestPriority} and sent
+ * in FIFO order within each priority as soon as a request to the same host completes.
+ */
+public class RestRequestScheduler {
+
+    /**
+     * Handle of a scheduled request. It can be cancelled while waiting in the queue.
+     */
+    private class ScheduledRequest extends Request implements RequestCallback {
+
+        private final RequestBuilder builder;
+
+        private final RequestPriority priority;
+
+        private final String host;
+
+        private final RequestCallback callback;
+
+        private final double queuedAt;
+
+        private Request request;
+
+        private boolean done;
+
+        private ScheduledRequest( RequestBuilder builder, RequestPriority priority ) {
+            this.builder = builder;
+            this.priority = priority;
+            this.host = getHost( builder.getUrl() );
+            this.callback = builder.getCallback();
+            this.queuedAt = Duration.currentTimeMillis();
+            builder.setCallback( this );
+        }
+
+        @Override
+        public void cancel() {
+            if ( done ) {
+                return;
+            }
+            done = true;
+            if ( null == request ) {
+                queues[priority.ordinal()].remove( this );
+            } else {
+                request.cancel();
+                release( host );
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            return !done && ( null == request || request.isPending() );
+        }
+
+        @Override
+        public void onResponseReceived( Request request, Response response ) {
+            if ( complete() ) {
+                callback.onResponseReceived( this, response );
+            }
+        }
+
+        @Override
+        public void onError( Request request, Throwable exception ) {
+            if ( complete() ) {
+                callback.onError( this, exception );
+            }
+        }
+
+        private boolean complete() {
+            if ( done ) {
+                return false;
+            }
+            done = true;
+            release( host );
+            return true;
+        }
+
+        private void start() throws RequestException {
+            double waited = Duration.currentTimeMillis() - queuedAt;
+            totalWaitMillis += waited;
+            maxWaitMillis = Math.max( maxWaitMillis, waited );
+            startedCount++;
+
+            acquire( host );
+            try {
+                request = builder.send();
+            } catch ( RequestException e ) {
+                done = true;
+                decrement( host );
+                throw e;
+            }
+        }
+    }
+
+    private final int maxInFlightPerHost;
+
+    @SuppressWarnings( "unchecked" )
+    private final LinkedList<ScheduledRequest>[] queues = new LinkedList[RequestPriority.values().length];
+
+    private final Map<String, Integer> inFlight = new HashMap<String, Integer>();
+
+    private double totalWaitMillis;
+
+    private double maxWaitMillis;
+
+    private int startedCount;
+
+    /**
+     * @param maxInFlightPerHost maximum number of in-flight requests per host
+     */
+    public RestRequestScheduler( int maxInFlightPerHost ) {
+        if ( maxInFlightPerHost <= 0 ) {
+            throw new IllegalArgumentException( "The maximum number of in-flight requests must be positive" );
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        for ( int i = 0; i < queues.length; i++ ) {
+            queues[i] = new LinkedList<ScheduledRequest>();
+        }
+    }
+
+    /**
+     * Sends the request if the limit of its host is not reached or queues it.
+     *
+     * @param builder the request to send, its callback must be set
+     * @param priority the priority of the request
+     *
+     * @return the handle of the request
+     *
+     * @throws RequestException if the request is sent immediately and fails
+     */
+    public Request schedule( RequestBuilder builder, RequestPriority priority ) throws RequestException {
+        ScheduledRequest request = new ScheduledRequest( builder, null == priority ? RequestPriority.NORMAL : priority );
+        if ( getInFlight( request.host ) < maxInFlightPerHost ) {
+            request.start();
+        } else {
+            queues[request.priority.ordinal()].add( request );
+        }
+        return request;
+    }
+
+    private void acquire( String host ) {
+        inFlight.put( host, getInFlight( host ) + 1 );
+    }
+
+    private void release( String host ) {
+        decrement( host );
+        drain( host );
+    }
+
+    private void decrement( String host ) {
+        int count = getInFlight( host ) - 1;
+        if ( count <= 0 ) {
+            inFlight.remove( host );
+        } else {
+            inFlight.put( host, count );
+        }
+    }
+
+    /**
+     * Starts the requests waiting for the given host while its limit is not reached
+     */
+    private void drain( String host ) {
+        ScheduledRequest request;
+        while ( getInFlight( host ) < maxInFlightPerHost && null != ( request = poll( host ) ) ) {
+            try {
+                request.start();
+            } catch ( RequestException e ) {
+                request.callback.onError( request, e );
+            }
+        }
+    }
+
+    /**
+     * @return the oldest request of the highest priority waiting for the given host or null if there is none
+     */
+    private ScheduledRequest poll( String host ) {
+        for ( LinkedList<ScheduledRequest> queue : queues ) {
+            Iterator<ScheduledRequest> iterator = queue.iterator();
+            while ( iterator.hasNext() ) {
+                ScheduledRequest request = iterator.next();
+                if ( host.equals( request.host ) ) {
+                    iterator.remove();
+                    return request;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param builder the builder of a scheduled request
+     *
+     * @return true if the request is still waiting in the queue
+     */
+    boolean isQueued( RequestBuilder builder ) {
+        for ( LinkedList<ScheduledRequest> queue : queues ) {
+            for ( ScheduledRequest request : queue ) {
+                if ( request.builder == builder ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param host the host
+     *
+     * @return the number of in-flight requests for the given host
+     */
+    public int getInFlight( String host ) {
+        Integer count = inFlight.get( host );
+        return null == count ? 0 : count;
+    }
+
+    /**
+     * @return the number of queued requests
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for ( LinkedList<ScheduledRequest> queue : queues ) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @param priority the priority
+     *
+     * @return the number of queued requests with the given priority
+     */
+    public int getQueueDepth( RequestPriority priority ) {
+        return queues[priority.ordinal()].size();
+    }
+
+    /**
+     * @return the number of requests started by this scheduler
+     */
+    public int getStartedCount() {
+        return startedCount;
+    }
+
+    /**
+     * @return the average time in milliseconds the started requests waited in the queue
+     */
+    public double getAverageWaitMillis() {
+        return startedCount == 0 ? 0 : totalWaitMillis / startedCount;
+    }
+
+    /**
+     * @return the longest time in milliseconds a started request waited in the queue
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return the host of the url or an empty string for a relative url, sent to the host of the page
+     */
+    static String getHost( String url ) {
+        int start;
+        if ( url.startsWith( "//" ) ) {
+            start = 2;
+        } else {
+            int scheme = url.indexOf( "://" );
+            if ( scheme < 0 ) {
+                return "";
+            }
+            start = scheme + 3;
+        }
+        int end = start;
+        while ( end < url.length() && url.charAt( end ) != '/' && url.charAt( end ) != '?' && url.charAt( end ) != '#' ) {
+            end++;
+        }
+        return url.substring( start, end );
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+/**
+ * Cache of the deserialized responses of GET requests, used to send conditional requests with the <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code> headers and to serve the cached result when the server answers 304 Not Modified.
+ * <p>The cached results are shared between all the callers and must not be modified.</p>
+ */
+public interface RestResponseCache {
+
+    /**
+     * @param url the final url of the request
+     *
+     * @return the cached response or null if there is none
+     */
+    CachedResponse get( String url );
+
+    /**
+     * Stores a response.
+     *
+     * @param url the final url of the request
+     * @param response the response to store
+     */
+    void put( String url, CachedResponse response );
+
+    /**
+     * Removes all the responses of the requests sent to the given url template. Called when a POST, PUT or DELETE request sent to
+     * the same template succeeds.
+     *
+     * @param template the url template, including the application path
+     */
+    void invalidate( String template );
+
+    /**
+     * Removes all the responses.
+     */
+    void clear();
+}
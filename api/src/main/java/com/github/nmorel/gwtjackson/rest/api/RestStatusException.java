@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+/**
+ * Exception thrown when the server answers with an unsuccessful status code.
+ */
+public class RestStatusException extends RestException {
+
+    private final int statusCode;
+
+    private final String body;
+
+    public RestStatusException( int statusCode, String body ) {
+        super( "An error occured. Status : " + statusCode );
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the body of the response, can be null
+     */
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.google.gwt.http.client.Response;
+
+/**
+ * Callback of a streaming request. The response is read as newline-delimited JSON and each item is delivered as soon as its line is
+ * received, before the end of the response.
+ */
+public abstract class RestStreamCallback<T> {
+
+    /**
+     * Content type of a newline-delimited JSON response
+     */
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    /**
+     * Called for each item of the response, in order.
+     *
+     * @param item the item
+     */
+    public abstract void onItem( T item );
+
+    /**
+     * Called once all the items have been delivered.
+     *
+     * @param response the response
+     */
+    public void onComplete( Response response ) {
+    }
+
+    public void onError( Response response ) {
+        onFailure( new RestException( "An error occured. Status : " + response.getStatusCode() ) );
+    }
+
+    public void onFailure( Throwable throwable ) {
+        throw new RestException( throwable );
+    }
+}
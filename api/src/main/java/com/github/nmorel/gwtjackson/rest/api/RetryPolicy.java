@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.Date;
+import java.util.Random;
+
+import com.google.gwt.http.client.RequestBuilder;
+
+/**
+ * Defines when and how often a failed request is retried.
+ * <p>GET, PUT, DELETE and HEAD requests are retried on network errors and on the 429, 502, 503 and 504 status codes. POST requests
+ * are retried only if {@link #retryPost(boolean)} is enabled, they are then sent with an <code>Idempotency-Key</code> header so the
+ * server can detect the duplicates.</p>
+ * <p>The delay between two attempts uses decorrelated jitter : a random value between the base delay and three times the previous
+ * delay, capped by the maximum delay. A <code>Retry-After</code> header sent by the server is honored.</p>
+ */
+public class RetryPolicy {
+
+    private static final Random random = new Random();
+
+    private int maxAttempts = 3;
+
+    private int baseDelayMillis = 100;
+
+    private int maxDelayMillis = 10000;
+
+    private boolean retryPost = false;
+
+    /**
+     * @param maxAttempts maximum number of attempts, including the first one
+     *
+     * @return this policy
+     */
+    public RetryPolicy maxAttempts( int maxAttempts ) {
+        if ( maxAttempts < 1 ) {
+            throw new IllegalArgumentException( "There must be at least one attempt" );
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param baseDelayMillis minimum delay in milliseconds between two attempts
+     *
+     * @return this policy
+     */
+    public RetryPolicy baseDelay( int baseDelayMillis ) {
+        this.baseDelayMillis = baseDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param maxDelayMillis maximum delay in milliseconds between two attempts. A request whose Retry-After header asks for a longer
+     * delay is not retried.
+     *
+     * @return this policy
+     */
+    public RetryPolicy maxDelay( int maxDelayMillis ) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param retryPost true to also retry the POST requests. They are sent with an Idempotency-Key header.
+     *
+     * @return this policy
+     */
+    public RetryPolicy retryPost( boolean retryPost ) {
+        this.retryPost = retryPost;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isRetryPost() {
+        return retryPost;
+    }
+
+    /**
+     * @param httpMethod the HTTP method
+     *
+     * @return true if the requests with the given method can be retried
+     */
+    public boolean isRetryable( String httpMethod ) {
+        if ( RequestBuilder.POST.toString().equals( httpMethod ) ) {
+            return retryPost;
+        }
+        return RequestBuilder.GET.toString().equals( httpMethod ) || RequestBuilder.PUT.toString().equals( httpMethod ) ||
+                RequestBuilder.DELETE.toString().equals( httpMethod ) || RequestBuilder.HEAD.toString().equals( httpMethod );
+    }
+
+    /**
+     * @param statusCode the status code of the response. 0 means a network error.
+     *
+     * @return true if the response can be retried
+     */
+    public boolean isRetryableStatus( int statusCode ) {
+        return statusCode == 0 || statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * @param previousDelayMillis the previous delay or 0 for the first retry
+     *
+     * @return the delay in milliseconds before the next attempt
+     */
+    public int nextDelay( int previousDelayMillis ) {
+        int upper = Math.max( baseDelayMillis, previousDelayMillis * 3 );
+        int delay = baseDelayMillis + (int) ( random.nextDouble() * ( upper - baseDelayMillis ) );
+        return Math.min( maxDelayMillis, delay );
+    }
+
+    /**
+     * @param retryAfter value of the Retry-After header, either a number of seconds or an HTTP date
+     *
+     * @return the delay in milliseconds asked by the server, -1 if it cannot be parsed or -2 if it exceeds the maximum delay
+     */
+    @SuppressWarnings( "deprecation" )
+    public int parseRetryAfter( String retryAfter ) {
+        if ( null == retryAfter || retryAfter.trim().isEmpty() ) {
+            return -1;
+        }
+        long delay;
+        try {
+            delay = Long.parseLong( retryAfter.trim() ) * 1000;
+        } catch ( NumberFormatException e ) {
+            try {
+                delay = Date.parse( retryAfter ) - new Date().getTime();
+            } catch ( IllegalArgumentException ex ) {
+                return -1;
+            }
+        }
+        if ( delay > maxDelayMillis ) {
+            return -2;
+        }
+        return (int) Math.max( 0, delay );
+    }
+
+    /**
+     * @return a random key to put in the Idempotency-Key header
+     */
+    static String newIdempotencyKey() {
+        StringBuilder key = new StringBuilder( 32 );
+        for ( int i = 0; i < 4; i++ ) {
+            String part = Integer.toHexString( random.nextInt() );
+            for ( int j = part.length(); j < 8; j++ ) {
+                key.append( '0' );
+            }
+            key.append( part );
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Handle of a request retried according to a {@link RetryPolicy}. The same {@link RequestBuilder} is sent for each attempt so the
+ * serialized body is reused. The callback only receives the last response.
+ */
+class RetryingRequest extends Request implements RequestCallback {
+
+    private final RequestBuilder builder;
+
+    private final RetryPolicy policy;
+
+    private final RestRequestScheduler scheduler;
+
+    private final RequestPriority priority;
+
+    private final RequestCallback callback;
+
+    private final Timer timer = new Timer() {
+        @Override
+        public void run() {
+            try {
+                attempt();
+            } catch ( RequestException e ) {
+                done = true;
+                callback.onError( RetryingRequest.this, e );
+            }
+        }
+    };
+
+    private int attempts;
+
+    private int delayMillis;
+
+    private Request request;
+
+    private boolean done;
+
+    /**
+     * @param builder the request to send, its callback must be set
+     * @param policy the retry policy
+     * @param scheduler the scheduler used to send each attempt, can be null
+     * @param priority the priority of the request
+     */
+    RetryingRequest( RequestBuilder builder, RetryPolicy policy, RestRequestScheduler scheduler, RequestPriority priority ) {
+        this.builder = builder;
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.callback = builder.getCallback();
+    }
+
+    /**
+     * Sends the first attempt.
+     *
+     * @return this handle
+     *
+     * @throws RequestException if the request cannot be sent
+     */
+    Request start() throws RequestException {
+        attempt();
+        return this;
+    }
+
+    private void attempt() throws RequestException {
+        attempts++;
+        // the scheduler replaces the callback
+        builder.setCallback( this );
+        request = null == scheduler ? builder.send() : scheduler.schedule( builder, priority );
+    }
+
+    @Override
+    public void cancel() {
+        if ( done ) {
+            return;
+        }
+        done = true;
+        timer.cancel();
+        if ( null != request ) {
+            request.cancel();
+        }
+    }
+
+    @Override
+    public boolean isPending() {
+        return !done;
+    }
+
+    @Override
+    public void onResponseReceived( Request request, Response response ) {
+        if ( done ) {
+            return;
+        }
+        if ( policy.isRetryableStatus( response.getStatusCode() ) && retry( response.getHeader( "Retry-After" ) ) ) {
+            return;
+        }
+        done = true;
+        callback.onResponseReceived( this, response );
+    }
+
+    @Override
+    public void onError( Request request, Throwable exception ) {
+        if ( done ) {
+            return;
+        }
+        if ( retry( null ) ) {
+            return;
+        }
+        done = true;
+        callback.onError( this, exception );
+    }
+
+    /**
+     * @return true if a new attempt is scheduled
+     */
+    private boolean retry( String retryAfter ) {
+        if ( attempts >= policy.getMaxAttempts() ) {
+            return false;
+        }
+        int serverDelay = policy.parseRetryAfter( retryAfter );
+        if ( serverDelay == -2 ) {
+            return false;
+        }
+        delayMillis = Math.max( policy.nextDelay( delayMillis ), serverDelay );
+        request = null;
+        timer.schedule( Math.max( 1, delayMillis ) );
+        return true;
+    }
+}
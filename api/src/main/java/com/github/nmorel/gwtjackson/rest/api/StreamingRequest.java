@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.JavaScriptException;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.xhr.client.ReadyStateChangeHandler;
+import com.google.gwt.xhr.client.XMLHttpRequest;
+
+/**
+ * Request reading a newline-delimited JSON response while it is received. The complete lines are parsed on each progress event
+ * and delivered to the {@link RestStreamCallback}.
+ */
+class StreamingRequest<R> extends Request {
+
+    private final XMLHttpRequest xhr;
+
+    private final ObjectReader<R> itemConverter;
+
+    private final RestStreamCallback<R> callback;
+
+    private Timer timer;
+
+    /**
+     * Index of the first character not yet read in the response text
+     */
+    private int offset;
+
+    private boolean done;
+
+    StreamingRequest( String httpMethod, String url, String user, String password, ObjectReader<R> itemConverter,
+                      RestStreamCallback<R> callback ) {
+        this.itemConverter = itemConverter;
+        this.callback = callback;
+        this.xhr = XMLHttpRequest.create();
+        if ( null == user ) {
+            xhr.open( httpMethod, url );
+        } else if ( null == password ) {
+            xhr.open( httpMethod, url, user );
+        } else {
+            xhr.open( httpMethod, url, user, password );
+        }
+    }
+
+    void setHeader( String header, String value ) {
+        xhr.setRequestHeader( header, value );
+    }
+
+    void setIncludeCredentials( boolean includeCredentials ) {
+        xhr.setWithCredentials( includeCredentials );
+    }
+
+    void send( String requestData, final Integer timeoutMillis ) {
+        xhr.setOnReadyStateChange( new ReadyStateChangeHandler() {
+            @Override
+            public void onReadyStateChange( XMLHttpRequest xhr ) {
+                if ( XMLHttpRequest.DONE == xhr.getReadyState() ) {
+                    onDone();
+                } else if ( XMLHttpRequest.LOADING == xhr.getReadyState() ) {
+                    onProgress();
+                }
+            }
+        } );
+        setOnProgress( xhr, this );
+
+        if ( null != timeoutMillis && timeoutMillis > 0 ) {
+            timer = new Timer() {
+                @Override
+                public void run() {
+                    if ( !done ) {
+                        abort();
+                        callback.onFailure( new RestException( "The request timed out after " + timeoutMillis + " ms" ) );
+                    }
+                }
+            };
+            timer.schedule( timeoutMillis );
+        }
+
+        try {
+            xhr.send( requestData );
+        } catch ( JavaScriptException e ) {
+            abort();
+            throw new RestException( e );
+        }
+    }
+
+    private static native void setOnProgress( XMLHttpRequest xhr, StreamingRequest<?> request ) /*-{
+        xhr.onprogress = $entry(function () {
+            request.@com.github.nmorel.gwtjackson.rest.api.StreamingRequest::onProgress()();
+        });
+    }-*/;
+
+    private static native void clearOnProgress( XMLHttpRequest xhr ) /*-{
+        xhr.onprogress = null;
+    }-*/;
+
+    private void onProgress() {
+        if ( !done && isSuccess() ) {
+            readLines( false );
+        }
+    }
+
+    private void onDone() {
+        if ( done ) {
+            return;
+        }
+        if ( !isSuccess() ) {
+            finish();
+            callback.onError( new XhrResponse( xhr ) );
+            return;
+        }
+        if ( readLines( true ) ) {
+            finish();
+            callback.onComplete( new XhrResponse( xhr ) );
+        }
+    }
+
+    private boolean isSuccess() {
+        int status = xhr.getStatus();
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Delivers the complete lines received since the last call.
+     *
+     * @param last true if the response is complete and the remaining text must be read even without a trailing line break
+     *
+     * @return false if an item cannot be read
+     */
+    private boolean readLines( boolean last ) {
+        String text = xhr.getResponseText();
+        if ( null == text ) {
+            return true;
+        }
+        while ( !done && offset < text.length() ) {
+            int end = text.indexOf( '\n', offset );
+            if ( end < 0 ) {
+                if ( !last ) {
+                    break;
+                }
+                end = text.length();
+            }
+            String line = text.substring( offset, end ).trim();
+            offset = end + 1;
+            if ( line.isEmpty() ) {
+                continue;
+            }
+
+            R item;
+            try {
+                item = itemConverter.read( line );
+            } catch ( Exception e ) {
+                abort();
+                callback.onFailure( e );
+                return false;
+            }
+            callback.onItem( item );
+        }
+        return !done;
+    }
+
+    private void finish() {
+        done = true;
+        if ( null != timer ) {
+            timer.cancel();
+        }
+        xhr.clearOnReadyStateChange();
+        clearOnProgress( xhr );
+    }
+
+    private void abort() {
+        finish();
+        xhr.abort();
+    }
+
+    @Override
+    public void cancel() {
+        if ( !done ) {
+            abort();
+        }
+    }
+
+    @Override
+    public boolean isPending() {
+        return !done;
+    }
+}
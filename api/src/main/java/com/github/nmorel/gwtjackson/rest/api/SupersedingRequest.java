@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Handle of the latest request sent with a superseding key. Sending a new request with the same key cancels this one : its response
+ * is not read and its callback is never called.
+ */
+class SupersedingRequest extends Request {
+
+    private static final Map<String, SupersedingRequest> latest = new HashMap<String, SupersedingRequest>();
+
+    /**
+     * Cancels the in-flight request with the given key and registers a new one. {@link #start(Request)} must be called once the
+     * underlying request is sent.
+     *
+     * @param key the key shared by the requests superseding each other
+     *
+     * @return the new request
+     */
+    static SupersedingRequest supersede( String key ) {
+        SupersedingRequest previous = latest.get( key );
+        if ( null != previous ) {
+            previous.cancel();
+        }
+        SupersedingRequest request = new SupersedingRequest( key );
+        latest.put( key, request );
+        return request;
+    }
+
+    private final String key;
+
+    private Request request;
+
+    private boolean cancelled;
+
+    private SupersedingRequest( String key ) {
+        this.key = key;
+    }
+
+    void start( Request request ) {
+        this.request = request;
+        if ( cancelled ) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * @return true if the request has been superseded or cancelled, its response must be ignored
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param callback the callback of the request, can be null
+     *
+     * @return a callback ignoring the results received after this request has been cancelled and releasing the key once it is completed
+     */
+    <R> RestCallback<R> wrap( final RestCallback<R> callback ) {
+        if ( null == callback ) {
+            // the key is released even without callback, the errors are thrown like for a request without callback
+            return new RestCallback<R>() {
+                @Override
+                public void onSuccess( Response response, R result ) {
+                    release();
+                }
+
+                @Override
+                public void onSuccess( R result ) {
+                    release();
+                }
+
+                @Override
+                public void onError( Response response ) {
+                    if ( release() ) {
+                        throw new RestException( "An error occured. Status : " + response.getStatusCode() );
+                    }
+                }
+
+                @Override
+                public void onFailure( Throwable throwable ) {
+                    if ( release() ) {
+                        throw new RestException( throwable );
+                    }
+                }
+            };
+        }
+        return new RestCallback<R>() {
+            @Override
+            public void onSuccess( Response response, R result ) {
+                if ( release() ) {
+                    callback.onSuccess( response, result );
+                }
+            }
+
+            @Override
+            public void onSuccess( R result ) {
+                if ( release() ) {
+                    callback.onSuccess( result );
+                }
+            }
+
+            @Override
+            public void onError( Response response ) {
+                if ( release() ) {
+                    callback.onError( response );
+                }
+            }
+
+            @Override
+            public void onFailure( Throwable throwable ) {
+                if ( release() ) {
+                    callback.onFailure( throwable );
+                }
+            }
+        };
+    }
+
+    /**
+     * @return false if the request has been cancelled and the callback must not be called
+     */
+    private boolean release() {
+        if ( cancelled ) {
+            return false;
+        }
+        if ( latest.get( key ) == this ) {
+            latest.remove( key );
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        if ( !cancelled ) {
+            cancelled = true;
+            if ( latest.get( key ) == this ) {
+                latest.remove( key );
+            }
+            if ( null != request ) {
+                request.cancel();
+            }
+        }
+    }
+
+    @Override
+    public boolean isPending() {
+        return !cancelled && ( null == request || request.isPending() );
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled url template like <code>hello/{id}</code>. The template is split into literal fragments and path parameter slots so
+ * the final url can be built in a single pass.
+ * <p>There is always one more fragment than parameters : the url is <code>fragments[0] + params[0] + fragments[1] + ... +
+ * fragments[n]</code>.</p>
+ */
+public final class UrlTemplate {
+
+    /**
+     * Parses an url like <code>hello/{id}</code>. The path parameters must already be normalized, meaning they cannot contain a
+     * regex.
+     *
+     * @param url the url to parse
+     *
+     * @return the template
+     */
+    public static UrlTemplate parse( String url ) {
+        if ( null == url ) {
+            throw new IllegalArgumentException( "The url is required" );
+        }
+
+        List<String> fragments = new ArrayList<String>();
+        List<String> params = new ArrayList<String>();
+
+        int start = 0;
+        int open = url.indexOf( '{' );
+        while ( open >= 0 ) {
+            int close = url.indexOf( '}', open );
+            if ( close < 0 ) {
+                break;
+            }
+            fragments.add( url.substring( start, open ) );
+            params.add( url.substring( open + 1, close ) );
+            start = close + 1;
+            open = url.indexOf( '{', start );
+        }
+        fragments.add( url.substring( start ) );
+
+        return new UrlTemplate( fragments.toArray( new String[fragments.size()] ), params.toArray( new String[params.size()] ) );
+    }
+
+    /**
+     * Value of a path parameter that has not been set
+     */
+    static final Object MISSING = new Object();
+
+    private final String[] fragments;
+
+    private final String[] params;
+
+    /**
+     * Sum of the length of all the literal fragments
+     */
+    private final int literalLength;
+
+    /**
+     * Whether the template starts with a literal '/'. Used to avoid checking the final url when joining it to the application path.
+     */
+    private final boolean leadingSlash;
+
+    /**
+     * String representation of the template, lazily built
+     */
+    private String template;
+
+    public UrlTemplate( String[] fragments, String[] params ) {
+        if ( null == fragments || null == params || fragments.length != params.length + 1 ) {
+            throw new IllegalArgumentException( "There must be exactly one more fragment than parameters" );
+        }
+        this.fragments = fragments;
+        this.params = params;
+
+        int length = 0;
+        for ( String fragment : fragments ) {
+            length += fragment.length();
+        }
+        this.literalLength = length;
+        this.leadingSlash = fragments[0].startsWith( "/" );
+    }
+
+    /**
+     * @return the number of path parameters
+     */
+    public int getParamCount() {
+        return params.length;
+    }
+
+    /**
+     * @param index index of the parameter
+     *
+     * @return the name of the parameter at the given index
+     */
+    public String getParamName( int index ) {
+        return params[index];
+    }
+
+    /**
+     * Builds the url by joining the application path and this template with the given path parameters. A parameter with a null value
+     * is replaced by an empty string and a missing parameter is kept as is.
+     *
+     * @param applicationPath the application path to prepend
+     * @param pathParams the path parameters, can be null
+     *
+     * @return a builder containing the url, presized to let some room for the query parameters
+     */
+    public StringBuilder expand( String applicationPath, Map<String, Object> pathParams ) {
+        Object[] values = null;
+        if ( params.length > 0 ) {
+            values = new Object[params.length];
+            for ( int i = 0; i < params.length; i++ ) {
+                if ( null != pathParams && pathParams.containsKey( params[i] ) ) {
+                    values[i] = pathParams.get( params[i] );
+                } else {
+                    values[i] = MISSING;
+                }
+            }
+        }
+        return expand( applicationPath, values );
+    }
+
+    /**
+     * Builds the url by joining the application path and this template with the given path parameters, indexed like the parameters of
+     * this template. A null value is replaced by an empty string and a {@link #MISSING} value is kept as is.
+     *
+     * @param applicationPath the application path to prepend
+     * @param values the values of the path parameters, can be null if there is no parameter
+     *
+     * @return a builder containing the url, presized to let some room for the query parameters
+     */
+    StringBuilder expand( String applicationPath, Object[] values ) {
+        String[] strings = null;
+        int length = applicationPath.length() + literalLength + 1;
+
+        if ( params.length > 0 ) {
+            strings = new String[params.length];
+            for ( int i = 0; i < params.length; i++ ) {
+                String value;
+                Object param = values[i];
+                if ( MISSING == param ) {
+                    value = "{" + params[i] + "}";
+                } else if ( null != param ) {
+                    value = param.toString();
+                } else {
+                    value = "";
+                }
+                strings[i] = value;
+                length += value.length();
+            }
+        }
+
+        StringBuilder builder = new StringBuilder( length + 16 );
+        builder.append( applicationPath );
+        if ( !applicationPath.endsWith( "/" ) && !startsWithSlash( strings ) ) {
+            builder.append( '/' );
+        }
+
+        builder.append( fragments[0] );
+        for ( int i = 0; i < params.length; i++ ) {
+            builder.append( strings[i] );
+            builder.append( fragments[i + 1] );
+        }
+        return builder;
+    }
+
+    /**
+     * @param name name of a parameter
+     *
+     * @return the index of the parameter or -1 if there is no parameter with this name
+     */
+    int indexOfParam( String name ) {
+        for ( int i = 0; i < params.length; i++ ) {
+            if ( params[i].equals( name ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWithSlash( String[] values ) {
+        if ( leadingSlash ) {
+            return true;
+        }
+        return fragments[0].isEmpty() && null != values && values[0].startsWith( "/" );
+    }
+
+    @Override
+    public String toString() {
+        if ( null == template ) {
+            template = buildTemplate();
+        }
+        return template;
+    }
+
+    private String buildTemplate() {
+        StringBuilder builder = new StringBuilder( literalLength + params.length * 8 );
+        builder.append( fragments[0] );
+        for ( int i = 0; i < params.length; i++ ) {
+            builder.append( '{' ).append( params[i] ).append( '}' );
+            builder.append( fragments[i + 1] );
+        }
+        return builder.toString();
+    }
+}
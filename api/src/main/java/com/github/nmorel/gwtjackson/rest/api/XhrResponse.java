@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.xhr.client.XMLHttpRequest;
+
+/**
+ * {@link Response} wrapping an {@link XMLHttpRequest} opened without {@link com.google.gwt.http.client.RequestBuilder}.
+ */
+class XhrResponse extends Response {
+
+    private final XMLHttpRequest xhr;
+
+    XhrResponse( XMLHttpRequest xhr ) {
+        this.xhr = xhr;
+    }
+
+    @Override
+    public String getHeader( String header ) {
+        return xhr.getResponseHeader( header );
+    }
+
+    @Override
+    public Header[] getHeaders() {
+        List<Header> headers = new ArrayList<Header>();
+        String allHeaders = getHeadersAsString();
+        int start = 0;
+        while ( null != allHeaders && start < allHeaders.length() ) {
+            int end = allHeaders.indexOf( '\n', start );
+            if ( end < 0 ) {
+                end = allHeaders.length();
+            }
+            String line = allHeaders.substring( start, end );
+            int colon = line.indexOf( ':' );
+            if ( colon > 0 ) {
+                final String name = line.substring( 0, colon ).trim();
+                final String value = line.substring( colon + 1 ).trim();
+                headers.add( new Header() {
+                    @Override
+                    public String getName() {
+                        return name;
+                    }
+
+                    @Override
+                    public String getValue() {
+                        return value;
+                    }
+                } );
+            }
+            start = end + 1;
+        }
+        return headers.toArray( new Header[headers.size()] );
+    }
+
+    @Override
+    public String getHeadersAsString() {
+        return xhr.getAllResponseHeaders();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return xhr.getStatus();
+    }
+
+    @Override
+    public String getStatusText() {
+        return xhr.getStatusText();
+    }
+
+    @Override
+    public String getText() {
+        return xhr.getResponseText();
+    }
+}
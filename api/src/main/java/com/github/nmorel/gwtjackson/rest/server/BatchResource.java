@@ -0,0 +1,350 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.github.nmorel.gwtjackson.rest.api.MultipartMixed;
+
+/**
+ * Server side of {@link com.github.nmorel.gwtjackson.rest.api.RestBatch}. Each part of the <code>multipart/mixed</code> request is
+ * dispatched to the application's own resources and the responses are streamed back in the same order as soon as they are available.
+ * <p>Register an instance of this class in your JAX-RS application, for example in {@link javax.ws.rs.core.Application#getSingletons()},
+ * or a subclass calling one of the constructors. The parts are dispatched with the JAX-RS client API so an implementation of it must
+ * be available at runtime.</p>
+ * <p>Only absolute paths are accepted. They are resolved against the base uri given to the constructor and must stay under its path,
+ * the host of the batch request is never used. A part cannot target the batch resource itself.</p>
+ */
+@Path( "batch" )
+public class BatchResource {
+
+    public static final int DEFAULT_MAX_PARTS = 50;
+
+    public static final long DEFAULT_PART_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * Header added to the requests dispatched by a batch. A batch request carrying it is rejected.
+     */
+    public static final String BATCH_PART_HEADER = "X-Batch-Part";
+
+    private static final Set<String> IGNORED_HEADERS = new HashSet<String>( Arrays.asList( "connection", "content-length",
+            "transfer-encoding", "keep-alive", "host" ) );
+
+    /**
+     * Headers of the batch request forwarded to each part if the part does not define them
+     */
+    private static final String[] FORWARDED_HEADERS = {HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE, HttpHeaders.ACCEPT_LANGUAGE};
+
+    private static Client defaultClient;
+
+    private static synchronized Client getDefaultClient() {
+        if ( null == defaultClient ) {
+            defaultClient = ClientBuilder.newClient();
+        }
+        return defaultClient;
+    }
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
+    private final Client client;
+
+    private final URI baseUri;
+
+    private final String basePath;
+
+    private int maxParts = DEFAULT_MAX_PARTS;
+
+    private long partTimeoutMillis = DEFAULT_PART_TIMEOUT_MILLIS;
+
+    /**
+     * @param baseUri trusted absolute uri of the application, for example <code>http://localhost:8080/app/</code>
+     */
+    public BatchResource( URI baseUri ) {
+        this( getDefaultClient(), baseUri );
+    }
+
+    /**
+     * @param client client used to dispatch the parts
+     * @param baseUri trusted absolute uri of the application, for example <code>http://localhost:8080/app/</code>
+     */
+    public BatchResource( Client client, URI baseUri ) {
+        if ( null == baseUri || !baseUri.isAbsolute() || null == baseUri.getRawAuthority() ) {
+            throw new IllegalArgumentException( "The base uri must be absolute" );
+        }
+        this.client = client;
+        this.baseUri = baseUri;
+        this.basePath = canonicalPath( baseUri.normalize().getPath() );
+        if ( null == basePath ) {
+            throw new IllegalArgumentException( "Invalid base uri " + baseUri );
+        }
+    }
+
+    /**
+     * @param maxParts maximum number of parts in a batch, a larger batch is rejected with the status 413
+     *
+     * @return this resource
+     */
+    public BatchResource maxParts( int maxParts ) {
+        this.maxParts = maxParts;
+        return this;
+    }
+
+    /**
+     * @param partTimeoutMillis time in milliseconds given to the parts to complete, counted from the reception of the batch. The
+     * parts still running are answered with the status 504.
+     *
+     * @return this resource
+     */
+    public BatchResource partTimeout( long partTimeoutMillis ) {
+        this.partTimeoutMillis = partTimeoutMillis;
+        return this;
+    }
+
+    @POST
+    @Consumes( MultipartMixed.CONTENT_TYPE )
+    @Produces( MultipartMixed.CONTENT_TYPE )
+    public Response batch( @HeaderParam( HttpHeaders.CONTENT_TYPE ) String contentType, String content ) {
+        String boundary = MultipartMixed.getBoundary( contentType );
+        if ( null == boundary || null != httpHeaders.getHeaderString( BATCH_PART_HEADER ) ) {
+            return Response.status( Status.BAD_REQUEST ).build();
+        }
+
+        List<MultipartMixed.Part> parts = MultipartMixed.parse( content, boundary );
+        if ( parts.size() > maxParts ) {
+            return Response.status( Status.REQUEST_ENTITY_TOO_LARGE ).build();
+        }
+
+        final long deadline = System.currentTimeMillis() + partTimeoutMillis;
+        final List<String> ids = new ArrayList<String>();
+        final List<Object> responses = new ArrayList<Object>();
+        for ( MultipartMixed.Part part : parts ) {
+            ids.add( part.getHeader( "Content-ID" ) );
+            responses.add( dispatch( MultipartMixed.parseHttpMessage( part.getBody() ) ) );
+        }
+
+        final String responseBoundary = "batch_" + UUID.randomUUID();
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write( OutputStream outputStream ) throws IOException {
+                Writer writer = new OutputStreamWriter( outputStream, "UTF-8" );
+                for ( int i = 0; i < responses.size(); i++ ) {
+                    StringBuilder builder = new StringBuilder();
+                    appendResponse( builder, responseBoundary, "response-" + ids.get( i ), responses.get( i ), deadline );
+                    writer.write( builder.toString() );
+                    writer.flush();
+                }
+                StringBuilder builder = new StringBuilder();
+                MultipartMixed.appendEnd( builder, responseBoundary );
+                writer.write( builder.toString() );
+                writer.flush();
+            }
+        };
+        return Response.ok( output ).type( MultipartMixed.CONTENT_TYPE + "; boundary=" + responseBoundary ).build();
+    }
+
+    /**
+     * @return the future response or the status to return if the part is invalid
+     */
+    private Object dispatch( MultipartMixed.Part message ) {
+        String[] startLine = message.getStartLine().split( " " );
+        if ( startLine.length < 2 ) {
+            return Status.BAD_REQUEST;
+        }
+        String method = startLine[0];
+        URI uri = resolve( startLine[1] );
+        if ( null == uri ) {
+            return Status.BAD_REQUEST;
+        }
+
+        Invocation.Builder builder = client.target( uri ).request();
+        String partContentType = null;
+        for ( Entry<String, String> header : message.getHeaders().entrySet() ) {
+            if ( HttpHeaders.CONTENT_TYPE.equalsIgnoreCase( header.getKey() ) ) {
+                partContentType = header.getValue();
+            } else if ( !IGNORED_HEADERS.contains( header.getKey().toLowerCase() ) ) {
+                builder.header( header.getKey(), header.getValue() );
+            }
+        }
+        for ( String forwardedHeader : FORWARDED_HEADERS ) {
+            String value = httpHeaders.getHeaderString( forwardedHeader );
+            if ( null != value && null == message.getHeader( forwardedHeader ) ) {
+                builder.header( forwardedHeader, value );
+            }
+        }
+        builder.header( BATCH_PART_HEADER, "true" );
+
+        if ( message.getBody().isEmpty() ) {
+            return builder.async().method( method );
+        } else {
+            String type = null == partContentType ? "application/json; charset=utf-8" : partContentType;
+            return builder.async().method( method, Entity.entity( message.getBody(), type ) );
+        }
+    }
+
+    /**
+     * @param target the request target of a part
+     *
+     * @return the uri of the part on the base uri or null if the target is not an absolute path under the base path or if it is the
+     * path of this resource
+     */
+    private URI resolve( String target ) {
+        URI uri;
+        try {
+            uri = new URI( target );
+        } catch ( URISyntaxException e ) {
+            return null;
+        }
+        String rawPath = uri.getRawPath();
+        if ( uri.isAbsolute() || null != uri.getRawAuthority() || null == rawPath || !rawPath.startsWith( "/" ) || rawPath
+                .toLowerCase().contains( "%2f" ) ) {
+            return null;
+        }
+
+        uri = uri.normalize();
+        String path = canonicalPath( uri.getPath() );
+        if ( null == path || !(basePath.isEmpty() || path.equals( basePath ) || path.startsWith( basePath + "/" )) ) {
+            return null;
+        }
+        if ( path.equals( canonicalPath( uriInfo.getAbsolutePath().normalize().getPath() ) ) ) {
+            // no nested batch
+            return null;
+        }
+
+        String query = uri.getRawQuery();
+        return URI.create( baseUri.getScheme() + "://" + baseUri.getRawAuthority() + uri.getRawPath() + (null == query ? "" : "?" +
+                query) );
+    }
+
+    /**
+     * @param path a decoded and normalized path
+     *
+     * @return the path without empty segments, trailing slash and matrix parameters or null if it still contains dot segments
+     */
+    private static String canonicalPath( String path ) {
+        StringBuilder builder = new StringBuilder();
+        for ( String segment : path.split( "/" ) ) {
+            int matrix = segment.indexOf( ';' );
+            if ( matrix >= 0 ) {
+                segment = segment.substring( 0, matrix );
+            }
+            if ( segment.isEmpty() ) {
+                continue;
+            }
+            if ( segment.equals( "." ) || segment.equals( ".." ) || segment.indexOf( '\\' ) >= 0 ) {
+                return null;
+            }
+            builder.append( '/' ).append( segment );
+        }
+        return builder.toString();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void appendResponse( StringBuilder builder, String boundary, String contentId, Object dispatched, long deadline ) {
+        if ( dispatched instanceof Status ) {
+            Status status = (Status) dispatched;
+            MultipartMixed.appendHttpPart( builder, boundary, contentId, statusLine( status.getStatusCode(), status
+                    .getReasonPhrase() ), null, null );
+            return;
+        }
+
+        Future<Response> future = (Future<Response>) dispatched;
+        Response response;
+        try {
+            response = future.get( Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+        } catch ( TimeoutException e ) {
+            future.cancel( true );
+            MultipartMixed.appendHttpPart( builder, boundary, contentId, statusLine( Status.GATEWAY_TIMEOUT.getStatusCode(), Status
+                    .GATEWAY_TIMEOUT.getReasonPhrase() ), null, null );
+            return;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            MultipartMixed.appendHttpPart( builder, boundary, contentId, statusLine( Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    Status.SERVICE_UNAVAILABLE.getReasonPhrase() ), null, null );
+            return;
+        } catch ( ExecutionException e ) {
+            MultipartMixed.appendHttpPart( builder, boundary, contentId, statusLine( Status.BAD_GATEWAY.getStatusCode(), Status.BAD_GATEWAY
+                    .getReasonPhrase() ), null, null );
+            return;
+        }
+
+        try {
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for ( Entry<String, List<String>> header : response.getStringHeaders().entrySet() ) {
+                if ( !IGNORED_HEADERS.contains( header.getKey().toLowerCase() ) ) {
+                    headers.put( header.getKey(), join( header.getValue() ) );
+                }
+            }
+            String body = response.hasEntity() ? response.readEntity( String.class ) : null;
+            MultipartMixed.appendHttpPart( builder, boundary, contentId, statusLine( response.getStatus(), response.getStatusInfo()
+                    .getReasonPhrase() ), headers, body );
+        } finally {
+            response.close();
+        }
+    }
+
+    private static String statusLine( int status, String reasonPhrase ) {
+        return "HTTP/1.1 " + status + " " + ( null == reasonPhrase ? "" : reasonPhrase );
+    }
+
+    private static String join( List<String> values ) {
+        StringBuilder builder = new StringBuilder();
+        for ( String value : values ) {
+            if ( builder.length() > 0 ) {
+                builder.append( ", " );
+            }
+            builder.append( value );
+        }
+        return builder.toString();
+    }
+}
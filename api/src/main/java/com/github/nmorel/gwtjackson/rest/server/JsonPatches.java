@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.core.Response.Status;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies the RFC 6902 JSON Patch documents sent by {@link com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#patch()}.
+ * <p>Declare a method next to the PUT method of the resource :</p>
+ * <pre>
+ * &#64;PATCH
+ * &#64;Path( "{id}" )
+ * &#64;Consumes( JsonPatches.CONTENT_TYPE )
+ * public Document patch( &#64;PathParam( "id" ) long id, String patch ) {
+ *     return update( id, JsonPatches.apply( mapper, patch, load( id ) ) );
+ * }
+ * </pre>
+ * <p>A malformed patch is rejected with the status 400 and a patch that cannot be applied, like a failed <code>test</code>
+ * operation, with the status 409. This class needs jackson-databind at runtime.</p>
+ */
+public final class JsonPatches {
+
+    public static final String CONTENT_TYPE = "application/json-patch+json";
+
+    /**
+     * Applies the patch to a copy of the object.
+     *
+     * @param mapper the mapper converting the object to a tree and back
+     * @param patch the JSON Patch document
+     * @param target the object to patch
+     *
+     * @return the patched copy of the object
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <T> T apply( ObjectMapper mapper, String patch, T target ) {
+        JsonNode patchNode;
+        try {
+            patchNode = mapper.readTree( patch );
+        } catch ( IOException e ) {
+            throw new BadRequestException( "The JSON Patch document is malformed", e );
+        }
+        JsonNode patched = apply( patchNode, mapper.valueToTree( target ) );
+        try {
+            return (T) mapper.treeToValue( patched, target.getClass() );
+        } catch ( IOException e ) {
+            throw new BadRequestException( "The patched document cannot be read", e );
+        }
+    }
+
+    /**
+     * Applies the patch to the document. The document is modified, except when the root itself is replaced.
+     *
+     * @param patch the JSON Patch document
+     * @param document the document to patch
+     *
+     * @return the patched document
+     */
+    public static JsonNode apply( JsonNode patch, JsonNode document ) {
+        if ( null == patch || !patch.isArray() ) {
+            throw new BadRequestException( "A JSON Patch document must be an array of operations" );
+        }
+        JsonNode result = document;
+        for ( JsonNode operation : patch ) {
+            result = applyOperation( operation, result );
+        }
+        return result;
+    }
+
+    private static JsonNode applyOperation( JsonNode operation, JsonNode document ) {
+        String op = getText( operation, "op" );
+        List<String> path = parsePointer( getText( operation, "path" ) );
+        if ( "add".equals( op ) ) {
+            return add( document, path, getValue( operation ) );
+        } else if ( "remove".equals( op ) ) {
+            remove( document, path );
+            return document;
+        } else if ( "replace".equals( op ) ) {
+            return replace( document, path, getValue( operation ) );
+        } else if ( "move".equals( op ) ) {
+            List<String> from = parsePointer( getText( operation, "from" ) );
+            JsonNode value = get( document, from );
+            remove( document, from );
+            return add( document, path, value );
+        } else if ( "copy".equals( op ) ) {
+            JsonNode value = get( document, parsePointer( getText( operation, "from" ) ) );
+            return add( document, path, value.deepCopy() );
+        } else if ( "test".equals( op ) ) {
+            if ( !equal( get( document, path ), getValue( operation ) ) ) {
+                throw conflict( "The test of " + operation.get( "path" ).asText() + " failed" );
+            }
+            return document;
+        } else {
+            throw new BadRequestException( "Unknown JSON Patch operation " + op );
+        }
+    }
+
+    /**
+     * Compares two values like the <code>test</code> operation : the numbers are equal if their values are, like <code>1</code> and
+     * <code>1.0</code>, whatever their type.
+     */
+    private static boolean equal( JsonNode a, JsonNode b ) {
+        if ( a.isNumber() && b.isNumber() ) {
+            return a.decimalValue().compareTo( b.decimalValue() ) == 0;
+        }
+        if ( a.isArray() && b.isArray() ) {
+            if ( a.size() != b.size() ) {
+                return false;
+            }
+            for ( int i = 0; i < a.size(); i++ ) {
+                if ( !equal( a.get( i ), b.get( i ) ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if ( a.isObject() && b.isObject() ) {
+            if ( a.size() != b.size() ) {
+                return false;
+            }
+            Iterator<Entry<String, JsonNode>> fields = a.fields();
+            while ( fields.hasNext() ) {
+                Entry<String, JsonNode> field = fields.next();
+                JsonNode other = b.get( field.getKey() );
+                if ( null == other || !equal( field.getValue(), other ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equals( b );
+    }
+
+    private static JsonNode add( JsonNode document, List<String> path, JsonNode value ) {
+        if ( path.isEmpty() ) {
+            return value;
+        }
+        JsonNode parent = get( document, path.subList( 0, path.size() - 1 ) );
+        String name = path.get( path.size() - 1 );
+        if ( parent.isObject() ) {
+            ((ObjectNode) parent).set( name, value );
+        } else if ( parent.isArray() ) {
+            ArrayNode array = (ArrayNode) parent;
+            if ( "-".equals( name ) ) {
+                array.add( value );
+            } else {
+                int index = parseIndex( name, array.size() + 1 );
+                array.insert( index, value );
+            }
+        } else {
+            throw conflict( "Cannot add a value to a " + parent.getNodeType() );
+        }
+        return document;
+    }
+
+    private static JsonNode replace( JsonNode document, List<String> path, JsonNode value ) {
+        if ( path.isEmpty() ) {
+            return value;
+        }
+        // the value must exist
+        get( document, path );
+        JsonNode parent = get( document, path.subList( 0, path.size() - 1 ) );
+        String name = path.get( path.size() - 1 );
+        if ( parent.isObject() ) {
+            ((ObjectNode) parent).set( name, value );
+        } else {
+            ((ArrayNode) parent).set( parseIndex( name, parent.size() ), value );
+        }
+        return document;
+    }
+
+    private static void remove( JsonNode document, List<String> path ) {
+        if ( path.isEmpty() ) {
+            throw conflict( "Cannot remove the whole document" );
+        }
+        JsonNode parent = get( document, path.subList( 0, path.size() - 1 ) );
+        String name = path.get( path.size() - 1 );
+        if ( parent.isObject() && parent.has( name ) ) {
+            ((ObjectNode) parent).remove( name );
+        } else if ( parent.isArray() ) {
+            ((ArrayNode) parent).remove( parseIndex( name, parent.size() ) );
+        } else {
+            throw conflict( "No value to remove at /" + name );
+        }
+    }
+
+    private static JsonNode get( JsonNode document, List<String> path ) {
+        JsonNode node = document;
+        for ( String name : path ) {
+            if ( node.isObject() ) {
+                node = node.get( name );
+            } else if ( node.isArray() ) {
+                node = node.get( parseIndex( name, node.size() ) );
+            } else {
+                node = null;
+            }
+            if ( null == node ) {
+                throw conflict( "No value at /" + name );
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return the decoded reference tokens of the JSON Pointer (RFC 6901)
+     */
+    private static List<String> parsePointer( String pointer ) {
+        List<String> tokens = new ArrayList<String>();
+        if ( pointer.isEmpty() ) {
+            return tokens;
+        }
+        if ( pointer.charAt( 0 ) != '/' ) {
+            throw new BadRequestException( "Invalid JSON Pointer " + pointer );
+        }
+        for ( String token : pointer.substring( 1 ).split( "/", -1 ) ) {
+            tokens.add( token.replace( "~1", "/" ).replace( "~0", "~" ) );
+        }
+        return tokens;
+    }
+
+    /**
+     * @param max the maximum index, exclusive
+     */
+    private static int parseIndex( String token, int max ) {
+        int index;
+        try {
+            index = Integer.parseInt( token );
+        } catch ( NumberFormatException e ) {
+            throw conflict( "Invalid array index " + token );
+        }
+        if ( index < 0 || index >= max ) {
+            throw conflict( "Array index out of bounds " + token );
+        }
+        return index;
+    }
+
+    private static String getText( JsonNode operation, String name ) {
+        JsonNode value = operation.get( name );
+        if ( null == value || !value.isTextual() ) {
+            throw new BadRequestException( "The JSON Patch operation has no " + name );
+        }
+        return value.asText();
+    }
+
+    private static JsonNode getValue( JsonNode operation ) {
+        if ( !operation.has( "value" ) ) {
+            throw new BadRequestException( "The JSON Patch operation has no value" );
+        }
+        return operation.get( "value" );
+    }
+
+    private static ClientErrorException conflict( String message ) {
+        return new ClientErrorException( message, Status.CONFLICT );
+    }
+
+    private JsonPatches() {
+    }
+}
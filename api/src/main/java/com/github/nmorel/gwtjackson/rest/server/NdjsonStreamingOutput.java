@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the items of an {@link Iterable} as newline-delimited JSON, one item per line. The first item is flushed immediately so the
+ * client receives it as soon as possible, the next ones are flushed every {@link #flushEvery(int) n} items.
+ * <p>Return it from a resource method annotated with
+ * <code>@Produces(RestStreamCallback.CONTENT_TYPE)</code> :</p>
+ * <pre>
+ * &#64;GET
+ * &#64;Produces( RestStreamCallback.CONTENT_TYPE )
+ * &#64;GenResponseClassType( Item.class )
+ * public StreamingOutput items() {
+ *     return new NdjsonStreamingOutput&lt;Item&gt;( itemDao.iterate() );
+ * }
+ * </pre>
+ * <p>This class needs jackson-databind at runtime.</p>
+ */
+public class NdjsonStreamingOutput<T> implements StreamingOutput {
+
+    private static ObjectMapper defaultMapper;
+
+    private static synchronized ObjectMapper getDefaultMapper() {
+        if ( null == defaultMapper ) {
+            defaultMapper = new ObjectMapper();
+        }
+        return defaultMapper;
+    }
+
+    private final Iterable<? extends T> items;
+
+    private final ObjectWriter writer;
+
+    private int flushEvery = 16;
+
+    public NdjsonStreamingOutput( Iterable<? extends T> items ) {
+        this( items, getDefaultMapper().writer() );
+    }
+
+    /**
+     * @param items the items to write
+     * @param writer the writer used to serialize each item. It must not use indentation since an item has to fit on a single line.
+     */
+    public NdjsonStreamingOutput( Iterable<? extends T> items, ObjectWriter writer ) {
+        if ( null == items ) {
+            throw new IllegalArgumentException( "The items are required" );
+        }
+        if ( null == writer ) {
+            throw new IllegalArgumentException( "The writer is required" );
+        }
+        this.items = items;
+        // the flushes are handled by this class
+        this.writer = writer.without( SerializationFeature.INDENT_OUTPUT, SerializationFeature.FLUSH_AFTER_WRITE_VALUE );
+    }
+
+    /**
+     * @param flushEvery number of items written between two flushes
+     *
+     * @return this output
+     */
+    public NdjsonStreamingOutput<T> flushEvery( int flushEvery ) {
+        if ( flushEvery < 1 ) {
+            throw new IllegalArgumentException( "Must flush at least every item" );
+        }
+        this.flushEvery = flushEvery;
+        return this;
+    }
+
+    @Override
+    public void write( OutputStream output ) throws IOException {
+        JsonGenerator generator = writer.getFactory().createGenerator( output );
+        // the generator must not close the response stream after each item
+        generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+        generator.setRootValueSeparator( null );
+        try {
+            int count = 0;
+            Iterator<? extends T> iterator = items.iterator();
+            while ( iterator.hasNext() ) {
+                writer.writeValue( generator, iterator.next() );
+                generator.writeRaw( '\n' );
+                count++;
+                if ( count == 1 || count % flushEvery == 0 ) {
+                    generator.flush();
+                }
+            }
+        } finally {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Trims the JSON responses to the properties listed in the query parameter <code>fields</code>, sent by
+ * {@link com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#fields(String...)}. The properties are separated by commas and a
+ * nested property is given by its path, like <code>fields=id,name,address.city</code>. The properties apply to each element of an
+ * array.
+ * <p>Register this class in your JAX-RS application and annotate the resources trimming their responses with {@link SparseFieldset}.
+ * The entity is converted to a tree with jackson-databind, so it needs it at runtime. By default, the {@link ObjectMapper} is the one
+ * given by the <code>ContextResolver&lt;ObjectMapper&gt;</code> of the application, so the tree is written like the entity would
+ * have been. The responses without the parameter and the streamed ones are written as is.</p>
+ */
+@Provider
+@SparseFieldset
+public class SparseFieldsetInterceptor implements WriterInterceptor {
+
+    /**
+     * Properties to keep, mapped to the nested properties to keep
+     */
+    private static class Fields extends LinkedHashMap<String, Fields> {
+
+        /**
+         * Whether the whole property is asked, even if some nested properties are asked too
+         */
+        private boolean all;
+
+        private Fields add( String name ) {
+            Fields nested = get( name );
+            if ( null == nested ) {
+                nested = new Fields();
+                put( name, nested );
+            }
+            return nested;
+        }
+    }
+
+    /**
+     * Mapper given to the constructor, null to resolve it with the {@link #providers}
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Mapper used when the application has no <code>ContextResolver&lt;ObjectMapper&gt;</code>
+     */
+    private ObjectMapper defaultMapper;
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Context
+    private Providers providers;
+
+    /**
+     * Creates an interceptor using the mapper given by the <code>ContextResolver&lt;ObjectMapper&gt;</code> of the application or a
+     * default mapper if there is none.
+     */
+    public SparseFieldsetInterceptor() {
+        this.mapper = null;
+    }
+
+    /**
+     * @param mapper the mapper converting the entities to trees, it should be configured like the one writing the responses
+     */
+    public SparseFieldsetInterceptor( ObjectMapper mapper ) {
+        if ( null == mapper ) {
+            throw new IllegalArgumentException( "The mapper is required" );
+        }
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void aroundWriteTo( WriterInterceptorContext context ) throws IOException, WebApplicationException {
+        List<String> values = null == uriInfo ? null : uriInfo.getQueryParameters().get( "fields" );
+        Object entity = context.getEntity();
+        if ( null == values || values.isEmpty() || null == entity || entity instanceof StreamingOutput || !isJson( context
+                .getMediaType() ) ) {
+            context.proceed();
+            return;
+        }
+
+        Fields fields = parse( values );
+        if ( !fields.isEmpty() ) {
+            ObjectMapper treeMapper = getMapper( entity.getClass(), context.getMediaType() );
+            context.setEntity( trim( treeMapper, treeMapper.valueToTree( entity ), fields ) );
+            context.setType( JsonNode.class );
+            context.setGenericType( JsonNode.class );
+        }
+        context.proceed();
+    }
+
+    private ObjectMapper getMapper( Class<?> type, MediaType mediaType ) {
+        if ( null != mapper ) {
+            return mapper;
+        }
+        if ( null != providers ) {
+            ContextResolver<ObjectMapper> resolver = providers.getContextResolver( ObjectMapper.class, mediaType );
+            ObjectMapper resolved = null == resolver ? null : resolver.getContext( type );
+            if ( null != resolved ) {
+                return resolved;
+            }
+        }
+        if ( null == defaultMapper ) {
+            defaultMapper = new ObjectMapper();
+        }
+        return defaultMapper;
+    }
+
+    private boolean isJson( MediaType mediaType ) {
+        return null != mediaType && ("json".equals( mediaType.getSubtype() ) || mediaType.getSubtype().endsWith( "+json" ));
+    }
+
+    private Fields parse( List<String> values ) {
+        Fields fields = new Fields();
+        for ( String value : values ) {
+            for ( String path : value.split( "," ) ) {
+                path = path.trim();
+                if ( path.isEmpty() ) {
+                    continue;
+                }
+                Fields current = fields;
+                for ( String name : path.split( "\\." ) ) {
+                    current = current.add( name );
+                }
+                current.all = true;
+            }
+        }
+        return fields;
+    }
+
+    private JsonNode trim( ObjectMapper treeMapper, JsonNode node, Fields fields ) {
+        if ( node.isArray() ) {
+            ArrayNode trimmed = treeMapper.createArrayNode();
+            for ( JsonNode element : node ) {
+                trimmed.add( trim( treeMapper, element, fields ) );
+            }
+            return trimmed;
+        }
+        if ( !node.isObject() ) {
+            return node;
+        }
+        ObjectNode trimmed = treeMapper.createObjectNode();
+        for ( Entry<String, Fields> field : fields.entrySet() ) {
+            JsonNode value = node.get( field.getKey() );
+            if ( null != value ) {
+                trimmed.set( field.getKey(), field.getValue().all ? value : trim( treeMapper, value, field.getValue() ) );
+            }
+        }
+        return trimmed;
+    }
+}
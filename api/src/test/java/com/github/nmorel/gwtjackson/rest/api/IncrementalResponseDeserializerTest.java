@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.nmorel.gwtjackson.client.JsonDeserializationContext;
+import com.github.nmorel.gwtjackson.client.ObjectReader;
+import com.google.gwt.core.client.Callback;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalResponseDeserializerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Reads an array with jackson-databind, checking that each chunk is a valid array
+     */
+    private static class Reader implements ObjectReader<List<JsonNode>> {
+
+        @Override
+        public List<JsonNode> read( String input ) {
+            try {
+                List<JsonNode> items = new ArrayList<JsonNode>();
+                for ( JsonNode item : MAPPER.readTree( input ) ) {
+                    items.add( item );
+                }
+                return items;
+            } catch ( IOException e ) {
+                throw new IllegalArgumentException( "Invalid chunk " + input, e );
+            }
+        }
+
+        @Override
+        public List<JsonNode> read( String input, JsonDeserializationContext ctx ) {
+            return read( input );
+        }
+    }
+
+    private static class Result implements Callback<List<JsonNode>, Throwable>, IncrementalResponseDeserializer
+            .PartialResultCallback<JsonNode> {
+
+        private final List<Collection<JsonNode>> chunks = new ArrayList<Collection<JsonNode>>();
+
+        private List<JsonNode> result;
+
+        private Throwable error;
+
+        @Override
+        public void onPartialResult( Collection<JsonNode> items ) {
+            chunks.add( items );
+        }
+
+        @Override
+        public void onSuccess( List<JsonNode> result ) {
+            this.result = result;
+        }
+
+        @Override
+        public void onFailure( Throwable error ) {
+            this.error = error;
+        }
+    }
+
+    private Result read( String text ) {
+        Result result = new Result();
+        IncrementalResponseDeserializer deserializer = new IncrementalResponseDeserializer( 1000, 0 ).withPartialResults( result );
+        IncrementalResponseDeserializer.Slices<List<JsonNode>> slices = deserializer.new Slices<List<JsonNode>>( text, text.indexOf(
+                '[' ) + 1, new Reader(), result );
+        while ( slices.execute() ) {
+            // next slice
+        }
+        return result;
+    }
+
+    /**
+     * @return an array of the given size whose elements contain strings with separators, escapes and nested arrays
+     */
+    private String array( int size ) {
+        StringBuilder builder = new StringBuilder( "[" );
+        for ( int i = 0; i < size; i++ ) {
+            if ( i > 0 ) {
+                builder.append( ',' );
+            }
+            builder.append( "{\"id\":" ).append( i ).append( ",\"text\":\"a, ] } [ { \\\"quoted, ]\\\" \\\\\",\"nested\":[[" ).append(
+                    i ).append( ",\"]\"],[]]}" );
+        }
+        return builder.append( "]" ).toString();
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        String text = array( 2000 );
+        Result result = read( "  " + text + " \n" );
+
+        assertNull( result.error );
+        assertTrue( "The array should be read in several chunks", result.chunks.size() > 1 );
+        assertEquals( MAPPER.readTree( text ), MAPPER.valueToTree( result.result ) );
+
+        int count = 0;
+        for ( Collection<JsonNode> chunk : result.chunks ) {
+            assertNotSame( result.result, chunk );
+            count += chunk.size();
+        }
+        assertEquals( 2000, count );
+        assertEquals( 1000, result.result.get( 1000 ).get( "nested" ).get( 0 ).get( 0 ).asInt() );
+        assertEquals( "a, ] } [ { \"quoted, ]\" \\", result.result.get( 1999 ).get( "text" ).asText() );
+    }
+
+    @Test
+    public void testSmallArray() {
+        Result result = read( "[1,[2,3],\"4\"]" );
+        assertNull( result.error );
+        assertEquals( 1, result.chunks.size() );
+        assertEquals( 3, result.result.size() );
+    }
+
+    @Test
+    public void testEmptyArray() {
+        Result result = read( "[ ]" );
+        assertNull( result.error );
+        assertNotNull( result.result );
+        assertEquals( 0, result.result.size() );
+    }
+
+    @Test
+    public void testTrailingContent() {
+        Result result = read( array( 10 ) + " [1]" );
+        assertNull( result.result );
+        assertTrue( result.error instanceof RestException );
+    }
+
+    @Test
+    public void testUnterminatedArray() {
+        Result result = read( "[1,2" );
+        assertNull( result.result );
+        assertTrue( result.error instanceof RestException );
+    }
+}
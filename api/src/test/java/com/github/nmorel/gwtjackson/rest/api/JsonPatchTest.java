@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonPatchTest {
+
+    @Test
+    public void testEqualDocuments() {
+        assertEquals( "[]", JsonPatch.diff( "{\"a\":1,\"b\":[1,2]}", "{ \"a\" : 1, \"b\" : [ 1, 2 ] }" ) );
+    }
+
+    @Test
+    public void testObjects() {
+        assertEquals( "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2},{\"op\":\"remove\",\"path\":\"/b\"},"
+                + "{\"op\":\"add\",\"path\":\"/c~1d\",\"value\":{\"e\":\"f\"}}]", JsonPatch.diff( "{\"a\":1,\"b\":true}",
+                "{\"a\":2,\"c/d\":{\"e\":\"f\"}}" ) );
+        assertEquals( "[{\"op\":\"replace\",\"path\":\"/x\\\"y/z~0\",\"value\":null}]", JsonPatch.diff( "{\"x\\\"y\":{\"z~\":1}}",
+                "{\"x\\\"y\":{\"z~\":null}}" ) );
+    }
+
+    @Test
+    public void testArrays() {
+        assertEquals( "[{\"op\":\"replace\",\"path\":\"/1\",\"value\":4},{\"op\":\"add\",\"path\":\"/-\",\"value\":5}]", JsonPatch
+                .diff( "[1,2]", "[1,4,5]" ) );
+        assertEquals( "[{\"op\":\"remove\",\"path\":\"/2\"},{\"op\":\"remove\",\"path\":\"/1\"}]", JsonPatch.diff( "[1,2,3]", "[1]" ) );
+    }
+
+    @Test
+    public void testLongPrecision() {
+        assertEquals( "[{\"op\":\"replace\",\"path\":\"/id\",\"value\":9007199254740993}]", JsonPatch.diff( "{\"id\":9007199254740992}",
+                "{\"id\":9007199254740993}" ) );
+    }
+
+    @Test
+    public void testTests() {
+        assertEquals( "[{\"op\":\"test\",\"path\":\"/a\",\"value\":\"x\"},{\"op\":\"replace\",\"path\":\"/a\",\"value\":\"y\"},"
+                + "{\"op\":\"test\",\"path\":\"/b/0\",\"value\":{\"c\":1}},{\"op\":\"remove\",\"path\":\"/b/0\"}]", JsonPatch.diff(
+                "{\"a\":\"x\",\"b\":[{\"c\":1}]}", "{\"a\":\"y\",\"b\":[]}", true ) );
+    }
+
+    @Test( expected = RestException.class )
+    public void testMalformed() {
+        JsonPatch.diff( "{\"a\":1", "{\"a\":2}" );
+    }
+
+    @Test
+    public void testWeakEtagIgnored() {
+        JsonPatch.putSnapshot( "/a", "{}", "W/\"1\"" );
+        assertNull( JsonPatch.getSnapshot( "/a" ).getEtag() );
+        JsonPatch.putSnapshot( "/a", "{}", "\"2\"" );
+        assertEquals( "\"2\"", JsonPatch.getSnapshot( "/a" ).getEtag() );
+        JsonPatch.clearSnapshots();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MultipartMixedTest {
+
+    @Test
+    public void testGetBoundary() {
+        assertEquals( "abc", MultipartMixed.getBoundary( "multipart/mixed; boundary=abc" ) );
+        assertEquals( "abc", MultipartMixed.getBoundary( "multipart/mixed; Boundary=\"abc\"" ) );
+        assertEquals( "abc", MultipartMixed.getBoundary( "multipart/mixed; boundary=abc ; charset=utf-8" ) );
+        assertNull( MultipartMixed.getBoundary( "multipart/mixed" ) );
+        assertNull( MultipartMixed.getBoundary( null ) );
+    }
+
+    @Test
+    public void testWriteAndParse() {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put( "Accept", "application/json" );
+        headers.put( "Content-Type", "application/json; charset=utf-8" );
+
+        StringBuilder builder = new StringBuilder();
+        MultipartMixed.appendHttpPart( builder, "b1", "1", "GET /app/users/1 HTTP/1.1", null, null );
+        MultipartMixed.appendHttpPart( builder, "b1", "2", "POST /app/users HTTP/1.1", headers, "{\"name\":\"a\"}" );
+        MultipartMixed.appendEnd( builder, "b1" );
+        String content = builder.toString();
+
+        assertTrue( content.startsWith( "--b1\r\nContent-Type: application/http\r\nContent-ID: 1\r\n\r\nGET /app/users/1 HTTP/1.1\r\n" ) );
+        assertTrue( content.endsWith( "\r\n--b1--\r\n" ) );
+
+        List<MultipartMixed.Part> parts = MultipartMixed.parse( content, "b1" );
+        assertEquals( 2, parts.size() );
+
+        MultipartMixed.Part first = parts.get( 0 );
+        assertNull( first.getStartLine() );
+        assertEquals( MultipartMixed.PART_CONTENT_TYPE, first.getHeader( "content-type" ) );
+        assertEquals( "1", first.getHeader( "Content-ID" ) );
+        MultipartMixed.Part firstMessage = MultipartMixed.parseHttpMessage( first.getBody() );
+        assertEquals( "GET /app/users/1 HTTP/1.1", firstMessage.getStartLine() );
+        assertTrue( firstMessage.getHeaders().isEmpty() );
+        assertEquals( "", firstMessage.getBody() );
+
+        MultipartMixed.Part second = MultipartMixed.parseHttpMessage( parts.get( 1 ).getBody() );
+        assertEquals( "2", parts.get( 1 ).getHeader( "Content-ID" ) );
+        assertEquals( "POST /app/users HTTP/1.1", second.getStartLine() );
+        assertEquals( headers, second.getHeaders() );
+        assertEquals( "{\"name\":\"a\"}", second.getBody() );
+    }
+
+    @Test
+    public void testParseKeepsBodyLineBreaks() {
+        StringBuilder builder = new StringBuilder();
+        MultipartMixed.appendHttpPart( builder, "b1", "1", "HTTP/1.1 200 OK", null, "line1\r\nline2\n" );
+        MultipartMixed.appendEnd( builder, "b1" );
+
+        List<MultipartMixed.Part> parts = MultipartMixed.parse( builder.toString(), "b1" );
+        assertEquals( 1, parts.size() );
+        MultipartMixed.Part message = MultipartMixed.parseHttpMessage( parts.get( 0 ).getBody() );
+        assertEquals( "HTTP/1.1 200 OK", message.getStartLine() );
+        assertEquals( "line1\r\nline2\n", message.getBody() );
+    }
+
+    @Test
+    public void testParseIgnoresPreambleAndEpilogue() {
+        String content = "preamble\n--b1\nContent-ID: 1\n\nHTTP/1.1 404 Not Found\nX-Test:  value \n\n--b1\nContent-ID: 2\n\n"
+                + "HTTP/1.1 204 No Content\n--b1--\nepilogue\n--b1\nContent-ID: 3\n\n";
+
+        List<MultipartMixed.Part> parts = MultipartMixed.parse( content, "b1" );
+        assertEquals( 2, parts.size() );
+        assertEquals( "1", parts.get( 0 ).getHeader( "Content-ID" ) );
+        assertEquals( "2", parts.get( 1 ).getHeader( "Content-ID" ) );
+
+        MultipartMixed.Part message = MultipartMixed.parseHttpMessage( parts.get( 0 ).getBody() );
+        assertEquals( "HTTP/1.1 404 Not Found", message.getStartLine() );
+        assertEquals( "value", message.getHeader( "x-test" ) );
+        assertEquals( "", message.getBody() );
+        assertEquals( "HTTP/1.1 204 No Content", MultipartMixed.parseHttpMessage( parts.get( 1 ).getBody() ).getStartLine() );
+    }
+
+    @Test
+    public void testParseWithoutClosingDelimiter() {
+        assertTrue( MultipartMixed.parse( "--b1\r\nContent-ID: 1\r\n\r\nGET / HTTP/1.1\r\n", "b1" ).isEmpty() );
+        assertTrue( MultipartMixed.parse( "", "b1" ).isEmpty() );
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.nmorel.gwtjackson.rest.api.MultipartMixed;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.glassfish.jersey.jdkhttp.JdkHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchResourceTest {
+
+    @Path( "items" )
+    @Produces( "text/plain" )
+    public static class ItemResource {
+
+        @GET
+        @Path( "{id}" )
+        public String get( @PathParam( "id" ) String id, @HeaderParam( HttpHeaders.AUTHORIZATION ) String authorization,
+                           @HeaderParam( BatchResource.BATCH_PART_HEADER ) String batchPart ) {
+            return "item " + id + " " + authorization + " " + batchPart;
+        }
+
+        @POST
+        public Response create( String body ) {
+            return Response.status( Response.Status.CREATED ).entity( "created " + body ).build();
+        }
+
+        @GET
+        @Path( "slow/{millis}" )
+        public String slow( @PathParam( "millis" ) long millis ) throws InterruptedException {
+            Thread.sleep( millis );
+            return "slow";
+        }
+    }
+
+    private static final AtomicInteger internalHits = new AtomicInteger();
+
+    private static HttpServer server;
+
+    private static HttpServer internalServer;
+
+    private static URI baseUri;
+
+    private static Client client;
+
+    @BeforeClass
+    public static void start() throws IOException {
+        internalServer = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        internalServer.createContext( "/", new HttpHandler() {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException {
+                internalHits.incrementAndGet();
+                exchange.sendResponseHeaders( 200, -1 );
+                exchange.close();
+            }
+        } );
+        internalServer.start();
+
+        ServerSocket socket = new ServerSocket( 0 );
+        int port = socket.getLocalPort();
+        socket.close();
+        baseUri = URI.create( "http://127.0.0.1:" + port + "/app/" );
+        ResourceConfig config = new ResourceConfig( ItemResource.class );
+        config.register( new BatchResource( baseUri ).maxParts( 4 ).partTimeout( 1000 ) );
+        server = JdkHttpServerFactory.createHttpServer( baseUri, config );
+
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterClass
+    public static void stop() {
+        client.close();
+        server.stop( 0 );
+        internalServer.stop( 0 );
+    }
+
+    @Before
+    public void resetHits() {
+        internalHits.set( 0 );
+    }
+
+    @Test
+    public void testDispatchesThePartsInOrder() {
+        StringBuilder content = new StringBuilder();
+        MultipartMixed.appendHttpPart( content, "b1", "1", "GET /app/items/1 HTTP/1.1", null, null );
+        MultipartMixed.appendHttpPart( content, "b1", "2", "POST /app/items HTTP/1.1", null, "{\"name\":\"a\"}" );
+        MultipartMixed.appendHttpPart( content, "b1", "3", "GET /app/items/3?x=1 HTTP/1.1", null, null );
+        MultipartMixed.appendEnd( content, "b1" );
+
+        Response response = client.target( baseUri ).path( "batch" ).request().header( HttpHeaders.AUTHORIZATION, "Bearer t" ).post(
+                Entity.entity( content.toString(), MultipartMixed.CONTENT_TYPE + "; boundary=b1" ) );
+        assertEquals( 200, response.getStatus() );
+        String boundary = MultipartMixed.getBoundary( response.getHeaderString( HttpHeaders.CONTENT_TYPE ) );
+        List<MultipartMixed.Part> parts = MultipartMixed.parse( response.readEntity( String.class ), boundary );
+
+        assertEquals( 3, parts.size() );
+        assertEquals( "response-1", parts.get( 0 ).getHeader( "Content-ID" ) );
+        assertEquals( "response-2", parts.get( 1 ).getHeader( "Content-ID" ) );
+        assertEquals( "response-3", parts.get( 2 ).getHeader( "Content-ID" ) );
+
+        MultipartMixed.Part first = MultipartMixed.parseHttpMessage( parts.get( 0 ).getBody() );
+        assertEquals( "HTTP/1.1 200 OK", first.getStartLine() );
+        assertTrue( first.getHeader( HttpHeaders.CONTENT_TYPE ).startsWith( "text/plain" ) );
+        assertEquals( "item 1 Bearer t true", first.getBody() );
+
+        MultipartMixed.Part second = MultipartMixed.parseHttpMessage( parts.get( 1 ).getBody() );
+        assertEquals( "HTTP/1.1 201 Created", second.getStartLine() );
+        assertEquals( "created {\"name\":\"a\"}", second.getBody() );
+
+        assertEquals( "item 3 Bearer t true", MultipartMixed.parseHttpMessage( parts.get( 2 ).getBody() ).getBody() );
+    }
+
+    @Test
+    public void testRejectsTargetsOutsideTheApplication() {
+        String internal = "127.0.0.1:" + internalServer.getAddress().getPort();
+        List<String> statusLines = sendBatch( "http://" + internal + "/app/items/1", "//" + internal + "/app/items/1", "/other/items/1",
+                "/app/../other" );
+        for ( String statusLine : statusLines ) {
+            assertEquals( "HTTP/1.1 400 Bad Request", statusLine );
+        }
+        assertEquals( 0, internalHits.get() );
+    }
+
+    @Test
+    public void testIgnoresTheHostOfTheBatchRequest() throws IOException {
+        StringBuilder content = new StringBuilder();
+        MultipartMixed.appendHttpPart( content, "b1", "1", "GET /app/items/1 HTTP/1.1", null, null );
+        MultipartMixed.appendEnd( content, "b1" );
+        byte[] body = content.toString().getBytes( "UTF-8" );
+
+        Socket socket = new Socket( "127.0.0.1", baseUri.getPort() );
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write( ("POST /app/batch HTTP/1.0\r\nHost: 127.0.0.1:" + internalServer.getAddress().getPort() + "\r\nContent-Type: "
+                    + MultipartMixed.CONTENT_TYPE + "; boundary=b1\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(
+                    "UTF-8" ) );
+            out.write( body );
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ( (read = in.read( buffer )) >= 0 ) {
+                response.write( buffer, 0, read );
+            }
+            String text = response.toString( "UTF-8" );
+            assertTrue( text, text.startsWith( "HTTP/1.1 200" ) );
+            assertTrue( text, text.contains( "item 1 null true" ) );
+        } finally {
+            socket.close();
+        }
+        assertEquals( 0, internalHits.get() );
+    }
+
+    @Test
+    public void testRejectsNestedBatches() {
+        List<String> statusLines = sendBatch( "/app/batch", "/app/batch/", "/app/./batch", "/app/%62atch" );
+        for ( String statusLine : statusLines ) {
+            assertEquals( "HTTP/1.1 400 Bad Request", statusLine );
+        }
+        assertEquals( "HTTP/1.1 400 Bad Request", sendBatch( "/app//batch;a=b" ).get( 0 ) );
+
+        StringBuilder content = new StringBuilder();
+        MultipartMixed.appendHttpPart( content, "b1", "1", "GET /app/items/1 HTTP/1.1", null, null );
+        MultipartMixed.appendEnd( content, "b1" );
+        Response response = client.target( baseUri ).path( "batch" ).request().header( BatchResource.BATCH_PART_HEADER, "true" ).post(
+                Entity.entity( content.toString(), MultipartMixed.CONTENT_TYPE + "; boundary=b1" ) );
+        assertEquals( 400, response.getStatus() );
+        response.close();
+    }
+
+    @Test
+    public void testRejectsTooManyParts() {
+        StringBuilder content = new StringBuilder();
+        for ( int i = 1; i <= 5; i++ ) {
+            MultipartMixed.appendHttpPart( content, "b1", Integer.toString( i ), "GET /app/items/" + i + " HTTP/1.1", null, null );
+        }
+        MultipartMixed.appendEnd( content, "b1" );
+        Response response = client.target( baseUri ).path( "batch" ).request().post( Entity.entity( content.toString(), MultipartMixed
+                .CONTENT_TYPE + "; boundary=b1" ) );
+        assertEquals( 413, response.getStatus() );
+        response.close();
+    }
+
+    @Test
+    public void testRejectsMissingBoundary() {
+        Response response = client.target( baseUri ).path( "batch" ).request().post( Entity.entity( "", MultipartMixed.CONTENT_TYPE ) );
+        assertEquals( 400, response.getStatus() );
+        response.close();
+    }
+
+    @Test
+    public void testTimesOutSlowParts() {
+        long start = System.currentTimeMillis();
+        List<String> statusLines = sendBatch( "/app/items/slow/5000", "/app/items/2" );
+        assertEquals( "HTTP/1.1 504 Gateway Timeout", statusLines.get( 0 ) );
+        assertEquals( "HTTP/1.1 200 OK", statusLines.get( 1 ) );
+        assertTrue( System.currentTimeMillis() - start < 4000 );
+    }
+
+    /**
+     * Sends a batch of GET requests and returns the status line of each response
+     */
+    private List<String> sendBatch( String... paths ) {
+        StringBuilder content = new StringBuilder();
+        for ( int i = 0; i < paths.length; i++ ) {
+            MultipartMixed.appendHttpPart( content, "b1", Integer.toString( i + 1 ), "GET " + paths[i] + " HTTP/1.1", null, null );
+        }
+        MultipartMixed.appendEnd( content, "b1" );
+
+        Response response = client.target( baseUri ).path( "batch" ).request().post( Entity.entity( content.toString(), MultipartMixed
+                .CONTENT_TYPE + "; boundary=b1" ) );
+        assertEquals( 200, response.getStatus() );
+        String boundary = MultipartMixed.getBoundary( response.getHeaderString( HttpHeaders.CONTENT_TYPE ) );
+        List<String> statusLines = new ArrayList<String>();
+        for ( MultipartMixed.Part part : MultipartMixed.parse( response.readEntity( String.class ), boundary ) ) {
+            statusLines.add( MultipartMixed.parseHttpMessage( part.getBody() ).getStartLine() );
+        }
+        assertEquals( paths.length, statusLines.size() );
+        return statusLines;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.server;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.nmorel.gwtjackson.rest.api.JsonPatch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JsonPatchesTest {
+
+    public static class Document {
+
+        public long id;
+
+        public String name;
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode apply( String patch, String document ) throws IOException {
+        return JsonPatches.apply( mapper.readTree( patch ), mapper.readTree( document ) );
+    }
+
+    private void assertJson( String expected, JsonNode actual ) throws IOException {
+        assertEquals( mapper.readTree( expected ), actual );
+    }
+
+    private void assertStatus( int status, String patch, String document ) throws IOException {
+        try {
+            apply( patch, document );
+            fail( "The patch should have been rejected" );
+        } catch ( ClientErrorException e ) {
+            assertEquals( status, e.getResponse().getStatus() );
+        }
+    }
+
+    @Test
+    public void testOperations() throws IOException {
+        assertJson( "{\"a\":1,\"b\":[1,2,3]}", apply( "[{\"op\":\"add\",\"path\":\"/b/-\",\"value\":3}]", "{\"a\":1,\"b\":[1,2]}" ) );
+        assertJson( "{\"b\":[0,1]}", apply( "[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"add\",\"path\":\"/b/0\",\"value\":0}]",
+                "{\"a\":1,\"b\":[1]}" ) );
+        assertJson( "{\"a\":2}", apply( "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2}]", "{\"a\":1}" ) );
+        assertJson( "{\"b\":{\"c\":1}}", apply( "[{\"op\":\"move\",\"from\":\"/a\",\"path\":\"/b\"}]", "{\"a\":{\"c\":1}}" ) );
+        assertJson( "{\"a/b\":1,\"c~\":1}", apply( "[{\"op\":\"copy\",\"from\":\"/a~1b\",\"path\":\"/c~0\"}]", "{\"a/b\":1}" ) );
+        assertJson( "[1]", apply( "[{\"op\":\"replace\",\"path\":\"\",\"value\":[1]}]", "{\"a\":1}" ) );
+    }
+
+    @Test
+    public void testNumbersComparedByValue() throws IOException {
+        assertJson( "{\"a\":1}", apply( "[{\"op\":\"test\",\"path\":\"/a\",\"value\":1.0}]", "{\"a\":1}" ) );
+        assertJson( "{\"a\":[1,{\"b\":2.50}]}", apply( "[{\"op\":\"test\",\"path\":\"/a\",\"value\":[1.0,{\"b\":2.5}]}]",
+                "{\"a\":[1,{\"b\":2.50}]}" ) );
+
+        ObjectNode document = mapper.createObjectNode();
+        document.set( "a", IntNode.valueOf( 5 ) );
+        JsonPatches.apply( mapper.createArrayNode().add( mapper.createObjectNode().put( "op", "test" ).put( "path", "/a" ).set(
+                "value", LongNode.valueOf( 5L ) ) ), document );
+
+        assertStatus( 409, "[{\"op\":\"test\",\"path\":\"/a\",\"value\":9007199254740993}]", "{\"a\":9007199254740992}" );
+        assertStatus( 409, "[{\"op\":\"test\",\"path\":\"/a\",\"value\":\"1\"}]", "{\"a\":1}" );
+        assertStatus( 409, "[{\"op\":\"test\",\"path\":\"/a\",\"value\":{\"b\":1}}]", "{\"a\":{\"b\":1,\"c\":2}}" );
+    }
+
+    @Test
+    public void testConflicts() throws IOException {
+        assertStatus( 409, "[{\"op\":\"replace\",\"path\":\"/b\",\"value\":1}]", "{\"a\":1}" );
+        assertStatus( 409, "[{\"op\":\"remove\",\"path\":\"/a/3\"}]", "{\"a\":[1]}" );
+        assertStatus( 409, "[{\"op\":\"remove\",\"path\":\"\"}]", "{\"a\":1}" );
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        try {
+            apply( "{\"op\":\"add\"}", "{}" );
+            fail( "The patch should have been rejected" );
+        } catch ( BadRequestException e ) {
+            // expected
+        }
+        try {
+            apply( "[{\"op\":\"rename\",\"path\":\"/a\"}]", "{}" );
+            fail( "The patch should have been rejected" );
+        } catch ( BadRequestException e ) {
+            // expected
+        }
+        try {
+            JsonPatches.apply( mapper, "[", new Document() );
+            fail( "The patch should have been rejected" );
+        } catch ( BadRequestException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testApplyClientPatch() throws IOException {
+        Document current = new Document();
+        current.id = 9007199254740993L;
+        current.name = "a";
+
+        Document updated = new Document();
+        updated.id = 9007199254740995L;
+        updated.name = "b";
+
+        String patch = JsonPatch.diff( mapper.writeValueAsString( current ), mapper.writeValueAsString( updated ), true );
+        Document patched = JsonPatches.apply( mapper, patch, current );
+        assertEquals( updated.id, patched.id );
+        assertEquals( updated.name, patched.name );
+
+        // the tests of the patch fail once the resource has changed
+        current.name = "c";
+        try {
+            JsonPatches.apply( mapper, patch, current );
+            fail( "The patch should have been rejected" );
+        } catch ( ClientErrorException e ) {
+            assertEquals( 409, e.getResponse().getStatus() );
+        }
+    }
+}
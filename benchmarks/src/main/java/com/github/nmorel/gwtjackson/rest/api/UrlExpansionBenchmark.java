@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.api;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gwt.http.client.RequestBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the url built from the {@link UrlTemplate} of an endpoint and its indexed parameters with the url expanded by the code of
+ * the specialized endpoints (<code>-AspecializedEndpoints=true</code>), given to {@link RestRequestBuilder#expandedUrl(String)}.
+ * <p>Each benchmark creates the builder like the generated method does and builds the final url. The specialized methods contain
+ * the code generated by {@link com.github.nmorel.gwtjackson.rest.processor.UrlExpansion} for the same endpoints.</p>
+ * <p>It runs on the JVM where the methods of {@link com.google.gwt.http.client.URL} are not available, so the values are encoded by
+ * the {@link JvmEncoder} set as {@link QueryStringEncoder#instance}. It follows <code>encodeURIComponent</code> like in the browser
+ * but costs more than the native encoding, so the relative gain is larger in a browser.</p>
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class UrlExpansionBenchmark {
+
+    /**
+     * Encodes like <code>encodeURIComponent</code>
+     */
+    static class JvmEncoder extends QueryStringEncoder {
+
+        @Override
+        String encode( String value ) {
+            try {
+                String encoded = URLEncoder.encode( value, "UTF-8" );
+                if ( encoded.indexOf( '%' ) < 0 ) {
+                    return encoded;
+                }
+                return encoded.replace( "%21", "!" ).replace( "%27", "'" ).replace( "%28", "(" ).replace( "%29", ")" ).replace( "%7E",
+                        "~" );
+            } catch ( UnsupportedEncodingException e ) {
+                throw new IllegalStateException( e );
+            }
+        }
+    }
+
+    static {
+        // before the endpoints encode the names of their query parameters
+        QueryStringEncoder.instance = new JvmEncoder();
+    }
+
+    private static final String APPLICATION_PATH = "api";
+
+    /**
+     * <code>GET orders/{customerId}/items/{itemId}</code>
+     */
+    private static final UrlTemplate PATH_TEMPLATE = new UrlTemplate( new String[]{"orders/", "/items/", ""}, new String[]{"customerId",
+            "itemId"} );
+
+    /**
+     * <code>GET orders/{customerId}/items?status=&limit=&tags=</code>
+     */
+    private static final UrlTemplate QUERY_TEMPLATE = new UrlTemplate( new String[]{"orders/", "/items"}, new String[]{"customerId"} );
+
+    private static final RestEndpoint<Void, Void> PATH_ENDPOINT = new RestEndpoint<Void, Void>( RequestBuilder.GET, PATH_TEMPLATE,
+            "OrderResource", "getItem", new String[]{}, new String[]{}, null, null, null );
+
+    private static final RestEndpoint<Void, Void> QUERY_ENDPOINT = new RestEndpoint<Void, Void>( RequestBuilder.GET, QUERY_TEMPLATE,
+            "OrderResource", "getItems", new String[]{}, new String[]{"status", "limit", "tags"}, null, null, null );
+
+    /**
+     * The specialized endpoints have no query parameter, they are in the expanded url
+     */
+    private static final RestEndpoint<Void, Void> SPECIALIZED_QUERY_ENDPOINT = new RestEndpoint<Void, Void>( RequestBuilder.GET,
+            QUERY_TEMPLATE, "OrderResource", "getItems", new String[]{}, new String[]{}, null, null, null );
+
+    private String customerId = "c-1234";
+
+    private Long itemId = 987654321L;
+
+    private String status = "in progress";
+
+    private int limit = 50;
+
+    private List<String> tags = Arrays.asList( "blue", "large & heavy", "sale" );
+
+    @Benchmark
+    public String templatePath() {
+        RestRequestBuilder<Void, Void> builder = new RestRequestBuilder<Void, Void>( PATH_ENDPOINT )
+                .applicationPath( APPLICATION_PATH )
+                .pathParam( 0, customerId )
+                .pathParam( 1, itemId );
+        return builder.buildUrl( PATH_TEMPLATE );
+    }
+
+    @Benchmark
+    public String specializedPath() {
+        StringBuilder _url_ = new StringBuilder( 46 );
+        _url_.append( "orders/" );
+        if ( null != customerId ) {
+            _url_.append( customerId );
+        }
+        _url_.append( "/items/" );
+        if ( null != itemId ) {
+            _url_.append( itemId );
+        }
+        RestRequestBuilder<Void, Void> builder = new RestRequestBuilder<Void, Void>( PATH_ENDPOINT )
+                .applicationPath( APPLICATION_PATH )
+                .expandedUrl( _url_.toString() );
+        return builder.buildUrl( PATH_TEMPLATE );
+    }
+
+    @Benchmark
+    public String templateQuery() {
+        RestRequestBuilder<Void, Void> builder = new RestRequestBuilder<Void, Void>( QUERY_ENDPOINT )
+                .applicationPath( APPLICATION_PATH )
+                .pathParam( 0, customerId )
+                .queryParam( 0, status )
+                .queryParam( 1, limit )
+                .queryParam( 2, tags );
+        return builder.buildUrl( QUERY_TEMPLATE );
+    }
+
+    @Benchmark
+    public String specializedQuery() {
+        StringBuilder _url_ = new StringBuilder( 77 );
+        _url_.append( "orders/" );
+        if ( null != customerId ) {
+            _url_.append( customerId );
+        }
+        _url_.append( "/items" );
+        char _separator_ = '?';
+        if ( null != status ) {
+            _url_.append( _separator_ ).append( "status=" ).append( QueryStringEncoder.instance.encode( status.toString() ) );
+            _separator_ = '&';
+        }
+        _url_.append( _separator_ ).append( "limit=" ).append( QueryStringEncoder.instance.encode( String.valueOf( limit ) ) );
+        _separator_ = '&';
+        if ( null != tags ) {
+            for ( Object _value_ : tags ) {
+                _url_.append( _separator_ ).append( "tags" );
+                if ( null != _value_ ) {
+                    _url_.append( '=' ).append( QueryStringEncoder.instance.encode( _value_.toString() ) );
+                }
+                _separator_ = '&';
+            }
+        }
+        RestRequestBuilder<Void, Void> builder = new RestRequestBuilder<Void, Void>( SPECIALIZED_QUERY_ENDPOINT )
+                .applicationPath( APPLICATION_PATH )
+                .expandedUrl( _url_.toString() );
+        return builder.buildUrl( QUERY_TEMPLATE );
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.benchmarks;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.github.nmorel.gwtjackson.rest.processor.GenRestBuilderProcessor;
+
+/**
+ * Compiles synthetic services with the annotation processor and reports the time spent in the processor.
+ * <p>Arguments, all optional : <code>services=20 endpoints=200 iterations=10 warmup=3</code> followed by the options of the processor
+ * like <code>-AspecializedEndpoints=true</code>. Each iteration compiles the same sources in a new output directory, the warmup
+ * iterations are not reported.</p>
+ * <p>Each service mixes GET methods with path and query parameters, paginated GET methods, POST, PUT and DELETE methods with bodies
+ * and regex path parameters. The bodies and responses share a pool of 20 types.</p>
+ */
+public class ProcessorBenchmark {
+
+    private static final int DTO_COUNT = 20;
+
+    /**
+     * Measures the time spent in {@link Processor#init} and {@link Processor#process} by the delegate
+     */
+    private static class TimedProcessor implements Processor {
+
+        private final Processor delegate;
+
+        private long nanos;
+
+        private TimedProcessor( Processor delegate ) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init( ProcessingEnvironment processingEnv ) {
+            long start = System.nanoTime();
+            delegate.init( processingEnv );
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+            long start = System.nanoTime();
+            try {
+                return delegate.process( annotations, roundEnv );
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions( Element element, AnnotationMirror annotation, ExecutableElement member,
+                                                              String userText ) {
+            return delegate.getCompletions( element, annotation, member, userText );
+        }
+    }
+
+    public static void main( String[] args ) throws IOException {
+        int services = 20;
+        int endpoints = 200;
+        int iterations = 10;
+        int warmup = 3;
+        List<String> processorOptions = new ArrayList<String>();
+        for ( String arg : args ) {
+            if ( arg.startsWith( "-A" ) ) {
+                processorOptions.add( arg );
+            } else if ( arg.startsWith( "services=" ) ) {
+                services = Integer.parseInt( arg.substring( "services=".length() ) );
+            } else if ( arg.startsWith( "endpoints=" ) ) {
+                endpoints = Integer.parseInt( arg.substring( "endpoints=".length() ) );
+            } else if ( arg.startsWith( "iterations=" ) ) {
+                iterations = Integer.parseInt( arg.substring( "iterations=".length() ) );
+            } else if ( arg.startsWith( "warmup=" ) ) {
+                warmup = Integer.parseInt( arg.substring( "warmup=".length() ) );
+            } else if ( !arg.isEmpty() ) {
+                throw new IllegalArgumentException( "Unknown argument " + arg );
+            }
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if ( null == compiler ) {
+            throw new IllegalStateException( "The benchmark must run on a JDK" );
+        }
+
+        File root = createTempDirectory();
+        List<File> sources = writeSources( new File( root, "src" ), services, endpoints );
+        System.out.println( "Compiling " + services + " services with " + endpoints + " endpoints each (" + services * endpoints + " " +
+                "endpoints) " + processorOptions );
+
+        long[] processorNanos = new long[iterations];
+        long[] totalNanos = new long[iterations];
+        for ( int i = -warmup; i < iterations; i++ ) {
+            File output = new File( root, "out" + (i + warmup) );
+            File classes = new File( output, "classes" );
+            File generated = new File( output, "generated" );
+            classes.mkdirs();
+            generated.mkdirs();
+
+            List<String> options = new ArrayList<String>( Arrays.asList( "-classpath", System.getProperty( "java.class.path" ), "-d",
+                    classes.getPath(), "-s", generated.getPath(), "-nowarn", "-Xlint:-options" ) );
+            options.addAll( processorOptions );
+
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+            StandardJavaFileManager fileManager = compiler.getStandardFileManager( diagnostics, Locale.ROOT, null );
+            TimedProcessor processor = new TimedProcessor( new GenRestBuilderProcessor() );
+            JavaCompiler.CompilationTask task = compiler.getTask( null, fileManager, diagnostics, options, null, fileManager
+                    .getJavaFileObjectsFromFiles( sources ) );
+            task.setProcessors( Collections.singletonList( processor ) );
+
+            long start = System.nanoTime();
+            boolean success = task.call();
+            long total = System.nanoTime() - start;
+            fileManager.close();
+
+            if ( !success ) {
+                for ( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() ) {
+                    if ( diagnostic.getKind() == Diagnostic.Kind.ERROR ) {
+                        System.err.println( diagnostic );
+                    }
+                }
+                throw new IllegalStateException( "The compilation failed" );
+            }
+
+            if ( i >= 0 ) {
+                processorNanos[i] = processor.nanos;
+                totalNanos[i] = total;
+            }
+            System.out.println( String.format( Locale.ROOT, "%s %2d : processor %6d ms, compilation %6d ms", i < 0 ? "warmup   " :
+                    "iteration", i < 0 ? i + warmup + 1 : i + 1, processor.nanos / 1000000, total / 1000000 ) );
+        }
+
+        Arrays.sort( processorNanos );
+        Arrays.sort( totalNanos );
+        long median = processorNanos[iterations / 2];
+        System.out.println( String.format( Locale.ROOT, "processor   : min %6d ms, median %6d ms, %.1f us per endpoint", processorNanos[0]
+                / 1000000, median / 1000000, median / 1000.0 / (services * endpoints) ) );
+        System.out.println( String.format( Locale.ROOT, "compilation : min %6d ms, median %6d ms", totalNanos[0] / 1000000,
+                totalNanos[iterations / 2] / 1000000 ) );
+
+        delete( root );
+    }
+
+    private static List<File> writeSources( File directory, int services, int endpoints ) throws IOException {
+        File packageDirectory = new File( directory, "bench/server" );
+        packageDirectory.mkdirs();
+        List<File> files = new ArrayList<File>();
+
+        for ( int i = 0; i < DTO_COUNT; i++ ) {
+            StringBuilder source = new StringBuilder();
+            source.append( "package bench.server;\n\n" );
+            source.append( "public class Dto" ).append( i ).append( " {\n" );
+            source.append( "    public long id;\n" );
+            source.append( "    public String name;\n" );
+            source.append( "    public java.util.List<String> tags;\n" );
+            source.append( "    public java.util.Date updated;\n" );
+            source.append( "}\n" );
+            files.add( write( packageDirectory, "Dto" + i, source ) );
+        }
+
+        for ( int i = 0; i < services; i++ ) {
+            StringBuilder source = new StringBuilder();
+            source.append( "package bench.server;\n\n" );
+            source.append( "import javax.ws.rs.*;\n" );
+            source.append( "import java.util.List;\n\n" );
+            source.append( "@com.github.nmorel.gwtjackson.rest.processor.GenRestBuilder\n" );
+            source.append( "@Path( \"service" ).append( i ).append( "\" )\n" );
+            source.append( "@Produces( \"application/json\" )\n" );
+            source.append( "@Consumes( \"application/json\" )\n" );
+            source.append( "public class Service" ).append( i ).append( " {\n" );
+            for ( int j = 0; j < endpoints; j++ ) {
+                String dto = "Dto" + (j % DTO_COUNT);
+                source.append( "\n" );
+                switch ( j % 5 ) {
+                    case 0:
+                        source.append( "    @GET @Path( \"items" ).append( j ).append( "/{id}\" )\n" );
+                        source.append( "    public " ).append( dto ).append( " get" ).append( j ).append( "( @PathParam( \"id\" ) long id, " +
+                                "@QueryParam( \"q\" ) String q, @QueryParam( \"full\" ) boolean full ) { return null; }\n" );
+                        break;
+                    case 1:
+                        source.append( "    @GET @Path( \"items" ).append( j ).append( "\" )\n" );
+                        source.append( "    public List<" ).append( dto ).append( "> list" ).append( j ).append( "( @QueryParam( \"offset\" ) " +
+                                "int offset, @QueryParam( \"limit\" ) int limit ) { return null; }\n" );
+                        break;
+                    case 2:
+                        source.append( "    @POST @Path( \"items" ).append( j ).append( "\" )\n" );
+                        source.append( "    public " ).append( dto ).append( " create" ).append( j ).append( "( " ).append( dto ).append( " " +
+                                "body ) { return null; }\n" );
+                        break;
+                    case 3:
+                        source.append( "    @PUT @Path( \"items" ).append( j ).append( "/{id}\" )\n" );
+                        source.append( "    public void update" ).append( j ).append( "( @PathParam( \"id\" ) String id, @HeaderParam( " +
+                                "\"X-Version\" ) int version, " ).append( dto ).append( " body ) { }\n" );
+                        break;
+                    default:
+                        source.append( "    @DELETE @Path( \"items" ).append( j ).append( "/{id: [0-9]+}/{sub}\" )\n" );
+                        source.append( "    public void delete" ).append( j ).append( "( @PathParam( \"id\" ) long id, @PathParam( \"sub\" ) " +
+                                "String sub ) { }\n" );
+                        break;
+                }
+            }
+            source.append( "}\n" );
+            files.add( write( packageDirectory, "Service" + i, source ) );
+        }
+        return files;
+    }
+
+    private static File write( File directory, String className, CharSequence source ) throws IOException {
+        File file = new File( directory, className + ".java" );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try {
+            writer.append( source );
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File file = File.createTempFile( "gwt-jackson-rest-benchmark", "" );
+        if ( !file.delete() || !file.mkdirs() ) {
+            throw new IOException( "Cannot create the directory " + file );
+        }
+        return file;
+    }
+
+    private static void delete( File file ) {
+        File[] children = file.listFiles();
+        if ( null != children ) {
+            for ( File child : children ) {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
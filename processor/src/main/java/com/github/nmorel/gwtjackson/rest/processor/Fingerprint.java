@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the fingerprints written in the generated classes to detect if they are up-to-date.
+ */
+public final class Fingerprint {
+
+    private Fingerprint() {
+    }
+
+    /**
+     * @param model description of everything a generated class depends on
+     *
+     * @return the SHA-1 of the model as an hexadecimal string
+     */
+    public static String of( CharSequence model ) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance( "SHA-1" ).digest( model.toString().getBytes( "UTF-8" ) );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new IllegalStateException( e );
+        }
+
+        StringBuilder hex = new StringBuilder( digest.length * 2 );
+        for ( byte b : digest ) {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+}
@@ -22,7 +22,6 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
@@ -30,27 +29,50 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.github.nmorel.gwtjackson.client.ObjectMapper;
 import com.github.nmorel.gwtjackson.client.ObjectReader;
 import com.github.nmorel.gwtjackson.client.ObjectWriter;
+import com.github.nmorel.gwtjackson.rest.api.DeferredRequest;
+import com.github.nmorel.gwtjackson.rest.api.RequestPriority;
 import com.github.nmorel.gwtjackson.rest.api.RestCallback;
+import com.github.nmorel.gwtjackson.rest.api.RestEndpoint;
+import com.github.nmorel.gwtjackson.rest.api.RestException;
+import com.github.nmorel.gwtjackson.rest.api.RestFuture;
+import com.github.nmorel.gwtjackson.rest.api.RestPager;
+import com.github.nmorel.gwtjackson.rest.api.ResponseInterner;
+import com.github.nmorel.gwtjackson.rest.api.RestStreamCallback;
 import com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder;
+import com.github.nmorel.gwtjackson.rest.api.UrlTemplate;
+import com.github.nmorel.gwtjackson.rest.server.SparseFieldset;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.squareup.javapoet.ClassName;
@@ -68,15 +90,40 @@ import com.squareup.javapoet.TypeSpec;
  */
 public class GenRestBuilderProcessor extends AbstractProcessor {
 
+    /**
+     * Version of the generated code. It is part of the fingerprint of the builders so it must be incremented each time the generated
+     * code changes.
+     */
+    private static final int GENERATOR_VERSION = 13;
+
+    private static final Pattern FINGERPRINT_PATTERN = Pattern.compile( "Fingerprint: ([0-9a-f]+)" );
+
     private Filer filer;
 
     private Messager messager;
 
     private Options options;
 
+    /**
+     * Whether the shared mapper registry has been generated in a previous round
+     */
+    private boolean registryGenerated;
+
+    /**
+     * Qualified names of the types compiled from source in the current round
+     */
+    private final Set<String> sourceTypes = new HashSet<String>();
+
     @Override
     public Set<String> getSupportedOptions() {
-        return Options.getOptionsName();
+        Set<String> supportedOptions = Options.getOptionsName();
+        // the registry depends on all the services so the processor is only isolating without it
+        if ( null != options && null != options.getMapperRegistry() ) {
+            supportedOptions.add( "org.gradle.annotation.processing.aggregating" );
+        } else {
+            supportedOptions.add( "org.gradle.annotation.processing.isolating" );
+        }
+        return supportedOptions;
     }
 
     @Override
@@ -98,11 +145,19 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
         filer = processingEnv.getFiler();
         messager = processingEnv.getMessager();
 
-        options = new Options( processingEnv.getOptions() );
+        options = new Options( processingEnv.getOptions(), messager );
     }
 
     @Override
     public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        RestAnnotationTypes annotationTypes = null;
+        List<RestService> services = new ArrayList<RestService>();
+        sourceTypes.clear();
+        for ( Element element : roundEnv.getRootElements() ) {
+            if ( element instanceof TypeElement ) {
+                sourceTypes.add( ((TypeElement) element).getQualifiedName().toString() );
+            }
+        }
         for ( Element element : roundEnv.getElementsAnnotatedWith( GenRestBuilder.class ) ) {
 
             if ( !isAnnotatedWith( element, Path.class ) ) {
@@ -110,7 +165,10 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
                 continue;
             }
 
-            RestService service = new RestService( options, element );
+            if ( null == annotationTypes ) {
+                annotationTypes = new RestAnnotationTypes( processingEnv.getElementUtils() );
+            }
+            RestService service = new RestService( options, annotationTypes, element );
 
             // For each methods in error, we log the message
             if ( !service.getMethodsInError().isEmpty() ) {
@@ -121,7 +179,8 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
                         warn( entry.getKey(), "Cannot have more than one body parameter" );
                     } catch ( MissingGenResponseClassTypeException e ) {
                         note( entry.getKey(),
-                                "Methods with return type javax.ws.rs.core.Response can be annotated with @%s to define an other type.",
+                                "Methods with return type javax.ws.rs.core.Response or producing newline-delimited JSON can be annotated "
+                                        + "with @%s to define an other type.",
                                 GenResponseClassType.class.getCanonicalName() );
                     } catch ( Exception e ) {
                         error( entry.getKey(), "Unexpected error: " + e.getMessage() );
@@ -129,77 +188,302 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
                 }
             }
 
-            TypeSpec type = generateBuilder( service );
+            // the server only trims the responses of the resources bound to its interceptor
+            for ( RestServiceMethod method : service.getMethods() ) {
+                if ( null != method.getFields() && !isAnnotatedWith( method.getMethod(), SparseFieldset.class ) && !isAnnotatedWith(
+                        element, SparseFieldset.class ) ) {
+                    warn( method.getMethod(), "The method should be annotated with @%s so the server trims its responses to the "
+                            + "asked properties", SparseFieldset.class.getCanonicalName() );
+                }
+            }
+
+            services.add( service );
+        }
+
+        if ( services.isEmpty() ) {
+            return true;
+        }
+
+        Map<String, CodeBlock> registryMappers = null;
+        String registryFingerprint = null;
+        if ( null != options.getMapperRegistry() ) {
+            if ( registryGenerated ) {
+                warn( null, "The mapper registry %s has already been generated, the builders generated in this round declare their own "
+                        + "mappers", options.getMapperRegistry() );
+            } else {
+                registryGenerated = true;
+                registryMappers = new HashMap<String, CodeBlock>();
+                registryFingerprint = generateMapperRegistry( services, registryMappers );
+                if ( null == registryFingerprint ) {
+                    return true; // Exit processing
+                }
+            }
+        }
 
-            try {
-                JavaFileObject jfo = filer.createSourceFile( service.getBuilderQualifiedClassName() );
-                JavaFile file = JavaFile.builder( service.getPackageName(), type ).build();
-                Writer writer = jfo.openWriter();
+        for ( RestService service : services ) {
+            if ( options.isGwtOutput() ) {
+                String fingerprint = service.getFingerprint( GENERATOR_VERSION, options.isSpecializedEndpoints() + " " + ( null ==
+                        registryMappers ? null : options.getMapperRegistry() + " " + registryFingerprint ) );
+                // skipped if the builder generated by a previous compilation is up-to-date
+                if ( !fingerprint.equals( readFingerprint( service.getPackageName(), service.getBuilderSimpleClassName() ) )
+                        && !writeSource( service.getPackageName(), generateBuilder( service, fingerprint, registryMappers ), service
+                        .getTypeElement() ) ) {
+                    return true; // Exit processing
+                }
+            }
+
+            if ( options.isJvmOutput() ) {
+                String fingerprint = service.getFingerprint( GENERATOR_VERSION, "jvm" );
+                if ( !fingerprint.equals( readFingerprint( service.getPackageName(), service.getClientSimpleClassName() ) )
+                        && !writeSource( service.getPackageName(), new JvmClientGenerator( processingEnv ).generate( service,
+                        fingerprint ), service.getTypeElement() ) ) {
+                    return true; // Exit processing
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a generated source. When a build tool puts the generated sources on the source path, like Maven does on a non-clean
+     * build, the outdated source generated by a previous compilation is compiled in this round and the filer cannot create it again.
+     * It is then overwritten and an error asks to compile again since the outdated version is compiled.
+     *
+     * @param packageName the package of the type
+     * @param type the generated type
+     * @param originatingElements the types the source is generated from
+     *
+     * @return false if the source cannot be written
+     */
+    private boolean writeSource( String packageName, TypeSpec type, Element... originatingElements ) {
+        String qualifiedName = packageName.isEmpty() ? type.name : packageName + "." + type.name;
+        JavaFile file = JavaFile.builder( packageName, type ).build();
+        try {
+            if ( sourceTypes.contains( qualifiedName ) ) {
+                FileObject existing = filer.getResource( StandardLocation.SOURCE_OUTPUT, packageName, type.name + ".java" );
+                Writer writer = new OutputStreamWriter( new FileOutputStream( new File( existing.toUri() ) ), "UTF-8" );
                 file.writeTo( writer );
                 writer.close();
-            } catch ( IOException e ) {
-                error( null, e.getMessage() );
-                return true; // Exit processing
+                error( originatingElements[0], "%s has been generated again but its outdated version on the source path is compiled, "
+                        + "compile again", qualifiedName );
+                return true;
             }
+            JavaFileObject jfo = filer.createSourceFile( qualifiedName, originatingElements );
+            Writer writer = jfo.openWriter();
+            file.writeTo( writer );
+            writer.close();
+            return true;
+        } catch ( IOException e ) {
+            error( null, e.getMessage() );
+            return false;
+        } catch ( IllegalArgumentException e ) {
+            // the outdated source is not a file
+            error( null, e.getMessage() );
+            return false;
         }
-        return true;
+    }
+
+    /**
+     * Generates the registry declaring the mappers of all the services, deduplicated by type.
+     *
+     * @param services the services of the round
+     * @param registryMappers filled with the type -> call of the mapper getter
+     *
+     * @return the fingerprint of the registry or null if it cannot be written
+     */
+    private String generateMapperRegistry( List<RestService> services, Map<String, CodeBlock> registryMappers ) {
+        String qualifiedName = options.getMapperRegistry();
+        int lastDot = qualifiedName.lastIndexOf( '.' );
+        String packageName = lastDot < 0 ? "" : qualifiedName.substring( 0, lastDot );
+        String simpleName = qualifiedName.substring( lastDot + 1 );
+        ClassName registryClass = ClassName.get( packageName, simpleName );
+
+        List<TypeMirror> returnTypes = new ArrayList<TypeMirror>();
+        List<TypeMirror> bodyTypes = new ArrayList<TypeMirror>();
+        Element[] originatingElements = new Element[services.size()];
+        for ( int i = 0; i < services.size(); i++ ) {
+            returnTypes.addAll( services.get( i ).getReturnTypes() );
+            bodyTypes.addAll( services.get( i ).getBodyTypes() );
+            originatingElements[i] = services.get( i ).getTypeElement();
+        }
+
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder( simpleName )
+                .addModifiers( Modifier.PUBLIC, Modifier.FINAL )
+                .addMethod( MethodSpec.constructorBuilder().addModifiers( Modifier.PRIVATE ).build() );
+
+        Map<String, MethodSpec> getters = buildMappers( packageName, simpleName, typeBuilder, returnTypes, bodyTypes, true );
+
+        StringBuilder model = new StringBuilder();
+        model.append( GENERATOR_VERSION ).append( '\n' ).append( qualifiedName ).append( '\n' );
+        for ( Entry<String, MethodSpec> getter : getters.entrySet() ) {
+            model.append( getter.getKey() ).append( ' ' ).append( getter.getValue().name ).append( '\n' );
+            registryMappers.put( getter.getKey(), CodeBlock.builder().add( "$T.$N()", registryClass, getter.getValue() ).build() );
+        }
+        String fingerprint = Fingerprint.of( model );
+
+        if ( fingerprint.equals( readFingerprint( packageName, simpleName ) ) ) {
+            // the registry generated by a previous compilation is up-to-date
+            return fingerprint;
+        }
+
+        typeBuilder.addJavadoc( "Generated registry of the mappers shared by the REST service builders.\n" )
+                .addJavadoc( "<p>Fingerprint: $L</p>\n", fingerprint );
+
+        return writeSource( packageName, typeBuilder.build(), originatingElements ) ? fingerprint : null;
+    }
+
+    /**
+     * Reads the fingerprint of a class generated by a previous compilation.
+     *
+     * @param packageName The package of the class
+     * @param simpleName The simple name of the class
+     *
+     * @return the fingerprint or null if there is no class or it cannot be read
+     */
+    private String readFingerprint( String packageName, String simpleName ) {
+        CharSequence content;
+        try {
+            FileObject existing = filer.getResource( StandardLocation.SOURCE_OUTPUT, packageName, simpleName + ".java" );
+            content = existing.getCharContent( true );
+        } catch ( IOException e ) {
+            return null;
+        } catch ( IllegalArgumentException e ) {
+            return null;
+        }
+        if ( null == content ) {
+            return null;
+        }
+        Matcher matcher = FINGERPRINT_PATTERN.matcher( content );
+        return matcher.find() ? matcher.group( 1 ) : null;
     }
 
     /**
      * Generate the rest service builder
      *
      * @param restService The rest service
+     * @param fingerprint The fingerprint of the rest service
+     * @param registryMappers The calls to the mappers of the shared registry or null if the builder declares its own mappers
      */
-    private TypeSpec generateBuilder( RestService restService ) {
+    private TypeSpec generateBuilder( RestService restService, String fingerprint, Map<String, CodeBlock> registryMappers ) {
 
         TypeSpec.Builder typeBuilder = TypeSpec.classBuilder( restService.getBuilderSimpleClassName() )
                 .addModifiers( Modifier.PUBLIC, Modifier.FINAL )
                 .addJavadoc( "Generated REST service builder for {@link $L}.\n", restService.getTypeElement().getQualifiedName() )
+                .addJavadoc( "<p>Fingerprint: $L</p>\n", fingerprint )
                 .addMethod( MethodSpec.constructorBuilder().addModifiers( Modifier.PRIVATE ).build() );
 
-        Map<TypeMirror, MethodSpec> mapperGetters = buildMappers( typeBuilder, restService );
+        Map<String, FieldSpec> urlTemplates = buildUrlTemplates( typeBuilder, restService );
+
+        Map<String, CodeBlock> mapperGetters;
+        if ( null == registryMappers ) {
+            mapperGetters = new HashMap<String, CodeBlock>();
+            for ( Entry<String, MethodSpec> getter : buildMappers( restService.getPackageName(), restService.getBuilderSimpleClassName(),
+                    typeBuilder, restService.getReturnTypes(), restService.getBodyTypes(), false ).entrySet() ) {
+                mapperGetters.put( getter.getKey(), CodeBlock.builder().add( "$N()", getter.getValue() ).build() );
+            }
+        } else {
+            mapperGetters = registryMappers;
+        }
 
+        int i = 1;
         for ( RestServiceMethod method : restService.getMethods() ) {
-            buildMethod( typeBuilder, mapperGetters, method );
+            buildMethod( typeBuilder, restService, urlTemplates, mapperGetters, method, i++ );
         }
 
         return typeBuilder.build();
     }
 
-    private Map<TypeMirror, MethodSpec> buildMappers( TypeSpec.Builder typeBuilder, RestService restService ) {
-        Set<TypeMirror> readers = new LinkedHashSet<TypeMirror>( restService.getReturnTypes() );
-        readers.removeAll( restService.getBodyTypes() );
+    /**
+     * Builds a constant {@link UrlTemplate} for each distinct url of the service.
+     *
+     * @return the map url -> field containing its template
+     */
+    private Map<String, FieldSpec> buildUrlTemplates( TypeSpec.Builder typeBuilder, RestService restService ) {
+        int i = 1;
+        Map<String, FieldSpec> result = new HashMap<String, FieldSpec>();
+        for ( RestServiceMethod method : restService.getMethods() ) {
+            if ( result.containsKey( method.getUrl() ) ) {
+                continue;
+            }
+
+            FieldSpec templateField = FieldSpec
+                    .builder( UrlTemplate.class, "URL_TEMPLATE_" + i++ )
+                    .addModifiers( Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL )
+                    .initializer( "new $T(new String[]{$L}, new String[]{$L})", UrlTemplate.class, joinLiterals( method
+                            .getUrlFragments() ), joinLiterals( method.getUrlParams() ) )
+                    .build();
+            typeBuilder.addField( templateField );
+
+            result.put( method.getUrl(), templateField );
+        }
+        return result;
+    }
 
-        Set<TypeMirror> writers = new LinkedHashSet<TypeMirror>( restService.getBodyTypes() );
-        writers.removeAll( restService.getReturnTypes() );
+    private CodeBlock joinLiterals( List<String> values ) {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        Iterator<String> iterator = values.iterator();
+        while ( iterator.hasNext() ) {
+            builder.add( "$S", iterator.next() );
+            if ( iterator.hasNext() ) {
+                builder.add( ", " );
+            }
+        }
+        return builder.build();
+    }
 
-        Set<TypeMirror> mappers = new LinkedHashSet<TypeMirror>( restService.getBodyTypes() );
-        mappers.retainAll( restService.getReturnTypes() );
+    /**
+     * Builds the mappers of the given types. A type both read and written gets an {@link ObjectMapper}.
+     *
+     * @param shared true if the mappers are declared in the shared registry and must be accessible from the builders
+     *
+     * @return the map type -> getter of its mapper
+     */
+    private Map<String, MethodSpec> buildMappers( String packageName, String className, TypeSpec.Builder typeBuilder, Collection<TypeMirror>
+            returnTypes, Collection<TypeMirror> bodyTypes, boolean shared ) {
+        Map<String, TypeMirror> readers = byName( returnTypes );
+        Map<String, TypeMirror> writers = byName( bodyTypes );
+
+        Map<String, TypeMirror> mappers = new LinkedHashMap<String, TypeMirror>( readers );
+        mappers.keySet().retainAll( writers.keySet() );
+        readers.keySet().removeAll( mappers.keySet() );
+        writers.keySet().removeAll( mappers.keySet() );
+
+        Map<String, MethodSpec> result = new LinkedHashMap<String, MethodSpec>();
+        result.putAll( buildMappers( packageName, className, typeBuilder, readers, ObjectReader.class, shared ) );
+        result.putAll( buildMappers( packageName, className, typeBuilder, writers, ObjectWriter.class, shared ) );
+        result.putAll( buildMappers( packageName, className, typeBuilder, mappers, ObjectMapper.class, shared ) );
+        return result;
+    }
 
-        Map<TypeMirror, MethodSpec> result = new LinkedHashMap<TypeMirror, MethodSpec>();
-        result.putAll( buildMappers( restService.getPackageName(), restService
-                .getBuilderSimpleClassName(), typeBuilder, readers, ObjectReader.class ) );
-        result.putAll( buildMappers( restService.getPackageName(), restService
-                .getBuilderSimpleClassName(), typeBuilder, writers, ObjectWriter.class ) );
-        result.putAll( buildMappers( restService.getPackageName(), restService
-                .getBuilderSimpleClassName(), typeBuilder, mappers, ObjectMapper.class ) );
+    /**
+     * Types are deduplicated by name since two mirrors of the same type are not necessarily equal.
+     */
+    private Map<String, TypeMirror> byName( Collection<TypeMirror> types ) {
+        Map<String, TypeMirror> result = new LinkedHashMap<String, TypeMirror>();
+        for ( TypeMirror type : types ) {
+            if ( !result.containsKey( type.toString() ) ) {
+                result.put( type.toString(), type );
+            }
+        }
         return result;
     }
 
-    private Map<TypeMirror, MethodSpec> buildMappers( String packageName, String className, TypeSpec.Builder typeBuilder, Set<TypeMirror>
-            types, Class clazz ) {
+    private Map<String, MethodSpec> buildMappers( String packageName, String className, TypeSpec.Builder typeBuilder, Map<String,
+            TypeMirror> types, Class clazz, boolean shared ) {
         int i = 1;
-        Map<TypeMirror, MethodSpec> result = new HashMap<TypeMirror, MethodSpec>();
-        for ( TypeMirror type : types ) {
+        Map<String, MethodSpec> result = new LinkedHashMap<String, MethodSpec>();
+        for ( Entry<String, TypeMirror> type : types.entrySet() ) {
             String mapperName = clazz.getSimpleName() + i++;
 
             TypeName mapperType = ClassName.get( packageName, className, mapperName );
 
-            TypeSpec innerMapper = TypeSpec.interfaceBuilder( mapperName )
+            TypeSpec.Builder innerMapper = TypeSpec.interfaceBuilder( mapperName )
                     .addModifiers( Modifier.STATIC )
-                    .addSuperinterface( ParameterizedTypeName.get( ClassName.get( clazz ), ClassName.get( type ) ) )
-                    .build();
-            typeBuilder.addType( innerMapper );
+                    .addSuperinterface( ParameterizedTypeName.get( ClassName.get( clazz ), ClassName.get( type.getValue() ) ) );
+            if ( shared ) {
+                innerMapper.addModifiers( Modifier.PUBLIC );
+            }
+            typeBuilder.addType( innerMapper.build() );
 
             FieldSpec mapperField = FieldSpec
                     .builder( mapperType, mapperName.toLowerCase() )
@@ -208,7 +492,7 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
             typeBuilder.addField( mapperField );
 
             MethodSpec mapperGetter = MethodSpec.methodBuilder( "get" + mapperName )
-                    .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                    .addModifiers( shared ? Modifier.PUBLIC : Modifier.PRIVATE, Modifier.STATIC )
                     .returns( mapperType )
                     .beginControlFlow( "if ($N == null)", mapperField )
                     .addStatement( "$N = $T.create($T.class)", mapperField, GWT.class, mapperType )
@@ -217,18 +501,72 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
                     .build();
             typeBuilder.addMethod( mapperGetter );
 
-            result.put( type, mapperGetter );
+            result.put( type.getKey(), mapperGetter );
         }
         return result;
     }
 
-    private void buildMethod( TypeSpec.Builder typeBuilder, Map<TypeMirror, MethodSpec> mapperGetters, RestServiceMethod method ) {
-        String methodName = method.getMethod().getSimpleName().toString();
+    /**
+     * Builds the lazily initialized {@link RestEndpoint} holding the constant parts of the requests to the method.
+     *
+     * @return the getter of the endpoint
+     */
+    private MethodSpec buildEndpoint( TypeSpec.Builder typeBuilder, RestService restService, Map<String, FieldSpec> urlTemplates,
+                                      RestServiceMethod method, int index, TypeName restType, CodeBlock headers, List<String>
+            queryParams, CodeBlock bodyTypeWriterGetter, CodeBlock returnTypeReaderGetter ) {
+        TypeName endpointType = ParameterizedTypeName.get( ClassName.get( RestEndpoint.class ), ((ParameterizedTypeName) restType)
+                .typeArguments.toArray( new TypeName[0] ) );
+
+        FieldSpec endpointField = FieldSpec.builder( endpointType, "endpoint" + index )
+                .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                .build();
+        typeBuilder.addField( endpointField );
+
+        CodeBlock.Builder init = CodeBlock.builder()
+                .add( "new $T(", endpointType )
+                .indent()
+                .add( "\n$T.$L,", RequestBuilder.class, method.getHttpMethodAnnotation().getAnnotationType().asElement()
+                        .getSimpleName() )
+                .add( "\n$N,", urlTemplates.get( method.getUrl() ) )
+                .add( "\n$S, $S,", restService.getTypeElement().getQualifiedName(), RestServiceMethod.endpointName( method
+                        .getMethod() ) )
+                .add( "\nnew String[]{$L},", headers )
+                .add( "\nnew String[]{$L},", joinLiterals( queryParams ) );
+        if ( null == method.getPriority() ) {
+            init.add( "\nnull," );
+        } else {
+            init.add( "\n$T.$L,", RequestPriority.class, method.getPriority().name() );
+        }
+        if ( null == bodyTypeWriterGetter ) {
+            init.add( "\nnull," );
+        } else {
+            init.add( "\n$L,", bodyTypeWriterGetter );
+        }
+        if ( null == returnTypeReaderGetter ) {
+            init.add( "\nnull)" );
+        } else {
+            init.add( "\n$L)", returnTypeReaderGetter );
+        }
+        init.unindent();
+
+        MethodSpec endpointGetter = MethodSpec.methodBuilder( "getEndpoint" + index )
+                .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                .returns( endpointType )
+                .beginControlFlow( "if ($N == null)", endpointField )
+                .addStatement( "$N = $L", endpointField, init.build() )
+                .endControlFlow()
+                .addStatement( "return $N", endpointField )
+                .build();
+        typeBuilder.addMethod( endpointGetter );
+        return endpointGetter;
+    }
 
-        AnnotationMirror httpMethodAnnotation = method.getHttpMethodAnnotation();
+    private void buildMethod( TypeSpec.Builder typeBuilder, RestService restService, Map<String, FieldSpec> urlTemplates,
+                              Map<String, CodeBlock> mapperGetters, RestServiceMethod method, int index ) {
+        String methodName = method.getMethod().getSimpleName().toString();
 
         TypeMirror returnType = method.getReturnType();
-        MethodSpec returnTypeReaderGetter = mapperGetters.get( returnType );
+        CodeBlock returnTypeReaderGetter = null == returnType ? null : mapperGetters.get( returnType.toString() );
         TypeName returnTypeName;
         if ( null == returnTypeReaderGetter ) {
             returnTypeName = ClassName.get( Void.class );
@@ -237,11 +575,11 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
         }
 
         VariableElement bodyVariable = method.getBodyParamVariable();
-        MethodSpec bodyTypeWriterGetter;
+        CodeBlock bodyTypeWriterGetter;
         TypeName bodyTypeName;
 
         if ( null != bodyVariable ) {
-            bodyTypeWriterGetter = mapperGetters.get( bodyVariable.asType() );
+            bodyTypeWriterGetter = mapperGetters.get( bodyVariable.asType().toString() );
             bodyTypeName = TypeName.get( bodyVariable.asType() );
         } else {
             bodyTypeWriterGetter = null;
@@ -258,27 +596,70 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
                 .addModifiers( Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL )
                 .returns( Request.class );
 
+        CodeBlock.Builder headers = CodeBlock.builder();
+        if ( null != method.getConsumes() ) {
+            headers.add( "$S, $S", "Content-Type", method.getConsumes() );
+        }
+        if ( null != method.getProduces() ) {
+            headers.add( null == method.getConsumes() ? "$S, $S" : ", $S, $S", "Accept", method.getProduces() );
+        }
+
+        boolean specialized = options.isSpecializedEndpoints();
+
+        List<String> queryParams = new ArrayList<String>();
+        for ( VariableElement variable : method.getMethod().getParameters() ) {
+            if ( !specialized && isAnnotatedWith( variable, QueryParam.class ) ) {
+                queryParams.add( variable.getAnnotation( QueryParam.class ).value() );
+            }
+        }
+
+        MethodSpec endpointGetter = buildEndpoint( typeBuilder, restService, urlTemplates, method, index, restType, headers.build(),
+                queryParams, bodyTypeWriterGetter, returnTypeReaderGetter );
+
         CodeBlock.Builder initRestBuilder = CodeBlock.builder()
-                .add( "new $T()", restType )
-                .indent()
-                .add( "\n.method($T.$L)", RequestBuilder.class, httpMethodAnnotation.getAnnotationType().asElement().getSimpleName() )
-                .add( "\n.url($S)", method.getUrl() );
+                .add( "new $T($N())", restType, endpointGetter )
+                .indent();
 
         if ( null != bodyVariable ) {
             initRestBuilder.add( "\n.body($L)", bodyVariable.getSimpleName() );
         }
-        if ( null != bodyTypeWriterGetter ) {
-            initRestBuilder.add( "\n.bodyConverter($N())", bodyTypeWriterGetter );
+
+        if ( null != method.getSupersedeKey() ) {
+            initRestBuilder.add( "\n.supersede($S)", method.getSupersedeKey() );
         }
-        if ( null != method.getConsumes() ) {
-            initRestBuilder.add( "\n.addHeader($S, $S)", "Content-Type", method.getConsumes() );
+
+        if ( null != method.getIntern() && null != returnTypeReaderGetter ) {
+            if ( method.getIntern().session() ) {
+                initRestBuilder.add( "\n.interner($T.session())", ResponseInterner.class );
+            } else {
+                initRestBuilder.add( "\n.intern()" );
+            }
         }
-        if ( null != method.getProduces() ) {
-            initRestBuilder.add( "\n.addHeader($S, $S)", "Accept", method.getProduces() );
+
+        if ( null != method.getFields() && null != returnTypeReaderGetter ) {
+            CodeBlock.Builder fields = CodeBlock.builder();
+            for ( int i = 0; i < method.getFields().length; i++ ) {
+                fields.add( i == 0 ? "$S" : ", $S", method.getFields()[i] );
+            }
+            initRestBuilder.add( "\n.fields($L)", fields.build() );
+        }
+
+        if ( method.isPatch() ) {
+            initRestBuilder.add( "\n.patch()" );
+        } else if ( null != returnTypeReaderGetter && isPatchedResource( restService, method ) ) {
+            initRestBuilder.add( "\n.snapshot($L)", returnTypeReaderGetter );
+        }
+
+        boolean cacheableGet = !method.isStreaming() && "GET".equals( method.getHttpMethodAnnotation().getAnnotationType().asElement()
+                .getSimpleName().toString() );
+        if ( null != method.getPersistentCache() && cacheableGet ) {
+            initRestBuilder.add( "\n.persistentCachePolicy($L, $L)", method.getPersistentCache().ttl(), method.getPersistentCache()
+                    .staleWhileRevalidate() );
         }
 
         StringBuilder callParamBuilder = new StringBuilder();
 
+        int queryParamIndex = 0;
         for ( VariableElement variable : method.getMethod().getParameters() ) {
             if ( isAnnotatedWith( variable, Context.class ) ) {
                 continue;
@@ -294,17 +675,26 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
             }
             callParamBuilder.append( variable.getSimpleName().toString() );
 
+            if ( specialized ) {
+                continue;
+            }
+
             if ( isAnnotatedWith( variable, PathParam.class ) ) {
                 PathParam pathParamAnnotation = variable.getAnnotation( PathParam.class );
-                initRestBuilder.add( "\n.addPathParam($S, $L)", pathParamAnnotation.value(), variable.getSimpleName() );
+                int pathParamIndex = method.getUrlParams().indexOf( pathParamAnnotation.value() );
+                if ( pathParamIndex < 0 ) {
+                    initRestBuilder.add( "\n.addPathParam($S, $L)", pathParamAnnotation.value(), variable.getSimpleName() );
+                } else {
+                    initRestBuilder.add( "\n.pathParam($L, $L)", pathParamIndex, variable.getSimpleName() );
+                }
             } else if ( isAnnotatedWith( variable, QueryParam.class ) ) {
-                QueryParam queryParamAnnotation = variable.getAnnotation( QueryParam.class );
-                initRestBuilder.add( "\n.addQueryParam($S, $L)", queryParamAnnotation.value(), variable.getSimpleName() );
+                initRestBuilder.add( "\n.queryParam($L, $L)", queryParamIndex++, variable.getSimpleName() );
             }
         }
 
-        if ( null != returnTypeReaderGetter ) {
-            initRestBuilder.add( "\n.responseConverter($N())", returnTypeReaderGetter );
+        if ( specialized ) {
+            methodSpecBuilder.addCode( new UrlExpansion( processingEnv, false ).build( method ) );
+            initRestBuilder.add( "\n.expandedUrl(_url_.toString())" );
         }
 
         initRestBuilder.unindent();
@@ -313,16 +703,190 @@ public class GenRestBuilderProcessor extends AbstractProcessor {
         MethodSpec methodSpec = methodSpecBuilder.build();
         typeBuilder.addMethod( methodSpec );
 
-        methodWithCallbackSpecBuilder.addParameter( ParameterizedTypeName
-                .get( ClassName.get( RestCallback.class ), returnTypeName ), "_callback_" );
-        methodWithCallbackSpecBuilder.addStatement( "return $L", CodeBlock.builder()
+        Class<?> callbackClass = method.isStreaming() ? RestStreamCallback.class : RestCallback.class;
+        methodWithCallbackSpecBuilder.addParameter( ParameterSpec.builder( ParameterizedTypeName
+                .get( ClassName.get( callbackClass ), returnTypeName ), "_callback_", Modifier.FINAL ).build() );
+        CodeBlock send = CodeBlock.builder()
                 .add( "$L($L)", methodName, callParamBuilder )
                 .indent()
-                .add( "\n.callback(_callback_)" )
+                .add( method.isStreaming() ? "\n.streamCallback(_callback_)" : "\n.callback(_callback_)" )
                 .add( "\n.send()" )
                 .unindent()
-                .build() );
-        typeBuilder.addMethod( methodWithCallbackSpecBuilder.build() );
+                .build();
+        if ( restService.isSplitPoint() ) {
+            // the request is built inside the split point so the mappers are only reachable from the fragment
+            addSplitPoint( methodWithCallbackSpecBuilder, restService, send, true );
+        } else {
+            methodWithCallbackSpecBuilder.addStatement( "return $L", send );
+        }
+        MethodSpec methodWithCallbackSpec = methodWithCallbackSpecBuilder.build();
+        typeBuilder.addMethod( methodWithCallbackSpec );
+
+        if ( !method.isStreaming() ) {
+            TypeName futureType = ParameterizedTypeName.get( ClassName.get( RestFuture.class ), returnTypeName );
+            MethodSpec.Builder methodWithFutureSpecBuilder = MethodSpec.methodBuilder( methodName + "Future" )
+                    .addModifiers( Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL )
+                    .returns( futureType );
+            for ( ParameterSpec parameterSpec : methodSpec.parameters ) {
+                methodWithFutureSpecBuilder.addParameter( parameterSpec );
+            }
+            methodWithFutureSpecBuilder.addStatement( "$T _future_ = new $T()", futureType, futureType )
+                    .addStatement( "_future_.setRequest($N($L_future_.asCallback()))", methodWithCallbackSpec,
+                            callParamBuilder.length() > 0 ? callParamBuilder + ", " : "" )
+                    .addStatement( "return _future_" );
+            typeBuilder.addMethod( methodWithFutureSpecBuilder.build() );
+        }
+
+        if ( cacheableGet ) {
+            MethodSpec.Builder prefetchSpecBuilder = MethodSpec.methodBuilder( "prefetch" + Character.toUpperCase( methodName.charAt( 0 ) )
+                    + methodName.substring( 1 ) )
+                    .addModifiers( Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL )
+                    .returns( Request.class );
+            for ( ParameterSpec parameterSpec : methodSpec.parameters ) {
+                prefetchSpecBuilder.addParameter( parameterSpec );
+            }
+            CodeBlock prefetch = CodeBlock.builder().add( "$N($L).prefetch()", methodSpec, callParamBuilder ).build();
+            if ( restService.isSplitPoint() ) {
+                addSplitPoint( prefetchSpecBuilder, restService, prefetch, false );
+            } else {
+                prefetchSpecBuilder.addStatement( "return $L", prefetch );
+            }
+            typeBuilder.addMethod( prefetchSpecBuilder.build() );
+        }
+
+        if ( null != method.getPagination() ) {
+            buildPagesMethod( typeBuilder, method, returnTypeName, methodWithCallbackSpec );
+        }
+    }
+
+    /**
+     * @return true if the method is a GET method fetching the resource updated by a {@link GenRestPatch} method of the service
+     */
+    private boolean isPatchedResource( RestService restService, RestServiceMethod method ) {
+        if ( method.isStreaming() || !"GET".equals( method.getHttpMethodAnnotation().getAnnotationType().asElement().getSimpleName()
+                .toString() ) ) {
+            return false;
+        }
+        for ( RestServiceMethod update : restService.getMethods() ) {
+            if ( update.isPatch() && update.getUrl().equals( method.getUrl() ) && update.getBodyParamVariable().asType().toString()
+                    .equals( method.getReturnType().toString() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the method returning a {@link RestPager} over the pages of a paginated method. The pages are requested with the callback
+     * variant of the method, so they go through the split point of the service if any.
+     */
+    private void buildPagesMethod( TypeSpec.Builder typeBuilder, RestServiceMethod method, TypeName returnTypeName, MethodSpec
+            methodWithCallbackSpec ) {
+        RestPagination pagination = method.getPagination();
+
+        MethodSpec.Builder pagesSpecBuilder = MethodSpec.methodBuilder( method.getMethod().getSimpleName() + "Pages" )
+                .addModifiers( Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL )
+                .returns( ParameterizedTypeName.get( ClassName.get( RestPager.class ), returnTypeName ) );
+
+        String pageSizeName = "pageSize";
+        StringBuilder callParamBuilder = new StringBuilder();
+        for ( VariableElement variable : method.getMethod().getParameters() ) {
+            if ( isAnnotatedWith( variable, Context.class ) ) {
+                continue;
+            }
+            if ( variable.equals( pagination.getOffsetParam() ) ) {
+                callParamBuilder.append( isBoxedLong( variable ) ? "(long) _offset_" : "_offset_" );
+            } else if ( variable.equals( pagination.getLimitParam() ) ) {
+                callParamBuilder.append( isBoxedLong( variable ) ? "(long) _limit_" : "_limit_" );
+            } else if ( variable.equals( pagination.getCursorParam() ) ) {
+                callParamBuilder.append( "_cursor_" );
+            } else {
+                pagesSpecBuilder.addParameter( ParameterSpec.builder( ClassName.get( variable.asType() ), variable.getSimpleName()
+                        .toString(), Modifier.FINAL ).build() );
+                callParamBuilder.append( variable.getSimpleName() );
+                if ( variable.getSimpleName().contentEquals( pageSizeName ) ) {
+                    pageSizeName = "_pageSize_";
+                }
+            }
+            callParamBuilder.append( ", " );
+        }
+        callParamBuilder.append( "_callback_" );
+
+        MethodSpec.Builder pageSpecBuilder = MethodSpec.methodBuilder( "page" )
+                .addAnnotation( Override.class )
+                .addModifiers( Modifier.PUBLIC )
+                .returns( Request.class );
+        Class<?> pagesClass;
+        if ( pagination.isCursor() ) {
+            pagesClass = RestPager.CursorPages.class;
+            pageSpecBuilder.addParameter( String.class, "_cursor_" );
+        } else {
+            pagesClass = RestPager.OffsetPages.class;
+            pageSpecBuilder.addParameter( int.class, "_offset_" ).addParameter( int.class, "_limit_" );
+        }
+        pageSpecBuilder.addParameter( ParameterizedTypeName.get( ClassName.get( RestCallback.class ), returnTypeName ), "_callback_" )
+                .addStatement( "return $N($L)", methodWithCallbackSpec, callParamBuilder );
+
+        TypeSpec pages = TypeSpec.anonymousClassBuilder( "" )
+                .addSuperinterface( ParameterizedTypeName.get( ClassName.get( pagesClass ), returnTypeName ) )
+                .addMethod( pageSpecBuilder.build() )
+                .build();
+
+        if ( pagination.isCursor() ) {
+            pagesSpecBuilder.addStatement( "return $T.cursor($S, $L)", RestPager.class, pagination.getNextCursorHeader(), pages );
+        } else {
+            pagesSpecBuilder.addParameter( ParameterSpec.builder( int.class, pageSizeName, Modifier.FINAL ).build() )
+                    .addStatement( "return $T.offset($L, $L)", RestPager.class, pageSizeName, pages );
+        }
+        typeBuilder.addMethod( pagesSpecBuilder.build() );
+    }
+
+    /**
+     * @return true if the parameter is a {@link Long}, an int argument has to be cast to be boxed
+     */
+    private boolean isBoxedLong( VariableElement variable ) {
+        return Long.class.getName().equals( variable.asType().toString() );
+    }
+
+    /**
+     * Sends the request once the code of the split point of the service is loaded.
+     *
+     * @param methodBuilder the method sending the request
+     * @param restService the rest service
+     * @param send the code sending the request
+     * @param notifyCallback true to notify <code>_callback_</code> if the code cannot be loaded
+     */
+    private void addSplitPoint( MethodSpec.Builder methodBuilder, RestService restService, CodeBlock send, boolean notifyCallback ) {
+        methodBuilder.addStatement( "final $T _request_ = new $T()", DeferredRequest.class, DeferredRequest.class );
+        MethodSpec.Builder onFailure = MethodSpec.methodBuilder( "onFailure" )
+                .addAnnotation( Override.class )
+                .addModifiers( Modifier.PUBLIC )
+                .addParameter( Throwable.class, "reason" );
+        if ( notifyCallback ) {
+            onFailure.beginControlFlow( "if (!_request_.fail())" )
+                    .addStatement( "return" )
+                    .endControlFlow()
+                    .beginControlFlow( "if (null == _callback_)" )
+                    .addStatement( "throw new $T(reason)", RestException.class )
+                    .endControlFlow()
+                    .addStatement( "_callback_.onFailure(reason)" );
+        } else {
+            onFailure.addStatement( "_request_.fail()" );
+        }
+        TypeSpec runAsyncCallback = TypeSpec.anonymousClassBuilder( "" )
+                .addSuperinterface( RunAsyncCallback.class )
+                .addMethod( onFailure.build() )
+                .addMethod( MethodSpec.methodBuilder( "onSuccess" )
+                        .addAnnotation( Override.class )
+                        .addModifiers( Modifier.PUBLIC )
+                        .beginControlFlow( "if (!_request_.isCancelled())" )
+                        .addStatement( "_request_.start($L)", send )
+                        .endControlFlow()
+                        .build() )
+                .build();
+        methodBuilder.addStatement( "$T.runAsync($T.class, $L)", GWT.class, ClassName.get( restService.getPackageName(), restService
+                .getBuilderSimpleClassName() ), runAsyncCallback );
+        methodBuilder.addStatement( "return _request_" );
     }
 
     private boolean isAnnotatedWith( Element element, Class<? extends Annotation> clazz ) {
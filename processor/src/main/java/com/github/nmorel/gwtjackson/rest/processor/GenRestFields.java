@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a REST method with this annotation to only ask the listed properties of its response. A nested property is given by its
+ * path, like <code>address.city</code>.
+ * <p>On the server side, annotate the method with {@link com.github.nmorel.gwtjackson.rest.server.SparseFieldset} so the
+ * {@link com.github.nmorel.gwtjackson.rest.server.SparseFieldsetInterceptor} trims its responses.</p>
+ *
+ * @see com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#fields(String...)
+ */
+@Target( ElementType.METHOD )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestFields {
+
+    /**
+     * @return the names of the properties
+     */
+    String[] value();
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a GET method with this annotation to generate a {@link com.github.nmorel.gwtjackson.rest.api.RestPager} iterating over
+ * its pages. Without this annotation, a GET method is paginated when it has the query parameters <code>offset</code> and
+ * <code>limit</code> and returns a collection or an array, or when it has the query parameter <code>cursor</code>.
+ * <p>Set either {@link #offset()} and {@link #limit()} or {@link #cursor()}.</p>
+ */
+@Target( ElementType.METHOD )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestPaginated {
+
+    /**
+     * @return the name of the query parameter containing the offset of the first item of the page
+     */
+    String offset() default "";
+
+    /**
+     * @return the name of the query parameter containing the number of items per page
+     */
+    String limit() default "";
+
+    /**
+     * @return the name of the query parameter containing the cursor of the page
+     */
+    String cursor() default "";
+
+    /**
+     * @return the response header containing the cursor of the next page, absent on the last page
+     */
+    String nextCursorHeader() default "X-Next-Cursor";
+
+}
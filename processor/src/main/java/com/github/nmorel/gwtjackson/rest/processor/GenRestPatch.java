@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a PUT method with this annotation to send its body as a JSON Patch computed against the snapshot of the resource. The
+ * snapshot is taken by the GET method of the service with the same path and returning the type of the body.
+ * <p>The service must also declare a method with the same path answering the PATCH requests, annotated with
+ * {@link com.github.nmorel.gwtjackson.rest.server.PATCH} for example.</p>
+ *
+ * @see com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#patch()
+ */
+@Target( ElementType.METHOD )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestPatch {
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a REST service or GET method with this annotation to persist its responses in the
+ * {@link com.github.nmorel.gwtjackson.rest.api.IndexedDbResponseCache}. The annotation on a method overrides the one on its service.
+ * <p>A method paginated by cursor cannot be annotated : only the body and the ETag of a response are persisted, not the header
+ * holding the cursor of the next page. The annotation on its service does not apply to it.</p>
+ *
+ * @see com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#persistentCachePolicy(int, int)
+ */
+@Target( {ElementType.TYPE, ElementType.METHOD} )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestPersistentCache {
+
+    /**
+     * @return time in seconds a persisted response is fresh
+     */
+    int ttl();
+
+    /**
+     * @return time in seconds a stale response can still be used while it is revalidated in the background
+     */
+    int staleWhileRevalidate() default 0;
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a REST service with this annotation to load the code of its generated builder, including the mappers, behind a
+ * <code>GWT.runAsync</code> split point. The methods taking a callback load the fragment on the first call then send the request.
+ * <p>Calling the methods returning a {@link com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder} from the initial code moves the
+ * mappers back into the initial fragment.</p>
+ */
+@Target( ElementType.TYPE )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestSplitPoint {
+}
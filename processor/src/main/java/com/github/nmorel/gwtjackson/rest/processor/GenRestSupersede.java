@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a REST method with this annotation to supersede its in-flight request when a new one is sent with the same key, like a
+ * search box firing a request on each keystroke. The previous request is cancelled and its callback is never called.
+ *
+ * @see com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder#supersede(String)
+ */
+@Target( ElementType.METHOD )
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+public @interface GenRestSupersede {
+
+    /**
+     * @return the key shared by the requests superseding each other. By default, the requests of the method supersede each other.
+     */
+    String value() default "";
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.ws.rs.core.Context;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder;
+import com.github.nmorel.gwtjackson.rest.api.RestStatusException;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+/**
+ * Generates a client of a REST service for the JVM. The client sends the requests with <code>java.net.http.HttpClient</code> and
+ * (de)serializes the bodies with jackson-databind so the generated code requires Java 11.
+ * <p>Each method is generated twice : <code>xxxAsync</code> returns a <code>CompletableFuture</code> and <code>xxx</code> blocks the
+ * calling thread, which is the natural choice on a virtual thread.</p>
+ */
+public class JvmClientGenerator {
+
+    private static final ClassName HTTP_CLIENT = ClassName.get( "java.net.http", "HttpClient" );
+
+    private static final ClassName HTTP_REQUEST = ClassName.get( "java.net.http", "HttpRequest" );
+
+    private static final ClassName HTTP_REQUEST_BUILDER = ClassName.get( "java.net.http", "HttpRequest", "Builder" );
+
+    private static final ClassName BODY_PUBLISHERS = ClassName.get( "java.net.http", "HttpRequest", "BodyPublishers" );
+
+    private static final ClassName HTTP_RESPONSE = ClassName.get( "java.net.http", "HttpResponse" );
+
+    private static final ClassName BODY_HANDLERS = ClassName.get( "java.net.http", "HttpResponse", "BodyHandlers" );
+
+    private static final ClassName URI = ClassName.get( "java.net", "URI" );
+
+    private static final ClassName COMPLETABLE_FUTURE = ClassName.get( "java.util.concurrent", "CompletableFuture" );
+
+    private static final ClassName UNCHECKED_IO_EXCEPTION = ClassName.get( "java.io", "UncheckedIOException" );
+
+    private static final ClassName STANDARD_CHARSETS = ClassName.get( "java.nio.charset", "StandardCharsets" );
+
+    private static final ClassName OBJECT_MAPPER = ClassName.get( "com.fasterxml.jackson.databind", "ObjectMapper" );
+
+    private static final ClassName OBJECT_READER = ClassName.get( "com.fasterxml.jackson.databind", "ObjectReader" );
+
+    private static final ClassName OBJECT_WRITER = ClassName.get( "com.fasterxml.jackson.databind", "ObjectWriter" );
+
+    private static final ClassName MAPPING_ITERATOR = ClassName.get( "com.fasterxml.jackson.databind", "MappingIterator" );
+
+    private static final ClassName TYPE_REFERENCE = ClassName.get( "com.fasterxml.jackson.core.type", "TypeReference" );
+
+    /**
+     * Replaces <code>nextControlFlow</code> which does not pass its arguments correctly in this version of JavaPoet
+     */
+    private static final String CATCH_IO_EXCEPTION = "$<} catch ($T e) {\n$>";
+
+    private static final TypeName BYTES_RESPONSE = ParameterizedTypeName.get( HTTP_RESPONSE, TypeName.get( byte[].class ) );
+
+    private final ProcessingEnvironment processingEnv;
+
+    public JvmClientGenerator( ProcessingEnvironment processingEnv ) {
+        this.processingEnv = processingEnv;
+    }
+
+    /**
+     * Generate the JVM client of the rest service
+     *
+     * @param restService The rest service
+     * @param fingerprint The fingerprint of the rest service
+     */
+    public TypeSpec generate( RestService restService, String fingerprint ) {
+        TypeSpec.Builder typeBuilder = TypeSpec.classBuilder( restService.getClientSimpleClassName() )
+                .addModifiers( Modifier.PUBLIC, Modifier.FINAL )
+                .addJavadoc( "Generated JVM client for {@link $L}.\n", restService.getTypeElement().getQualifiedName() )
+                .addJavadoc( "<p>Fingerprint: $L</p>\n", fingerprint );
+
+        // the defaults are created by the JVM when the holder is first used, without any lock on the following calls
+        FieldSpec defaultHttpClient = FieldSpec.builder( HTTP_CLIENT, "HTTP_CLIENT", Modifier.STATIC, Modifier.FINAL )
+                .initializer( "$T.newHttpClient()", HTTP_CLIENT )
+                .build();
+        FieldSpec defaultObjectMapper = FieldSpec.builder( OBJECT_MAPPER, "OBJECT_MAPPER", Modifier.STATIC, Modifier.FINAL )
+                .initializer( "new $T()", OBJECT_MAPPER )
+                .build();
+        TypeSpec defaults = TypeSpec.classBuilder( "Defaults" )
+                .addModifiers( Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL )
+                .addJavadoc( "Holder of the default client and mapper, initialized on first use.\n" )
+                .addField( defaultHttpClient )
+                .addField( defaultObjectMapper )
+                .build();
+        typeBuilder.addType( defaults );
+        typeBuilder.addField( HTTP_CLIENT, "httpClient", Modifier.PRIVATE, Modifier.FINAL );
+        typeBuilder.addField( String.class, "baseUrl", Modifier.PRIVATE, Modifier.FINAL );
+
+        typeBuilder.addMethod( MethodSpec.constructorBuilder()
+                .addModifiers( Modifier.PUBLIC )
+                .addJavadoc( "Creates a client sharing the default {@link $T} of this class.\n", HTTP_CLIENT )
+                .addJavadoc( "\n@param baseUrl the url of the application, the paths of the service are resolved against it\n" )
+                .addParameter( String.class, "baseUrl" )
+                .addStatement( "this(baseUrl, $N.$N, $N.$N)", defaults, defaultHttpClient, defaults, defaultObjectMapper )
+                .build() );
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                .addModifiers( Modifier.PUBLIC )
+                .addJavadoc( "Creates a client using the given {@link $T}. Share the same instance between the clients to share its "
+                        + "connection pool.\n", HTTP_CLIENT )
+                .addJavadoc( "\n@param baseUrl the url of the application, the paths of the service are resolved against it\n" )
+                .addJavadoc( "@param httpClient the client sending the requests\n" )
+                .addJavadoc( "@param objectMapper the mapper creating the readers and writers of the bodies\n" )
+                .addParameter( String.class, "baseUrl" )
+                .addParameter( HTTP_CLIENT, "httpClient" )
+                .addParameter( OBJECT_MAPPER, "objectMapper" )
+                .addStatement( "this.baseUrl = baseUrl.endsWith(\"/\") ? baseUrl : baseUrl + '/'" )
+                .addStatement( "this.httpClient = httpClient" );
+
+        // one reader and one writer per type, created once since they are immutable and thread-safe
+        Map<String, FieldSpec> readers = new LinkedHashMap<String, FieldSpec>();
+        Map<String, FieldSpec> writers = new LinkedHashMap<String, FieldSpec>();
+        for ( RestServiceMethod method : restService.getMethods() ) {
+            if ( null != method.getReturnType() && !readers.containsKey( method.getReturnType().toString() ) ) {
+                FieldSpec reader = FieldSpec.builder( OBJECT_READER, "reader" + (readers.size() + 1), Modifier.PRIVATE, Modifier.FINAL )
+                        .build();
+                typeBuilder.addField( reader );
+                constructor.addStatement( "this.$N = objectMapper.readerFor($L)", reader, typeLiteral( method.getReturnType() ) );
+                readers.put( method.getReturnType().toString(), reader );
+            }
+            VariableElement bodyVariable = method.getBodyParamVariable();
+            if ( null != bodyVariable && !writers.containsKey( bodyVariable.asType().toString() ) ) {
+                FieldSpec writer = FieldSpec.builder( OBJECT_WRITER, "writer" + (writers.size() + 1), Modifier.PRIVATE, Modifier.FINAL )
+                        .build();
+                typeBuilder.addField( writer );
+                constructor.addStatement( "this.$N = objectMapper.writerFor($L)", writer, typeLiteral( bodyVariable.asType() ) );
+                writers.put( bodyVariable.asType().toString(), writer );
+            }
+        }
+        typeBuilder.addMethod( constructor.build() );
+
+        Helpers helpers = new Helpers( typeBuilder );
+        int i = 1;
+        for ( RestServiceMethod method : restService.getMethods() ) {
+            buildMethod( typeBuilder, helpers, readers, writers, method, i++ );
+        }
+
+        return typeBuilder.build();
+    }
+
+    private void buildMethod( TypeSpec.Builder typeBuilder, Helpers helpers, Map<String, FieldSpec> readers, Map<String,
+            FieldSpec> writers, RestServiceMethod method, int index ) {
+        String methodName = method.getMethod().getSimpleName().toString();
+
+        TypeMirror returnType = method.getReturnType();
+        FieldSpec reader = null == returnType ? null : readers.get( returnType.toString() );
+        TypeName resultTypeName;
+        if ( null == reader ) {
+            resultTypeName = ClassName.get( Void.class );
+        } else if ( method.isStreaming() ) {
+            resultTypeName = ParameterizedTypeName.get( ClassName.get( List.class ), boxed( returnType ) );
+        } else {
+            resultTypeName = boxed( returnType );
+        }
+
+        VariableElement bodyVariable = method.getBodyParamVariable();
+
+        List<ParameterSpec> parameters = new ArrayList<ParameterSpec>();
+        StringBuilder callParams = new StringBuilder();
+        for ( VariableElement variable : method.getMethod().getParameters() ) {
+            if ( null != variable.getAnnotation( Context.class ) ) {
+                continue;
+            }
+            parameters.add( ParameterSpec.builder( TypeName.get( variable.asType() ), variable.getSimpleName().toString() ).build() );
+            if ( callParams.length() > 0 ) {
+                callParams.append( ", " );
+            }
+            callParams.append( variable.getSimpleName() );
+        }
+
+        // builds the request, shared by the asynchronous and blocking variants
+        MethodSpec.Builder requestBuilder = addParameters( MethodSpec.methodBuilder( "request" + index ), parameters )
+                .addModifiers( Modifier.PRIVATE )
+                .returns( HTTP_REQUEST )
+                .addCode( new UrlExpansion( processingEnv, true ).build( method ) );
+        if ( null != method.getFields() && null != reader ) {
+            // like RestRequestBuilder#fields
+            StringBuilder fields = new StringBuilder();
+            for ( String field : method.getFields() ) {
+                if ( fields.length() > 0 ) {
+                    fields.append( ',' );
+                }
+                fields.append( field );
+            }
+            requestBuilder.addStatement( "_url_.append(_url_.indexOf(\"?\") < 0 ? '?' : '&').append($S)", RestRequestBuilder.FIELDS_PARAM
+                    + "=" + UrlExpansion.encodeQueryString( fields.toString() ) );
+        }
+        requestBuilder.addStatement( "$T _request_ = $T.newBuilder($T.create(_url_.toString()))", HTTP_REQUEST_BUILDER, HTTP_REQUEST, URI );
+        String accept = null != method.getProduces() ? method.getProduces() : method.isStreaming() ? "application/x-ndjson" :
+                "application/json";
+        requestBuilder.addStatement( "_request_.header($S, $S)", "Accept", accept );
+        String httpMethod = method.getHttpMethodAnnotation().getAnnotationType().asElement().getSimpleName().toString();
+        if ( null == bodyVariable ) {
+            requestBuilder.addStatement( "return _request_.method($S, $T.noBody()).build()", httpMethod, BODY_PUBLISHERS );
+        } else {
+            FieldSpec writer = writers.get( bodyVariable.asType().toString() );
+            requestBuilder.addException( IOException.class )
+                    .beginControlFlow( "if (null == $L)", bodyVariable.getSimpleName() )
+                    .addStatement( "return _request_.method($S, $T.noBody()).build()", httpMethod, BODY_PUBLISHERS )
+                    .endControlFlow()
+                    .addStatement( "_request_.header($S, $S)", "Content-Type", null == method.getConsumes() ? "application/json; " +
+                            "charset=utf-8" : method.getConsumes() )
+                    .addStatement( "return _request_.method($S, $T.ofByteArray($N.writeValueAsBytes($L))).build()", httpMethod,
+                            BODY_PUBLISHERS, writer, bodyVariable.getSimpleName() );
+        }
+        MethodSpec request = requestBuilder.build();
+        typeBuilder.addMethod( request );
+
+        MethodSpec read = null;
+        MethodSpec readUnchecked = null;
+        if ( null == reader ) {
+            read = helpers.getCheckStatus();
+        } else if ( method.isStreaming() ) {
+            read = helpers.getReadLines();
+            readUnchecked = helpers.getReadLinesUnchecked();
+        } else {
+            read = helpers.getRead();
+            readUnchecked = helpers.getReadUnchecked();
+        }
+
+        // asynchronous variant
+        MethodSpec.Builder async = addParameters( MethodSpec.methodBuilder( methodName + "Async" ), parameters )
+                .addModifiers( Modifier.PUBLIC )
+                .returns( ParameterizedTypeName.get( COMPLETABLE_FUTURE, resultTypeName ) );
+        if ( null == bodyVariable ) {
+            async.addStatement( "$T _request_ = $N($L)", HTTP_REQUEST, request, callParams );
+        } else {
+            async.addStatement( "$T _request_", HTTP_REQUEST )
+                    .beginControlFlow( "try" )
+                    .addStatement( "_request_ = $N($L)", request, callParams )
+                    .addCode( CATCH_IO_EXCEPTION, IOException.class )
+                    .addStatement( "$T<$T> _future_ = new $T<>()", COMPLETABLE_FUTURE, resultTypeName, COMPLETABLE_FUTURE )
+                    .addStatement( "_future_.completeExceptionally(e)" )
+                    .addStatement( "return _future_" )
+                    .endControlFlow();
+        }
+        if ( null == reader ) {
+            async.addStatement( "return httpClient.sendAsync(_request_, $T.ofByteArray()).thenAccept(_response_ -> $N(_response_))",
+                    BODY_HANDLERS, read );
+        } else {
+            async.addStatement( "return httpClient.sendAsync(_request_, $T.ofByteArray()).thenApply(_response_ -> $N(_response_, "
+                    + "$N))", BODY_HANDLERS, readUnchecked, reader );
+        }
+        typeBuilder.addMethod( async.build() );
+
+        // blocking variant
+        MethodSpec.Builder blocking = addParameters( MethodSpec.methodBuilder( methodName ), parameters )
+                .addModifiers( Modifier.PUBLIC )
+                .addException( IOException.class )
+                .addException( InterruptedException.class );
+        if ( null == reader ) {
+            blocking.addStatement( "$N(httpClient.send($N($L), $T.ofByteArray()))", read, request, callParams, BODY_HANDLERS );
+        } else {
+            blocking.returns( resultTypeName )
+                    .addStatement( "return $N(httpClient.send($N($L), $T.ofByteArray()), $N)", read, request, callParams,
+                            BODY_HANDLERS, reader );
+        }
+        typeBuilder.addMethod( blocking.build() );
+    }
+
+    private MethodSpec.Builder addParameters( MethodSpec.Builder builder, List<ParameterSpec> parameters ) {
+        for ( ParameterSpec parameter : parameters ) {
+            builder.addParameter( parameter );
+        }
+        return builder;
+    }
+
+    /**
+     * @return the argument given to <code>readerFor</code> and <code>writerFor</code>
+     */
+    private CodeBlock typeLiteral( TypeMirror type ) {
+        TypeName typeName = TypeName.get( type );
+        if ( typeName instanceof ParameterizedTypeName ) {
+            return CodeBlock.builder().add( "new $T() {}", ParameterizedTypeName.get( TYPE_REFERENCE, typeName ) ).build();
+        } else {
+            return CodeBlock.builder().add( "$T.class", typeName ).build();
+        }
+    }
+
+    private TypeName boxed( TypeMirror type ) {
+        if ( type.getKind().isPrimitive() ) {
+            return TypeName.get( processingEnv.getTypeUtils().boxedClass( (PrimitiveType) type ).asType() );
+        }
+        return TypeName.get( type );
+    }
+
+    /**
+     * Helpers reading the responses, only added to the client when a method uses them.
+     */
+    private static class Helpers {
+
+        private final TypeSpec.Builder typeBuilder;
+
+        private MethodSpec checkStatus;
+
+        private MethodSpec read;
+
+        private MethodSpec readUnchecked;
+
+        private MethodSpec readLines;
+
+        private MethodSpec readLinesUnchecked;
+
+        private Helpers( TypeSpec.Builder typeBuilder ) {
+            this.typeBuilder = typeBuilder;
+        }
+
+        private MethodSpec getCheckStatus() {
+            if ( null == checkStatus ) {
+                checkStatus = MethodSpec.methodBuilder( "checkStatus" )
+                        .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                        .addParameter( BYTES_RESPONSE, "response" )
+                        .beginControlFlow( "if (response.statusCode() < 200 || response.statusCode() >= 300)" )
+                        .addStatement( "throw new $T(response.statusCode(), new $T(response.body(), $T.UTF_8))",
+                                RestStatusException.class, String.class, STANDARD_CHARSETS )
+                        .endControlFlow()
+                        .build();
+                typeBuilder.addMethod( checkStatus );
+            }
+            return checkStatus;
+        }
+
+        private MethodSpec getRead() {
+            if ( null == read ) {
+                read = MethodSpec.methodBuilder( "read" )
+                        .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                        .addTypeVariable( TypeVariableName.get( "T" ) )
+                        .returns( TypeVariableName.get( "T" ) )
+                        .addParameter( BYTES_RESPONSE, "response" )
+                        .addParameter( OBJECT_READER, "reader" )
+                        .addException( IOException.class )
+                        .addStatement( "$N(response)", getCheckStatus() )
+                        .beginControlFlow( "if (response.body().length == 0)" )
+                        .addStatement( "return null" )
+                        .endControlFlow()
+                        .addStatement( "return reader.readValue(response.body())" )
+                        .build();
+                typeBuilder.addMethod( read );
+            }
+            return read;
+        }
+
+        private MethodSpec getReadUnchecked() {
+            if ( null == readUnchecked ) {
+                readUnchecked = unchecked( "readUnchecked", TypeVariableName.get( "T" ), getRead() );
+            }
+            return readUnchecked;
+        }
+
+        private MethodSpec getReadLines() {
+            if ( null == readLines ) {
+                TypeName listType = ParameterizedTypeName.get( ClassName.get( List.class ), TypeVariableName.get( "T" ) );
+                readLines = MethodSpec.methodBuilder( "readLines" )
+                        .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                        .addTypeVariable( TypeVariableName.get( "T" ) )
+                        .returns( listType )
+                        .addParameter( BYTES_RESPONSE, "response" )
+                        .addParameter( OBJECT_READER, "reader" )
+                        .addException( IOException.class )
+                        .addStatement( "$N(response)", getCheckStatus() )
+                        .addStatement( "$T items = new $T<>()", listType, ArrayList.class )
+                        .beginControlFlow( "try ($T<T> iterator = reader.readValues(response.body()))", MAPPING_ITERATOR )
+                        .beginControlFlow( "while (iterator.hasNextValue())" )
+                        .addStatement( "items.add(iterator.nextValue())" )
+                        .endControlFlow()
+                        .endControlFlow()
+                        .addStatement( "return items" )
+                        .build();
+                typeBuilder.addMethod( readLines );
+            }
+            return readLines;
+        }
+
+        private MethodSpec getReadLinesUnchecked() {
+            if ( null == readLinesUnchecked ) {
+                readLinesUnchecked = unchecked( "readLinesUnchecked", ParameterizedTypeName.get( ClassName.get( List.class ),
+                        TypeVariableName.get( "T" ) ), getReadLines() );
+            }
+            return readLinesUnchecked;
+        }
+
+        /**
+         * The completion stages cannot throw checked exceptions so the asynchronous variants wrap them
+         */
+        private MethodSpec unchecked( String name, TypeName returnType, MethodSpec delegate ) {
+            MethodSpec method = MethodSpec.methodBuilder( name )
+                    .addModifiers( Modifier.PRIVATE, Modifier.STATIC )
+                    .addTypeVariable( TypeVariableName.get( "T" ) )
+                    .returns( returnType )
+                    .addParameter( BYTES_RESPONSE, "response" )
+                    .addParameter( OBJECT_READER, "reader" )
+                    .beginControlFlow( "try" )
+                    .addStatement( "return $N(response, reader)", delegate )
+                    .addCode( CATCH_IO_EXCEPTION, IOException.class )
+                    .addStatement( "throw new $T(e)", UNCHECKED_IO_EXCEPTION )
+                    .endControlFlow()
+                    .build();
+            typeBuilder.addMethod( method );
+            return method;
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.github.nmorel.gwtjackson.rest.processor;
 
+import javax.annotation.processing.Messager;
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -27,19 +30,97 @@ public class Options {
 
     private static final String PACKAGE_OPTION = "package";
 
+    private static final String MAPPER_REGISTRY_OPTION = "mapperRegistry";
+
+    private static final String SPECIALIZED_ENDPOINTS_OPTION = "specializedEndpoints";
+
+    private static final String OUTPUT_OPTION = "output";
+
     public static Set<String> getOptionsName() {
         Set<String> options = new LinkedHashSet<String>();
         options.add( PACKAGE_OPTION );
+        options.add( MAPPER_REGISTRY_OPTION );
+        options.add( SPECIALIZED_ENDPOINTS_OPTION );
+        options.add( OUTPUT_OPTION );
         return options;
     }
 
     private final String packageName;
 
-    public Options( Map<String, String> options ) {
+    private final String mapperRegistry;
+
+    private final boolean specializedEndpoints;
+
+    private final boolean gwtOutput;
+
+    private final boolean jvmOutput;
+
+    /**
+     * @param options the options given to the processor
+     * @param messager reports the invalid values, replaced by the default ones
+     */
+    public Options( Map<String, String> options, Messager messager ) {
         this.packageName = options.get( PACKAGE_OPTION );
+
+        String mapperRegistry = options.get( MAPPER_REGISTRY_OPTION );
+        if ( null != mapperRegistry && !SourceVersion.isName( mapperRegistry ) ) {
+            messager.printMessage( Diagnostic.Kind.ERROR, "Invalid value for the option " + MAPPER_REGISTRY_OPTION + " : " +
+                    mapperRegistry + ". Expected the qualified name of a class. Each builder declares its own mappers." );
+            mapperRegistry = null;
+        }
+        this.mapperRegistry = mapperRegistry;
+
+        this.specializedEndpoints = Boolean.parseBoolean( options.get( SPECIALIZED_ENDPOINTS_OPTION ) );
+
+        String output = options.get( OUTPUT_OPTION );
+        if ( null == output || "gwt".equals( output ) ) {
+            this.gwtOutput = true;
+            this.jvmOutput = false;
+        } else if ( "jvm".equals( output ) ) {
+            this.gwtOutput = false;
+            this.jvmOutput = true;
+        } else if ( "both".equals( output ) ) {
+            this.gwtOutput = true;
+            this.jvmOutput = true;
+        } else {
+            messager.printMessage( Diagnostic.Kind.ERROR, "Unknown value for the option " + OUTPUT_OPTION + " : " + output + ". " +
+                    "Expected gwt, jvm or both. The GWT builders are generated." );
+            this.gwtOutput = true;
+            this.jvmOutput = false;
+        }
     }
 
     public String getPackageName() {
         return packageName;
     }
+
+    /**
+     * @return the qualified name of the class registering the mappers shared by all the builders or null if each builder declares its
+     * own mappers
+     */
+    public String getMapperRegistry() {
+        return mapperRegistry;
+    }
+
+    /**
+     * @return true if each generated method expands its url with straight-line code instead of setting the parameters on the
+     * {@link com.github.nmorel.gwtjackson.rest.api.RestRequestBuilder}
+     */
+    public boolean isSpecializedEndpoints() {
+        return specializedEndpoints;
+    }
+
+    /**
+     * @return true if the GWT builders are generated
+     */
+    public boolean isGwtOutput() {
+        return gwtOutput;
+    }
+
+    /**
+     * @return true if the JVM clients based on <code>java.net.http</code> are generated
+     */
+    public boolean isJvmOutput() {
+        return jvmOutput;
+    }
 }
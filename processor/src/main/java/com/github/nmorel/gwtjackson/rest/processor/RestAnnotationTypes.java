@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+
+/**
+ * Annotation types resolved once per round so the annotations of the methods are compared by element instead of by name.
+ */
+public class RestAnnotationTypes {
+
+    private final TypeElement[] httpMethods;
+
+    private final TypeElement ignore;
+
+    public RestAnnotationTypes( Elements elements ) {
+        httpMethods = new TypeElement[]{elements.getTypeElement( GET.class.getCanonicalName() ), elements.getTypeElement( POST.class
+                .getCanonicalName() ), elements.getTypeElement( PUT.class.getCanonicalName() ), elements.getTypeElement( DELETE.class
+                .getCanonicalName() ), elements.getTypeElement( HEAD.class.getCanonicalName() )};
+        ignore = elements.getTypeElement( GenRestIgnore.class.getCanonicalName() );
+    }
+
+    /**
+     * @param annotation the annotation to check
+     *
+     * @return true if the annotation is a HTTP method annotation like {@link GET}
+     */
+    public boolean isHttpMethod( AnnotationMirror annotation ) {
+        Element type = annotation.getAnnotationType().asElement();
+        for ( TypeElement httpMethod : httpMethods ) {
+            if ( type.equals( httpMethod ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param annotation the annotation to check
+     *
+     * @return true if the annotation is annotated with {@link HttpMethod} <code>PATCH</code>, like
+     * {@link com.github.nmorel.gwtjackson.rest.server.PATCH}
+     */
+    public boolean isPatchMethod( AnnotationMirror annotation ) {
+        HttpMethod httpMethod = annotation.getAnnotationType().asElement().getAnnotation( HttpMethod.class );
+        return null != httpMethod && "PATCH".equals( httpMethod.value() );
+    }
+
+    /**
+     * @param annotation the annotation to check
+     *
+     * @return true if the annotation is {@link GenRestIgnore}
+     */
+    public boolean isIgnore( AnnotationMirror annotation ) {
+        return annotation.getAnnotationType().asElement().equals( ignore );
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import javax.lang.model.element.VariableElement;
+
+/**
+ * Describes how the pages of a paginated method are addressed, either by an offset and a limit or by a cursor.
+ *
+ * @see GenRestPaginated
+ */
+public class RestPagination {
+
+    private final VariableElement offsetParam;
+
+    private final VariableElement limitParam;
+
+    private final VariableElement cursorParam;
+
+    private final String nextCursorHeader;
+
+    private RestPagination( VariableElement offsetParam, VariableElement limitParam, VariableElement cursorParam, String
+            nextCursorHeader ) {
+        this.offsetParam = offsetParam;
+        this.limitParam = limitParam;
+        this.cursorParam = cursorParam;
+        this.nextCursorHeader = nextCursorHeader;
+    }
+
+    public static RestPagination offset( VariableElement offsetParam, VariableElement limitParam ) {
+        return new RestPagination( offsetParam, limitParam, null, null );
+    }
+
+    public static RestPagination cursor( VariableElement cursorParam, String nextCursorHeader ) {
+        return new RestPagination( null, null, cursorParam, nextCursorHeader );
+    }
+
+    public boolean isCursor() {
+        return null != cursorParam;
+    }
+
+    public VariableElement getOffsetParam() {
+        return offsetParam;
+    }
+
+    public VariableElement getLimitParam() {
+        return limitParam;
+    }
+
+    public VariableElement getCursorParam() {
+        return cursorParam;
+    }
+
+    public String getNextCursorHeader() {
+        return nextCursorHeader;
+    }
+
+    @Override
+    public String toString() {
+        if ( isCursor() ) {
+            return "cursor " + cursorParam.getSimpleName() + " " + nextCursorHeader;
+        }
+        return "offset " + offsetParam.getSimpleName() + " " + limitParam.getSimpleName();
+    }
+}
@@ -22,32 +22,65 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.ws.rs.Consumes;
-import javax.ws.rs.DELETE;
-import javax.ws.rs.GET;
-import javax.ws.rs.HEAD;
-import javax.ws.rs.POST;
-import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.github.nmorel.gwtjackson.rest.api.RestStreamCallback;
 
 /**
  * @author Nicolas Morel
  */
 public class RestService {
 
+    // Regex taken from https://tools.ietf.org/html/rfc6838#section-4.2
+    private static final Pattern JSON_TYPE_PATTERN = Pattern.compile( "application/([a-z0-9!#$&-^_.]+\\+)?json" );
+
+    /**
+     * Media types declared by a {@link Consumes} or {@link Produces} annotation
+     */
+    private static final class MediaTypes {
+
+        private static final MediaTypes NONE = new MediaTypes( null );
+
+        /**
+         * First JSON media type or null if there is none
+         */
+        private final String json;
+
+        private final boolean streaming;
+
+        /**
+         * Whether the media types are compatible with the generated builders, meaning there is none or at least one JSON type
+         */
+        private final boolean supported;
+
+        private MediaTypes( String[] types ) {
+            this.json = getFirstJsonType( types );
+            this.streaming = isStreaming( types );
+            this.supported = null == types || types.length == 0 || null != json || streaming;
+        }
+    }
+
     private final TypeElement typeElement;
 
     private final String packageName;
@@ -62,9 +95,19 @@ public class RestService {
 
     private final Set<TypeMirror> bodyTypes = new LinkedHashSet<TypeMirror>();
 
-    public RestService( Options options, Element element ) {
+    private final RestAnnotationTypes annotationTypes;
+
+    private final boolean splitPoint;
+
+    /**
+     * Urls of the methods answering the PATCH requests, with the names of their path parameters removed
+     */
+    private final Set<String> patchUrls = new HashSet<String>();
+
+    public RestService( Options options, RestAnnotationTypes annotationTypes, Element element ) {
         // only types can be annotated with @GenRestService so it's safe to cast into TypeElement
         typeElement = (TypeElement) element;
+        this.annotationTypes = annotationTypes;
 
         if ( null == options.getPackageName() ) {
             Element enclosingElement = typeElement.getEnclosingElement();
@@ -79,28 +122,88 @@ public class RestService {
 
         builderClassName = typeElement.getSimpleName().toString() + "Builder";
 
+        splitPoint = null != typeElement.getAnnotation( GenRestSplitPoint.class );
+
         Path path = typeElement.getAnnotation( Path.class );
         String baseRestUrl = path.value();
         
+        GenRestPriority basePriority = typeElement.getAnnotation( GenRestPriority.class );
+        GenRestPersistentCache basePersistentCache = typeElement.getAnnotation( GenRestPersistentCache.class );
+        GenRestIntern baseIntern = typeElement.getAnnotation( GenRestIntern.class );
+
+        // the defaults of the type are shared by all its methods
         Consumes baseConsumes = typeElement.getAnnotation( Consumes.class );
+        MediaTypes baseConsumesTypes = null == baseConsumes ? MediaTypes.NONE : new MediaTypes( baseConsumes.value() );
         Produces baseProduces = typeElement.getAnnotation( Produces.class );
+        MediaTypes baseProducesTypes = null == baseProduces ? MediaTypes.NONE : new MediaTypes( baseProduces.value() );
+
+        for ( ExecutableElement method : ElementFilter.methodsIn( typeElement.getEnclosedElements() ) ) {
+            for ( AnnotationMirror annotation : method.getAnnotationMirrors() ) {
+                if ( annotationTypes.isPatchMethod( annotation ) ) {
+                    patchUrls.add( toPatchUrl( RestServiceMethod.resolveUrl( baseRestUrl, method ) ) );
+                }
+            }
+        }
 
         for ( ExecutableElement method : ElementFilter.methodsIn( typeElement.getEnclosedElements() ) ) {
-            parseMethod( baseRestUrl, baseConsumes, baseProduces, method );
+            parseMethod( baseRestUrl, baseConsumesTypes, baseProducesTypes, basePriority, basePersistentCache, baseIntern, method );
         }
     }
 
-    private void parseMethod( String baseRestUrl, Consumes baseConsumes, Produces baseProduces, ExecutableElement method ) {
-        AnnotationMirror httpMethodAnnotation = isRestMethod( method, baseConsumes, baseProduces );
+    private void parseMethod( String baseRestUrl, MediaTypes baseConsumes, MediaTypes baseProduces, GenRestPriority basePriority,
+                              GenRestPersistentCache basePersistentCache, GenRestIntern baseIntern, ExecutableElement method ) {
+        AnnotationMirror httpMethodAnnotation = isRestMethod( method );
         if ( null == httpMethodAnnotation ) {
             // not a rest method
             return;
         }
-        String consumes = getFirstJsonType( getConsumes( baseConsumes, method ) );
-        String produces = getFirstJsonType( getProduces( baseProduces, method ) );
+
+        MediaTypes consumesTypes = getConsumes( baseConsumes, method );
+        MediaTypes producesTypes = getProduces( baseProduces, method );
+        if ( !consumesTypes.supported || !producesTypes.supported ) {
+            // not a json method
+            return;
+        }
+
+        String consumes = consumesTypes.json;
+        String produces = producesTypes.json;
+        boolean streaming = null == produces && producesTypes.streaming;
+        if ( streaming ) {
+            produces = RestStreamCallback.CONTENT_TYPE;
+        }
+
+        GenRestPriority priority = method.getAnnotation( GenRestPriority.class );
+        if ( null == priority ) {
+            priority = basePriority;
+        }
+
+        GenRestPersistentCache persistentCache = method.getAnnotation( GenRestPersistentCache.class );
+        if ( null == persistentCache ) {
+            persistentCache = basePersistentCache;
+        }
+
+        GenRestIntern intern = method.getAnnotation( GenRestIntern.class );
+        if ( null == intern ) {
+            intern = baseIntern;
+        }
+
+        GenRestFields fields = method.getAnnotation( GenRestFields.class );
+
+        GenRestSupersede supersede = method.getAnnotation( GenRestSupersede.class );
+        String supersedeKey = null;
+        if ( null != supersede ) {
+            supersedeKey = supersede.value().isEmpty() ? typeElement.getQualifiedName() + "." + RestServiceMethod.endpointName( method )
+                    : supersede.value();
+        }
 
         TypeMirror returnType = null;
-        if ( TypeKind.VOID != method.getReturnType().getKind() ) {
+        if ( streaming ) {
+            returnType = getStreamElementType( method );
+            if ( null == returnType ) {
+                methodsInError.put( method, new MissingGenResponseClassTypeException( method ) );
+                return;
+            }
+        } else if ( TypeKind.VOID != method.getReturnType().getKind() ) {
             if ( method.getReturnType().toString().equals( Response.class.getName() ) ) {
                 GenResponseClassType ann = method.getAnnotation( GenResponseClassType.class );
                 if ( ann != null ) {
@@ -120,12 +223,29 @@ public class RestService {
 
         RestServiceMethod restServiceMethod;
         try {
-            restServiceMethod = new RestServiceMethod( method, baseRestUrl, httpMethodAnnotation, consumes, produces, returnType );
+            RestPagination pagination = null;
+            if ( !streaming && "GET".equals( httpMethodAnnotation.getAnnotationType().asElement().getSimpleName().toString() ) ) {
+                pagination = getPagination( method, returnType );
+            }
+            if ( null != pagination && pagination.isCursor() && null == method.getAnnotation( GenRestPersistentCache.class ) ) {
+                // the cursor of the next page is read in a header that is not persisted
+                persistentCache = null;
+            }
+            restServiceMethod = new RestServiceMethod( method, baseRestUrl, httpMethodAnnotation, consumes, produces, returnType,
+                    null == priority ? null : priority.value(), streaming, supersedeKey, persistentCache, pagination,
+                    intern, null == fields ? null : fields.value(), null != method.getAnnotation( GenRestPatch.class ) );
         } catch ( Exception e ) {
             methodsInError.put( method, e );
             return;
         }
 
+        if ( restServiceMethod.isPatch() && !patchUrls.contains( toPatchUrl( restServiceMethod.getUrl() ) ) ) {
+            // the server would answer 405 Method Not Allowed
+            methodsInError.put( method, new IllegalArgumentException( "The method " + method.getSimpleName() + " is sent as a JSON " +
+                    "Patch but the service has no PATCH method with the path " + restServiceMethod.getUrl() ) );
+            return;
+        }
+
         methods.add( restServiceMethod );
 
         if ( null != returnType ) {
@@ -138,75 +258,236 @@ public class RestService {
     }
 
     /**
-     * Check if the method is a REST method. If the method has a HTTP method annotation like {@link GET} and is not ignored with {@link
+     * @return the url with the names of the path parameters removed, like <code>documents/{}</code>
+     */
+    private static String toPatchUrl( String url ) {
+        return url.replaceAll( "\\{[^}]*\\}", "{}" );
+    }
+
+    /**
+     * Check if the method is a REST method. If the method has a HTTP method annotation like {@link javax.ws.rs.GET} and is not ignored with {@link
      * GenRestIgnore} then it's a REST method.
      *
      * @param method the method to check
      *
      * @return the HTTP method annotation found or null if the method is not a REST method or is ignored
      */
-    private AnnotationMirror isRestMethod( ExecutableElement method, Consumes baseConsumes, Produces baseProduces ) {
+    private AnnotationMirror isRestMethod( ExecutableElement method ) {
         AnnotationMirror httpMethod = null;
         for ( AnnotationMirror m : method.getAnnotationMirrors() ) {
-            if ( m.getAnnotationType().toString().equals( GenRestIgnore.class.getName() ) ) {
+            if ( annotationTypes.isIgnore( m ) ) {
                 return null;
             }
-
-            if ( m.getAnnotationType().toString().equals( GET.class.getName() ) ) {
-                httpMethod = m;
-            } else if ( m.getAnnotationType().toString().equals( POST.class.getName() ) ) {
-                httpMethod = m;
-            } else if ( m.getAnnotationType().toString().equals( PUT.class.getName() ) ) {
-                httpMethod = m;
-            } else if ( m.getAnnotationType().toString().equals( DELETE.class.getName() ) ) {
-                httpMethod = m;
-            } else if ( m.getAnnotationType().toString().equals( HEAD.class.getName() ) ) {
+            if ( annotationTypes.isHttpMethod( m ) ) {
                 httpMethod = m;
             }
         }
+        return httpMethod;
+    }
+
+    private static String getFirstJsonType( String[] types ) {
+        if ( types != null ) {
+            for ( String type : types ) {
+                if ( JSON_TYPE_PATTERN.matcher( type ).matches() ) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isStreaming( String[] types ) {
+        if ( types != null ) {
+            for ( String type : types ) {
+                if ( RestStreamCallback.CONTENT_TYPE.equals( type ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        String[] consumes = getConsumes( baseConsumes, method );
-        if( consumes != null && consumes.length > 0 && getFirstJsonType( consumes ) == null ) {
+    /**
+     * The type of the items of a streaming method is defined by {@link GenResponseClassType} or by the type argument of the return type
+     * like <code>List&lt;Item&gt;</code>.
+     *
+     * @param method the streaming method
+     *
+     * @return the type of the items or null if it cannot be determined
+     */
+    private TypeMirror getStreamElementType( ExecutableElement method ) {
+        GenResponseClassType ann = method.getAnnotation( GenResponseClassType.class );
+        if ( ann != null ) {
+            try {
+                ann.value();
+            } catch ( MirroredTypeException mte ) {
+                return mte.getTypeMirror();
+            }
             return null;
         }
-        String[] produces = getProduces( baseProduces, method );
-        if( produces != null && produces.length > 0 && getFirstJsonType( produces ) == null ) {
+        if ( TypeKind.DECLARED == method.getReturnType().getKind() ) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) method.getReturnType()).getTypeArguments();
+            if ( typeArguments.size() == 1 && TypeKind.DECLARED == typeArguments.get( 0 ).getKind() ) {
+                return typeArguments.get( 0 );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param method the GET method to check
+     * @param returnType the type returned by the method
+     *
+     * @return the pagination defined by {@link GenRestPaginated} or by the names of the query parameters, null if the method is not
+     * paginated
+     */
+    private RestPagination getPagination( ExecutableElement method, TypeMirror returnType ) {
+        GenRestPaginated paginated = method.getAnnotation( GenRestPaginated.class );
+        if ( null == paginated ) {
+            VariableElement offset = getQueryParam( method, "offset" );
+            VariableElement limit = getQueryParam( method, "limit" );
+            if ( isInteger( offset ) && isInteger( limit ) && isCollection( returnType ) ) {
+                return RestPagination.offset( offset, limit );
+            }
+            VariableElement cursor = getQueryParam( method, "cursor" );
+            if ( null != cursor && String.class.getName().equals( cursor.asType().toString() ) ) {
+                return RestPagination.cursor( cursor, "X-Next-Cursor" );
+            }
             return null;
         }
 
-        return httpMethod;
+        if ( !paginated.cursor().isEmpty() ) {
+            VariableElement cursor = getQueryParam( method, paginated.cursor() );
+            if ( null == cursor || !String.class.getName().equals( cursor.asType().toString() ) ) {
+                throw new IllegalArgumentException( "The cursor of the method " + method.getSimpleName() + " must be a String query " +
+                        "parameter named " + paginated.cursor() );
+            }
+            return RestPagination.cursor( cursor, paginated.nextCursorHeader() );
+        }
+
+        VariableElement offset = getQueryParam( method, paginated.offset() );
+        VariableElement limit = getQueryParam( method, paginated.limit() );
+        if ( !isInteger( offset ) || !isInteger( limit ) ) {
+            throw new IllegalArgumentException( "The offset and the limit of the method " + method.getSimpleName() + " must be integer " +
+                    "query parameters" );
+        }
+        if ( !isCollection( returnType ) ) {
+            throw new IllegalArgumentException( "The method " + method.getSimpleName() + " paginated by offset must return a collection " +
+                    "or an array of objects" );
+        }
+        return RestPagination.offset( offset, limit );
     }
-    
-    private String getFirstJsonType(String[] types) {
-        if(types != null) {
-            for(String type : types) {
-                // Regex taken from https://tools.ietf.org/html/rfc6838#section-4.2
-                if(type.matches("application/([a-z0-9!#$&-^_.]+\\+)?json")) {
-                    return type;
-                }
+
+    private static VariableElement getQueryParam( ExecutableElement method, String name ) {
+        for ( VariableElement variable : method.getParameters() ) {
+            QueryParam queryParam = variable.getAnnotation( QueryParam.class );
+            if ( null != queryParam && queryParam.value().equals( name ) ) {
+                return variable;
             }
-	    }
+        }
         return null;
     }
 
+    private static boolean isInteger( VariableElement variable ) {
+        if ( null == variable ) {
+            return false;
+        }
+        TypeMirror type = variable.asType();
+        return TypeKind.INT == type.getKind() || TypeKind.LONG == type.getKind() || Integer.class.getName().equals( type.toString() )
+                || Long.class.getName().equals( type.toString() );
+    }
+
+    /**
+     * @return true if the type is a {@link Collection} or an array of objects, the items of a page can then be counted
+     */
+    private static boolean isCollection( TypeMirror type ) {
+        if ( null == type ) {
+            return false;
+        }
+        if ( TypeKind.ARRAY == type.getKind() ) {
+            return !((ArrayType) type).getComponentType().getKind().isPrimitive();
+        }
+        return TypeKind.DECLARED == type.getKind() && isCollection( (TypeElement) ((DeclaredType) type).asElement() );
+    }
+
+    private static boolean isCollection( TypeElement element ) {
+        if ( element.getQualifiedName().contentEquals( Collection.class.getName() ) ) {
+            return true;
+        }
+        List<TypeMirror> supertypes = new ArrayList<TypeMirror>( element.getInterfaces() );
+        supertypes.add( element.getSuperclass() );
+        for ( TypeMirror supertype : supertypes ) {
+            if ( TypeKind.DECLARED == supertype.getKind() && isCollection( (TypeElement) ((DeclaredType) supertype).asElement() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @param method the method to check
      *
-     * @return the Consumes annotation found or null if the method does not have one
+     * @return the media types of the method's Consumes annotation or the type's ones if the method does not have one
      */
-    private String[] getConsumes( Consumes baseConsumes, ExecutableElement method ) {
+    private MediaTypes getConsumes( MediaTypes baseConsumes, ExecutableElement method ) {
         Consumes localConsumes = method.getAnnotation( Consumes.class );
-        return localConsumes != null ? localConsumes.value() : baseConsumes != null ? baseConsumes.value() : null;
+        return localConsumes != null ? new MediaTypes( localConsumes.value() ) : baseConsumes;
     }
-    
+
     /**
      * @param method the method to check
      *
-     * @return the Produces annotation found or null if the method does not have one
+     * @return the media types of the method's Produces annotation or the type's ones if the method does not have one
      */
-    private String[] getProduces( Produces baseProduces, ExecutableElement method ) {
+    private MediaTypes getProduces( MediaTypes baseProduces, ExecutableElement method ) {
         Produces localProduces = method.getAnnotation( Produces.class );
-        return localProduces != null ? localProduces.value() : baseProduces != null ? baseProduces.value() : null;
+        return localProduces != null ? new MediaTypes( localProduces.value() ) : baseProduces;
+    }
+
+    /**
+     * Computes a fingerprint of everything the generated builder depends on. Two services with the same fingerprint produce the same
+     * builder.
+     *
+     * @param generatorVersion the version of the generated code
+     * @param context description of the other inputs of the builder, can be null
+     *
+     * @return the fingerprint as an hexadecimal string
+     */
+    public String getFingerprint( int generatorVersion, String context ) {
+        StringBuilder model = new StringBuilder();
+        model.append( generatorVersion ).append( '\n' );
+        model.append( context ).append( '\n' );
+        model.append( typeElement.getQualifiedName() ).append( '\n' );
+        model.append( getBuilderQualifiedClassName() ).append( '\n' );
+        model.append( splitPoint ).append( '\n' );
+        for ( RestServiceMethod method : methods ) {
+            model.append( method.getMethod().getSimpleName() );
+            model.append( ' ' ).append( method.getHttpMethodAnnotation().getAnnotationType() );
+            model.append( ' ' ).append( method.getUrl() );
+            model.append( ' ' ).append( method.getConsumes() );
+            model.append( ' ' ).append( method.getProduces() );
+            model.append( ' ' ).append( method.getReturnType() );
+            model.append( ' ' ).append( method.getPriority() );
+            model.append( ' ' ).append( method.isStreaming() );
+            model.append( ' ' ).append( method.getSupersedeKey() );
+            model.append( ' ' ).append( method.getPagination() );
+            model.append( ' ' ).append( null == method.getIntern() ? null : method.getIntern().session() );
+            model.append( ' ' ).append( Arrays.toString( method.getFields() ) );
+            model.append( ' ' ).append( method.isPatch() );
+            if ( null != method.getPersistentCache() ) {
+                model.append( ' ' ).append( method.getPersistentCache().ttl() );
+                model.append( ' ' ).append( method.getPersistentCache().staleWhileRevalidate() );
+            }
+            for ( VariableElement parameter : method.getMethod().getParameters() ) {
+                model.append( "\n  " ).append( parameter.asType() ).append( ' ' ).append( parameter.getSimpleName() );
+                for ( AnnotationMirror annotation : parameter.getAnnotationMirrors() ) {
+                    model.append( ' ' ).append( annotation );
+                }
+            }
+            model.append( '\n' );
+        }
+
+        return Fingerprint.of( model );
     }
 
     public TypeElement getTypeElement() {
@@ -225,6 +506,24 @@ public class RestService {
         return packageName + "." + builderClassName;
     }
 
+    /**
+     * @return the simple name of the JVM client
+     */
+    public String getClientSimpleClassName() {
+        return typeElement.getSimpleName().toString() + "Client";
+    }
+
+    public String getClientQualifiedClassName() {
+        return packageName + "." + getClientSimpleClassName();
+    }
+
+    /**
+     * @return true if the builder must be loaded behind a split point
+     */
+    public boolean isSplitPoint() {
+        return splitPoint;
+    }
+
     public List<RestServiceMethod> getMethods() {
         return methods;
     }
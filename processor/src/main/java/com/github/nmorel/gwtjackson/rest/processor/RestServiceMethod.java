@@ -16,8 +16,9 @@
 
 package com.github.nmorel.gwtjackson.rest.processor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.regex.Matcher;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import javax.lang.model.element.AnnotationMirror;
@@ -29,16 +30,24 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 
+import com.github.nmorel.gwtjackson.rest.api.RequestPriority;
+
 /**
  * @author Nicolas Morel
  */
 public class RestServiceMethod {
 
+    private static final Pattern PATH_PARAM_REGEX_PATTERN = Pattern.compile( "\\{([A-Za-z0-9-_]+)(\\s*:\\s*([^{}][^{}]*))*\\}" );
+
     private final ExecutableElement method;
 
     private final AnnotationMirror httpMethodAnnotation;
 
     private final String url;
+
+    private final List<String> urlFragments = new ArrayList<String>();
+
+    private final List<String> urlParams = new ArrayList<String>();
     
     private final String consumes;
     
@@ -48,13 +57,92 @@ public class RestServiceMethod {
 
     private final TypeMirror returnType;
 
-    public RestServiceMethod( ExecutableElement method, String baseRestUrl, AnnotationMirror httpMethodAnnotation, String consumes, String produces, TypeMirror returnType ) {
+    private final RequestPriority priority;
+
+    private final boolean streaming;
+
+    private final String supersedeKey;
+
+    private final GenRestPersistentCache persistentCache;
+
+    private final RestPagination pagination;
+
+    private final GenRestIntern intern;
+
+    private final String[] fields;
+
+    private final boolean patch;
+
+    public RestServiceMethod( ExecutableElement method, String baseRestUrl, AnnotationMirror httpMethodAnnotation, String consumes,
+                              String produces, TypeMirror returnType, RequestPriority priority, boolean streaming, String supersedeKey,
+                              GenRestPersistentCache persistentCache, RestPagination pagination, GenRestIntern intern,
+                              String[] fields, boolean patch ) {
         this.method = method;
         this.httpMethodAnnotation = httpMethodAnnotation;
         this.consumes = consumes;
         this.produces = produces;
         this.returnType = returnType;
+        this.priority = priority;
+        this.streaming = streaming;
+        this.supersedeKey = supersedeKey;
+        this.persistentCache = persistentCache;
+        this.pagination = pagination;
+        this.intern = intern;
+        this.fields = fields;
+        this.patch = patch;
+
+        this.url = resolveUrl( baseRestUrl, method );
+        splitUrl( this.url );
 
+        VariableElement bodyParamVariable = null;
+        for ( VariableElement variable : method.getParameters() ) {
+            if ( null == variable.getAnnotation( PathParam.class ) && null == variable.getAnnotation( QueryParam.class )
+                    && null == variable.getAnnotation( Context.class ) ) {
+
+                if ( null == bodyParamVariable ) {
+                    bodyParamVariable = variable;
+                } else {
+                    throw new MoreThanOneBodyParamException( method );
+                }
+            }
+        }
+        this.bodyParamVariable = bodyParamVariable;
+
+        if ( patch && (null == bodyParamVariable || !"PUT".equals( httpMethodAnnotation.getAnnotationType().asElement().getSimpleName()
+                .toString() )) ) {
+            throw new IllegalArgumentException( "Only a PUT method with a body can be sent as a JSON Patch" );
+        }
+
+        if ( null != persistentCache && null != pagination && pagination.isCursor() ) {
+            throw new IllegalArgumentException( "The method " + method.getSimpleName() + " paginated by cursor cannot have a persistent " +
+                    "cache : the cursor of the next page is not persisted" );
+        }
+
+    }
+
+    /**
+     * @param method the resource method
+     *
+     * @return the name of the method followed by the types of its parameters, unique among the methods of the service
+     */
+    static String endpointName( ExecutableElement method ) {
+        StringBuilder builder = new StringBuilder( method.getSimpleName() ).append( '(' );
+        for ( VariableElement variable : method.getParameters() ) {
+            if ( builder.charAt( builder.length() - 1 ) != '(' ) {
+                builder.append( ',' );
+            }
+            builder.append( variable.asType() );
+        }
+        return builder.append( ')' ).toString();
+    }
+
+    /**
+     * @param baseRestUrl the path of the service
+     * @param method the resource method
+     *
+     * @return the url of the method, without the regex of the path parameters
+     */
+    static String resolveUrl( String baseRestUrl, ExecutableElement method ) {
         StringBuilder urlBuilder = new StringBuilder( baseRestUrl );
         Path path = method.getAnnotation( Path.class );
         String theUrl;
@@ -68,27 +156,34 @@ public class RestServiceMethod {
             theUrl = urlBuilder.toString();
         }
 
-        // Removes PathParam regex if any. ie: {id: [0-9]{2,4}} becomes {id}
-        this.url = removeEnclosedCurlyBraces( theUrl ).replaceAll( "\\{([A-Za-z0-9-_]+)(\\s*:\\s*([^{}][^{}]*))*\\}", "{$1}" );
-
-        VariableElement bodyParamVariable = null;
-        for ( VariableElement variable : method.getParameters() ) {
-            if ( null == variable.getAnnotation( PathParam.class ) && null == variable.getAnnotation( QueryParam.class )
-                    && null == variable.getAnnotation( Context.class ) ) {
+        if ( theUrl.indexOf( ':' ) < 0 ) {
+            // no PathParam regex
+            return theUrl;
+        } else {
+            // Removes PathParam regex if any. ie: {id: [0-9]{2,4}} becomes {id}
+            return PATH_PARAM_REGEX_PATTERN.matcher( removeEnclosedCurlyBraces( theUrl ) ).replaceAll( "{$1}" );
+        }
+    }
 
-                if ( null == bodyParamVariable ) {
-                    bodyParamVariable = variable;
-                } else {
-                    throw new MoreThanOneBodyParamException( method );
-                }
+    // Splits the url into literal fragments and path parameters so the builder can expand it without parsing it again
+    private void splitUrl( String url ) {
+        int start = 0;
+        int open = url.indexOf( '{' );
+        while ( open >= 0 ) {
+            int close = url.indexOf( '}', open );
+            if ( close < 0 ) {
+                break;
             }
+            urlFragments.add( url.substring( start, open ) );
+            urlParams.add( url.substring( open + 1, close ) );
+            start = close + 1;
+            open = url.indexOf( '{', start );
         }
-        this.bodyParamVariable = bodyParamVariable;
-
+        urlFragments.add( url.substring( start ) );
     }
 
     // Enclosed curly braces cannot be matched with a regex. Thus we remove them before applying the replaceAll method
-    private String removeEnclosedCurlyBraces( String str ) {
+    private static String removeEnclosedCurlyBraces( String str ) {
         final char curlyReplacement = 6;
 
         char[] chars = str.toCharArray();
@@ -129,6 +224,20 @@ public class RestServiceMethod {
         return url;
     }
 
+    /**
+     * @return the literal fragments of the url. There is always one more fragment than {@link #getUrlParams() parameters}.
+     */
+    public List<String> getUrlFragments() {
+        return urlFragments;
+    }
+
+    /**
+     * @return the path parameters of the url in order of appearance
+     */
+    public List<String> getUrlParams() {
+        return urlParams;
+    }
+
     public VariableElement getBodyParamVariable() {
         return bodyParamVariable;
     }
@@ -144,4 +253,60 @@ public class RestServiceMethod {
     public String getProduces() {
         return produces;
     }
+
+    /**
+     * @return the priority defined with {@link GenRestPriority} or null if there is none
+     */
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return true if the method produces newline-delimited JSON. The {@link #getReturnType() return type} is then the type of the items.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return the key defined with {@link GenRestSupersede} or null if the requests do not supersede each other
+     */
+    public String getSupersedeKey() {
+        return supersedeKey;
+    }
+
+    /**
+     * @return the persistent cache policy defined with {@link GenRestPersistentCache} or null if there is none
+     */
+    public GenRestPersistentCache getPersistentCache() {
+        return persistentCache;
+    }
+
+    /**
+     * @return the pagination of the method or null if it is not paginated
+     */
+    public RestPagination getPagination() {
+        return pagination;
+    }
+
+    /**
+     * @return the interning defined with {@link GenRestIntern} or null if the values are not interned
+     */
+    public GenRestIntern getIntern() {
+        return intern;
+    }
+
+    /**
+     * @return the properties of the response defined with {@link GenRestFields} or null to ask all of them
+     */
+    public String[] getFields() {
+        return fields;
+    }
+
+    /**
+     * @return true if the body is sent as a JSON Patch, see {@link GenRestPatch}
+     */
+    public boolean isPatch() {
+        return patch;
+    }
 }
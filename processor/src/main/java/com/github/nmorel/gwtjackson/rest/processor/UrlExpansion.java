@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.http.client.URL;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+
+/**
+ * Generates the code expanding the url of a method into a <code>_url_</code> {@link StringBuilder} : the literal fragments and the
+ * names of the query parameters are appended as constants and only the values are converted and encoded.
+ */
+public class UrlExpansion {
+
+    private static final ClassName URL_ENCODER = ClassName.get( "java.net", "URLEncoder" );
+
+    private static final ClassName UTF_8 = ClassName.get( "java.nio.charset", "StandardCharsets" );
+
+    private final ProcessingEnvironment processingEnv;
+
+    private final boolean jvm;
+
+    /**
+     * @param processingEnv the processing environment
+     * @param jvm true to generate code for the JVM clients. The values are then encoded with {@link URLEncoder} and the path parameters
+     * are encoded too since a {@link java.net.URI} cannot contain illegal characters. Otherwise, the values are encoded with {@link
+     * URL#encodeQueryString(String)}.
+     */
+    public UrlExpansion( ProcessingEnvironment processingEnv, boolean jvm ) {
+        this.processingEnv = processingEnv;
+        this.jvm = jvm;
+    }
+
+    /**
+     * @param method the method
+     *
+     * @return the code declaring and filling <code>_url_</code>. For the JVM clients, <code>_url_</code> starts with the
+     * <code>baseUrl</code> field which must end with a '/'.
+     */
+    public CodeBlock build( RestServiceMethod method ) {
+        Map<String, VariableElement> pathParams = new HashMap<String, VariableElement>();
+        List<VariableElement> queryParams = new ArrayList<VariableElement>();
+        for ( VariableElement variable : method.getMethod().getParameters() ) {
+            if ( null != variable.getAnnotation( PathParam.class ) ) {
+                pathParams.put( variable.getAnnotation( PathParam.class ).value(), variable );
+            } else if ( null != variable.getAnnotation( QueryParam.class ) ) {
+                queryParams.add( variable );
+            }
+        }
+
+        List<String> fragments = method.getUrlFragments();
+        int capacity = 0;
+        for ( String fragment : fragments ) {
+            capacity += fragment.length();
+        }
+        capacity += 16 * ( method.getUrlParams().size() + queryParams.size() );
+
+        CodeBlock.Builder code = CodeBlock.builder();
+        if ( jvm ) {
+            code.addStatement( "$T _url_ = new $T(baseUrl.length() + $L).append(baseUrl)", StringBuilder.class, StringBuilder.class,
+                    capacity );
+        } else {
+            code.addStatement( "$T _url_ = new $T($L)", StringBuilder.class, StringBuilder.class, capacity );
+        }
+
+        // a parameter without value is kept as is, like in UrlTemplate
+        StringBuilder literal = new StringBuilder( fragments.get( 0 ) );
+        if ( jvm && literal.length() > 0 && literal.charAt( 0 ) == '/' ) {
+            literal.deleteCharAt( 0 );
+        }
+        for ( int i = 0; i < method.getUrlParams().size(); i++ ) {
+            VariableElement variable = pathParams.get( method.getUrlParams().get( i ) );
+            if ( null == variable ) {
+                literal.append( '{' ).append( method.getUrlParams().get( i ) ).append( '}' );
+            } else {
+                if ( literal.length() > 0 ) {
+                    code.addStatement( "_url_.append($S)", literal.toString() );
+                    literal.setLength( 0 );
+                }
+                CodeBlock value;
+                if ( jvm ) {
+                    value = CodeBlock.builder().add( "$T.encode($T.valueOf($L), $T.UTF_8).replace(\"+\", \"%20\")", URL_ENCODER,
+                            String.class, variable.getSimpleName(), UTF_8 ).build();
+                } else {
+                    value = CodeBlock.builder().add( "$L", variable.getSimpleName() ).build();
+                }
+                if ( variable.asType().getKind().isPrimitive() ) {
+                    code.addStatement( "_url_.append($L)", value );
+                } else {
+                    code.beginControlFlow( "if (null != $L)", variable.getSimpleName() )
+                            .addStatement( "_url_.append($L)", value )
+                            .endControlFlow();
+                }
+            }
+            literal.append( fragments.get( i + 1 ) );
+        }
+        if ( literal.length() > 0 ) {
+            code.addStatement( "_url_.append($S)", literal.toString() );
+        }
+
+        if ( queryParams.isEmpty() ) {
+            return code.build();
+        }
+
+        code.addStatement( "char _separator_ = '?'" );
+        for ( VariableElement variable : queryParams ) {
+            String name = encodeQueryString( variable.getAnnotation( QueryParam.class ).value() );
+            TypeMirror type = variable.asType();
+            if ( type.getKind().isPrimitive() ) {
+                code.addStatement( "_url_.append(_separator_).append($S).append($L)", name + "=", encode( CodeBlock.builder()
+                        .add( "$T.valueOf($L)", String.class, variable.getSimpleName() ).build() ) );
+                code.addStatement( "_separator_ = '&'" );
+            } else if ( isMultiValued( type ) ) {
+                code.beginControlFlow( "if (null != $L)", variable.getSimpleName() )
+                        .beginControlFlow( "for (Object _value_ : $L)", variable.getSimpleName() )
+                        .addStatement( "_url_.append(_separator_).append($S)", name )
+                        .beginControlFlow( "if (null != _value_)" )
+                        .addStatement( "_url_.append('=').append($L)", encode( CodeBlock.builder().add( "_value_.toString()" ).build() ) )
+                        .endControlFlow()
+                        .addStatement( "_separator_ = '&'" )
+                        .endControlFlow()
+                        .endControlFlow();
+            } else {
+                code.beginControlFlow( "if (null != $L)", variable.getSimpleName() )
+                        .addStatement( "_url_.append(_separator_).append($S).append($L)", name + "=", encode( CodeBlock.builder()
+                                .add( "$L.toString()", variable.getSimpleName() ).build() ) )
+                        .addStatement( "_separator_ = '&'" )
+                        .endControlFlow();
+            }
+        }
+        return code.build();
+    }
+
+    private CodeBlock encode( CodeBlock value ) {
+        if ( jvm ) {
+            return CodeBlock.builder().add( "$T.encode($L, $T.UTF_8)", URL_ENCODER, value, UTF_8 ).build();
+        } else {
+            return CodeBlock.builder().add( "$T.encodeQueryString($L)", URL.class, value ).build();
+        }
+    }
+
+    /**
+     * @return true if the type is an {@link Iterable} or an array of objects, the query parameter is then repeated for each element
+     */
+    private boolean isMultiValued( TypeMirror type ) {
+        if ( TypeKind.ARRAY == type.getKind() ) {
+            return !((ArrayType) type).getComponentType().getKind().isPrimitive();
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror iterable = types.erasure( processingEnv.getElementUtils().getTypeElement( Iterable.class.getName() ).asType() );
+        return types.isAssignable( types.erasure( type ), iterable );
+    }
+
+    /**
+     * Encodes a constant like {@link URL#encodeQueryString(String)} does in the browser.
+     */
+    static String encodeQueryString( String value ) {
+        try {
+            return URLEncoder.encode( value, "UTF-8" ).replace( "%21", "!" ).replace( "%27", "'" ).replace( "%28", "(" ).replace( "%29", ")" )
+                    .replace( "%7E", "~" );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+}
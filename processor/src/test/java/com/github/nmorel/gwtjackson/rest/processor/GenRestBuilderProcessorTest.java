@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GenRestBuilderProcessorTest {
+
+    private static final String BUILDER = "test.ItemResourceBuilder";
+
+    private static final String MARKER = "// not generated again";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProcessorCompilation compilation;
+
+    @Before
+    public void setUp() throws IOException {
+        compilation = new ProcessorCompilation( folder.getRoot() );
+        service( "" );
+        assertTrue( compilation.getMessages().toString(), compilation.compile() );
+        Files.write( compilation.generatedFile( BUILDER ).toPath(), MARKER.getBytes( StandardCharsets.UTF_8 ), StandardOpenOption
+                .APPEND );
+    }
+
+    private void service( String extraMethod ) throws IOException {
+        compilation.source( "test.ItemResource",
+                "package test;",
+                "import javax.ws.rs.*;",
+                "import com.github.nmorel.gwtjackson.rest.processor.GenRestBuilder;",
+                "@GenRestBuilder",
+                "@Path(\"items\")",
+                "@Produces(\"application/json\")",
+                "public class ItemResource {",
+                "    @GET @Path(\"{id}\")",
+                "    public String get(@PathParam(\"id\") String id) { return null; }",
+                extraMethod,
+                "}" );
+    }
+
+    @Test
+    public void upToDateBuilderIsSkipped() throws IOException {
+        assertTrue( compilation.getMessages().toString(), compilation.compile() );
+        assertTrue( compilation.generated( BUILDER ).contains( MARKER ) );
+    }
+
+    @Test
+    public void upToDateBuilderOnSourcePathIsSkipped() throws IOException {
+        assertTrue( compilation.getMessages().toString(), compilation.compileWithGenerated() );
+        assertTrue( compilation.generated( BUILDER ).contains( MARKER ) );
+    }
+
+    @Test
+    public void outdatedBuilderIsGeneratedAgain() throws IOException {
+        service( "    @DELETE @Path(\"{id}\") public void delete(@PathParam(\"id\") String id) {}" );
+        assertTrue( compilation.getMessages().toString(), compilation.compile() );
+        String builder = compilation.generated( BUILDER );
+        assertFalse( builder.contains( MARKER ) );
+        assertTrue( builder.contains( "delete(" ) );
+    }
+
+    @Test
+    public void outdatedBuilderOnSourcePathIsGeneratedAgain() throws IOException {
+        service( "    @DELETE @Path(\"{id}\") public void delete(@PathParam(\"id\") String id) {}" );
+
+        // the outdated builder is compiled, the processor reports it instead of failing to recreate it
+        assertFalse( compilation.compileWithGenerated() );
+        assertTrue( compilation.getMessages().toString(), compilation.getMessages().toString().contains( BUILDER
+                + " has been generated again" ) );
+        String builder = compilation.generated( BUILDER );
+        assertFalse( builder.contains( MARKER ) );
+        assertTrue( builder.contains( "delete(" ) );
+
+        assertTrue( compilation.getMessages().toString(), compilation.compileWithGenerated() );
+    }
+}
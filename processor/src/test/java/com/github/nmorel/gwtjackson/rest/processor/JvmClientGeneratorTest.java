@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JvmClientGeneratorTest {
+
+    private static final String CLIENT = "test.ItemResourceClient";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private volatile String lastUri;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/", new HttpHandler() {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException {
+                lastUri = exchange.getRequestURI().toString();
+                String body = exchange.getRequestURI().getPath().endsWith( "/1" ) ? "{\"name\":\"first\",\"count\":2}" :
+                        "[{\"name\":\"first\"},{\"name\":\"second\"}]";
+                byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+                exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+                exchange.sendResponseHeaders( 200, bytes.length );
+                OutputStream out = exchange.getResponseBody();
+                out.write( bytes );
+                out.close();
+            }
+        } );
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop( 0 );
+    }
+
+    private Object newClient( ProcessorCompilation compilation, ClassLoader classLoader ) throws Exception {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/app";
+        return classLoader.loadClass( CLIENT ).getConstructor( String.class ).newInstance( baseUrl );
+    }
+
+    private ProcessorCompilation compileService() throws Exception {
+        try {
+            Class.forName( "java.net.http.HttpClient" );
+        } catch ( ClassNotFoundException e ) {
+            Assume.assumeNoException( "The JVM clients need Java 11", e );
+        }
+        ProcessorCompilation compilation = new ProcessorCompilation( folder.getRoot() );
+        compilation.source( "test.ItemResource",
+                "package test;",
+                "import javax.ws.rs.*;",
+                "import com.github.nmorel.gwtjackson.rest.processor.GenRestBuilder;",
+                "import com.github.nmorel.gwtjackson.rest.processor.GenRestFields;",
+                "@GenRestBuilder",
+                "@Path(\"items\")",
+                "@Produces(\"application/json\")",
+                "public class ItemResource {",
+                "    public static class Item {",
+                "        public String name;",
+                "        public int count;",
+                "    }",
+                "    @GET @Path(\"{id}\") @GenRestFields(\"name\")",
+                "    public Item get(@PathParam(\"id\") String id) { return null; }",
+                "    @GET @Path(\"search\") @GenRestFields({\"name\", \"count\"})",
+                "    public java.util.List<Item> search(@QueryParam(\"q\") String q) { return null; }",
+                "    @GET @Path(\"all\")",
+                "    public java.util.List<Item> all() { return null; }",
+                "}" );
+        assertTrue( compilation.getMessages().toString(), compilation.compile( "-Aoutput=jvm" ) );
+        return compilation;
+    }
+
+    @Test
+    public void defaultsAreLazyWithoutLock() throws Exception {
+        String client = compileService().generated( CLIENT );
+        assertFalse( client.contains( "synchronized" ) );
+        assertTrue( client.contains( "private static final class Defaults" ) );
+    }
+
+    @Test
+    public void sendsTheFieldsQueryParam() throws Exception {
+        ProcessorCompilation compilation = compileService();
+        URLClassLoader classLoader = new URLClassLoader( new URL[]{compilation.getClassesDir().toURI().toURL()}, getClass()
+                .getClassLoader() );
+        try {
+            Object client = newClient( compilation, classLoader );
+
+            Object item = client.getClass().getMethod( "get", String.class ).invoke( client, "1" );
+            assertEquals( "/app/items/1?fields=name", lastUri );
+            assertEquals( "first", item.getClass().getField( "name" ).get( item ) );
+
+            List<?> items = (List<?>) client.getClass().getMethod( "search", String.class ).invoke( client, "a b" );
+            assertEquals( "/app/items/search?q=a+b&fields=name%2Ccount", lastUri );
+            assertEquals( 2, items.size() );
+
+            client.getClass().getMethod( "all" ).invoke( client );
+            assertEquals( "/app/items/all", lastUri );
+        } finally {
+            classLoader.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Nicolas Morel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nmorel.gwtjackson.rest.processor;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles sources with the {@link GenRestBuilderProcessor} in a folder, like a build tool would.
+ */
+class ProcessorCompilation {
+
+    private final File sourceDir;
+
+    private final File generatedDir;
+
+    private final File classesDir;
+
+    private final List<String> messages = new ArrayList<String>();
+
+    ProcessorCompilation( File root ) {
+        this.sourceDir = new File( root, "src" );
+        this.generatedDir = new File( root, "generated" );
+        this.classesDir = new File( root, "classes" );
+        generatedDir.mkdirs();
+        classesDir.mkdirs();
+    }
+
+    /**
+     * Writes a source, replacing the previous one with the same name.
+     */
+    void source( String qualifiedName, String... lines ) throws IOException {
+        File file = new File( sourceDir, qualifiedName.replace( '.', '/' ) + ".java" );
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), Arrays.asList( lines ), StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * @param options the options of the processor, like <code>-Aoutput=jvm</code>
+     *
+     * @return true if the compilation succeeded
+     */
+    boolean compile( String... options ) throws IOException {
+        return compile( Arrays.asList( options ), sourceFiles( sourceDir ) );
+    }
+
+    /**
+     * Compiles the sources and the generated sources together, as a build tool does when the generated sources are on its source path.
+     *
+     * @param options the options of the processor
+     *
+     * @return true if the compilation succeeded
+     */
+    boolean compileWithGenerated( String... options ) throws IOException {
+        List<File> files = sourceFiles( sourceDir );
+        files.addAll( sourceFiles( generatedDir ) );
+        return compile( Arrays.asList( options ), files );
+    }
+
+    private boolean compile( List<String> processorOptions, List<File> files ) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager( diagnostics, null, StandardCharsets.UTF_8 );
+        try {
+            List<String> options = new ArrayList<String>( Arrays.asList( "-classpath", System.getProperty( "java.class.path" ), "-d",
+                    classesDir.getPath(), "-s", generatedDir.getPath(), "-processor", GenRestBuilderProcessor.class.getName() ) );
+            options.addAll( processorOptions );
+            boolean success = compiler.getTask( null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(
+                    files ) ).call();
+            messages.clear();
+            for ( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() ) {
+                messages.add( diagnostic.getKind() + ": " + diagnostic.getMessage( null ) );
+            }
+            return success;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * @return the messages of the last compilation
+     */
+    List<String> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the generated source or null if it has not been generated
+     */
+    String generated( String qualifiedName ) throws IOException {
+        File file = generatedFile( qualifiedName );
+        return file.exists() ? new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 ) : null;
+    }
+
+    File generatedFile( String qualifiedName ) {
+        return new File( generatedDir, qualifiedName.replace( '.', '/' ) + ".java" );
+    }
+
+    File getClassesDir() {
+        return classesDir;
+    }
+
+    private static List<File> sourceFiles( File dir ) {
+        List<File> files = new ArrayList<File>();
+        File[] children = dir.listFiles();
+        if ( null != children ) {
+            for ( File child : children ) {
+                if ( child.isDirectory() ) {
+                    files.addAll( sourceFiles( child ) );
+                } else if ( child.getName().endsWith( ".java" ) ) {
+                    files.add( child );
+                }
+            }
+        }
+        return files;
+    }
+}